@@ -8,6 +8,7 @@ public record ChatRoomListItemDto(
         String name,
         ChatRoomType type,
         List<String> participantUsernames,
-        MessageDto lastMessage
+        MessageDto lastMessage,
+        long unreadCount
 ) {
 }
@@ -0,0 +1,9 @@
+package org.example.projectchat.DTO.chat;
+
+import jakarta.validation.constraints.NotNull;
+
+public record MarkReadRequest(
+        @NotNull(message = "messageId cant be null")
+        Long messageId
+) {
+}
@@ -0,0 +1,10 @@
+package org.example.projectchat.DTO.chat;
+
+import java.util.List;
+
+// Matches newest first; nextBefore is the before value for the next page, null on the last page
+public record MessageSearchResultDto(
+        List<MessageDto> messages,
+        Long nextBefore
+) {
+}
@@ -0,0 +1,11 @@
+package org.example.projectchat.DTO.chat;
+
+import java.util.List;
+
+// Messages newest first; a cursor is null when there is nothing more in that direction
+public record MessageSliceDto(
+        List<MessageDto> messages,
+        String olderCursor,
+        String newerCursor
+) {
+}
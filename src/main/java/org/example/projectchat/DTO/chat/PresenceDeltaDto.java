@@ -0,0 +1,14 @@
+package org.example.projectchat.DTO.chat;
+
+import org.example.projectchat.DTO.user.UserDto;
+
+import java.util.List;
+
+// Aggregated join/leave changes of one room since the previous frame
+public record PresenceDeltaDto(
+        Long roomId,
+        List<UserDto> joined,
+        List<UserDto> left,
+        int online
+) {
+}
@@ -0,0 +1,7 @@
+package org.example.projectchat.DTO.chat;
+
+public record RoomOnlineCountDto(
+        Long roomId,
+        int online
+) {
+}
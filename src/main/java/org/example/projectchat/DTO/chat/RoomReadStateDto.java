@@ -0,0 +1,8 @@
+package org.example.projectchat.DTO.chat;
+
+public record RoomReadStateDto(
+        Long roomId,
+        Long lastReadMessageId,
+        long unreadCount
+) {
+}
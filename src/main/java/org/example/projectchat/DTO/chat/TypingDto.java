@@ -0,0 +1,12 @@
+package org.example.projectchat.DTO.chat;
+
+import java.util.List;
+
+// usernames holds at most a few names; total is the number of users typing
+public record TypingDto(
+        Long roomId,
+        List<String> usernames,
+        int total,
+        String text
+) {
+}
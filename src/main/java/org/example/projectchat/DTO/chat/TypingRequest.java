@@ -0,0 +1,4 @@
+package org.example.projectchat.DTO.chat;
+
+public record TypingRequest(boolean typing) {
+}
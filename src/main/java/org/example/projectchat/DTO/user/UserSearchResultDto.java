@@ -0,0 +1,10 @@
+package org.example.projectchat.DTO.user;
+
+import java.util.List;
+
+// Best suggestions first; nextOffset is the offset of the next page, null on the last page
+public record UserSearchResultDto(
+        List<UserDto> users,
+        Integer nextOffset
+) {
+}
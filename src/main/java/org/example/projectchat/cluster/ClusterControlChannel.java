@@ -0,0 +1,73 @@
+package org.example.projectchat.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Node-to-node control messages (cache invalidations, state changes) on the ClusterFanout bus.
+// They use destinations outside the STOMP namespace, so ChatBroadcaster never hands them to the broker,
+// and a node does not receive its own. Delivery is at-most-once: receivers must also recover on their own (TTLs).
+@Component
+@Slf4j
+public class ClusterControlChannel {
+    private static final String DESTINATION_PREFIX = "cluster:";
+
+    private final ClusterFanout clusterFanout;
+    private final SnowflakeIdGenerator idGenerator;
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    public ClusterControlChannel(ClusterFanout clusterFanout, SnowflakeIdGenerator idGenerator) {
+        this.clusterFanout = clusterFanout;
+        this.idGenerator = idGenerator;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        clusterFanout.subscribe(this::deliver);
+    }
+
+    public long getNodeId() {
+        return idGenerator.getNodeId();
+    }
+
+    public void publish(String topic, String payload) {
+        try {
+            clusterFanout.publish(new FanoutEnvelope(idGenerator.nextId(), idGenerator.getNodeId(),
+                    MimeTypeUtils.TEXT_PLAIN_VALUE, DESTINATION_PREFIX + topic, null,
+                    payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            log.error("Failed to publish cluster {} message: {}", topic, e.getMessage());
+        }
+    }
+
+    // listener receives the payloads other nodes published on the topic
+    public void subscribe(String topic, Consumer<String> listener) {
+        listeners.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    private void deliver(FanoutEnvelope envelope) {
+        if (!envelope.isControl() || envelope.originNode() == idGenerator.getNodeId()
+                || !envelope.destination().startsWith(DESTINATION_PREFIX)) {
+            return;
+        }
+
+        String topic = envelope.destination().substring(DESTINATION_PREFIX.length());
+        String payload = new String(envelope.payload(), StandardCharsets.UTF_8);
+        for (Consumer<String> listener : listeners.getOrDefault(topic, List.of())) {
+            try {
+                listener.accept(payload);
+            } catch (RuntimeException e) {
+                log.warn("Ignoring malformed cluster {} message: {}", topic, e.getMessage());
+            }
+        }
+    }
+}
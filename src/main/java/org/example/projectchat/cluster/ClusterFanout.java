@@ -0,0 +1,12 @@
+package org.example.projectchat.cluster;
+
+import java.util.function.Consumer;
+
+// Transport that carries broker messages between chat instances.
+// Delivery is at-most-once and may include the publisher itself; receivers de-duplicate.
+public interface ClusterFanout {
+
+    void publish(FanoutEnvelope envelope);
+
+    void subscribe(Consumer<FanoutEnvelope> listener);
+}
@@ -0,0 +1,57 @@
+package org.example.projectchat.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// A message published to peer nodes: a room topic (user == null) or a user destination.
+// The payload is the already serialized frame body, so peers never re-serialize it.
+public record FanoutEnvelope(
+        long id,
+        long originNode,
+        String contentType,
+        String destination,
+        String user,
+        byte[] payload
+) {
+    private static final char SEPARATOR = '|';
+
+    public boolean isUserDestination() {
+        return user != null;
+    }
+
+    // STOMP destinations start with '/'; anything else is a ClusterControlChannel message
+    public boolean isControl() {
+        return !destination.startsWith("/");
+    }
+
+    // Compact text form for transports that only carry strings (e.g. NOTIFY payloads):
+    // id|origin|contentType|destination|user|payload, the free-form fields base64url encoded
+    public String encode() {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return new StringBuilder()
+                .append(id).append(SEPARATOR)
+                .append(originNode).append(SEPARATOR)
+                .append(contentType).append(SEPARATOR)
+                .append(encoder.encodeToString(destination.getBytes(StandardCharsets.UTF_8))).append(SEPARATOR)
+                .append(user == null ? "" : encoder.encodeToString(user.getBytes(StandardCharsets.UTF_8))).append(SEPARATOR)
+                .append(encoder.encodeToString(payload))
+                .toString();
+    }
+
+    public static FanoutEnvelope decode(String text) {
+        String[] parts = text.split("\\|", -1);
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("Malformed fan-out envelope");
+        }
+
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        return new FanoutEnvelope(
+                Long.parseLong(parts[0]),
+                Long.parseLong(parts[1]),
+                parts[2],
+                new String(decoder.decode(parts[3]), StandardCharsets.UTF_8),
+                parts[4].isEmpty() ? null : new String(decoder.decode(parts[4]), StandardCharsets.UTF_8),
+                decoder.decode(parts[5])
+        );
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.projectchat.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-process fan-out: every subscriber in this JVM receives every envelope synchronously.
+// The hub is static so several application contexts (nodes) in one test JVM see each other.
+@Component
+@ConditionalOnProperty(name = "chat.cluster.fanout", havingValue = "loopback", matchIfMissing = true)
+public class LoopbackClusterFanout implements ClusterFanout {
+    private static final List<Consumer<FanoutEnvelope>> HUB = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<FanoutEnvelope>> ownListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(FanoutEnvelope envelope) {
+        for (Consumer<FanoutEnvelope> listener : HUB) {
+            listener.accept(envelope);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<FanoutEnvelope> listener) {
+        ownListeners.add(listener);
+        HUB.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        HUB.removeAll(ownListeners);
+        ownListeners.clear();
+    }
+}
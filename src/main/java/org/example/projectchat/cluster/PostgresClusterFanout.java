@@ -0,0 +1,142 @@
+package org.example.projectchat.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Fan-out over PostgreSQL LISTEN/NOTIFY. Publishing is a pg_notify on any pooled connection;
+// receiving holds one dedicated connection that a background thread polls for notifications.
+@Component
+@ConditionalOnProperty(name = "chat.cluster.fanout", havingValue = "postgres")
+@Slf4j
+public class PostgresClusterFanout implements ClusterFanout {
+    // NOTIFY payloads must be shorter than 8000 bytes; the encoded envelope is ASCII
+    private static final int MAX_PAYLOAD_LENGTH = 7999;
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private final List<Consumer<FanoutEnvelope>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresClusterFanout(DataSource dataSource,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${chat.cluster.channel:chat_fanout}") String channel) {
+        // the channel is an identifier in LISTEN, it cannot be a bind parameter
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid chat.cluster.channel: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.channel = channel;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::runListener, "cluster-fanout-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listenerThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void publish(FanoutEnvelope envelope) {
+        String text = envelope.encode();
+        if (text.length() > MAX_PAYLOAD_LENGTH) {
+            log.warn("Fan-out envelope for {} is {} characters, too large for NOTIFY; delivered locally only",
+                    envelope.destination(), text.length());
+            return;
+        }
+
+        try {
+            jdbcTemplate.query("select pg_notify(?, ?)", (ResultSetExtractor<Void>) resultSet -> null, channel, text);
+        } catch (Exception e) {
+            log.error("Failed to publish fan-out envelope for {}: {}", envelope.destination(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<FanoutEnvelope> listener) {
+        listeners.add(listener);
+    }
+
+    private void runListener() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.info("Listening for cluster fan-out on channel {}", channel);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                // messages published while disconnected are lost; clients recover by refetching history
+                log.error("Cluster fan-out listener lost its connection: {}", e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+        log.info("Cluster fan-out listener stopped");
+    }
+
+    private void deliver(String text) {
+        FanoutEnvelope envelope;
+        try {
+            envelope = FanoutEnvelope.decode(text);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed fan-out notification: {}", e.getMessage());
+            return;
+        }
+
+        for (Consumer<FanoutEnvelope> listener : listeners) {
+            try {
+                listener.accept(envelope);
+            } catch (Exception e) {
+                log.error("Fan-out listener failed for {}: {}", envelope.destination(), e.getMessage());
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.example.projectchat.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.util.BloomFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Revoked access tokens (by jti) and per-user watermarks ("tokens issued before T are invalid"), checked on every
+// authentication without a query. Bloom filters answer the common not-revoked case without allocating; only a
+// filter hit looks at the maps. Entries live until the affected tokens expire; the filters are then rebuilt.
+// State is kept in V13's tables: loaded at startup, other nodes' revocations are picked up every sync interval.
+@Component
+@Slf4j
+public class AccessTokenDenylist {
+    private static final String INSERT_JTI_SQL = "insert into revoked_access_tokens (jti, user_id, expires_at) "
+            + "values (?, ?, ?) on conflict (jti) do nothing";
+    private static final String UPSERT_WATERMARK_SQL = "insert into user_token_watermarks (user_id, not_before, expires_at) "
+            + "values (?, ?, ?) on conflict (user_id) do update set not_before = greatest(user_token_watermarks.not_before, excluded.not_before), "
+            + "expires_at = greatest(user_token_watermarks.expires_at, excluded.expires_at), created_at = now()";
+    private static final String JTIS_SINCE_SQL =
+            "select jti, expires_at, created_at from revoked_access_tokens where created_at > ? and expires_at > now()";
+    private static final String WATERMARKS_SINCE_SQL =
+            "select user_id, not_before, expires_at, created_at from user_token_watermarks where created_at > ? and expires_at > now()";
+    private static final String DELETE_EXPIRED_JTIS_SQL = "delete from revoked_access_tokens where expires_at < now()";
+    private static final String DELETE_EXPIRED_WATERMARKS_SQL = "delete from user_token_watermarks where expires_at < now()";
+    // rows committed shortly after a later created_at was already read are still picked up
+    private static final long SYNC_OVERLAP_MILLIS = 5000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long accessTokenTtlMillis;
+    private final int expectedEntries;
+
+    // jti -> expiry of the token
+    private final Map<String, Long> revokedJtis = new ConcurrentHashMap<>();
+    // userId -> [not before, expiry of the watermark]
+    private final Map<Long, long[]> watermarks = new ConcurrentHashMap<>();
+    private volatile Filters filters;
+    // writers only; lookups never lock
+    private final Lock writeLock = new ReentrantLock();
+    private volatile long syncedUntilMillis = 0;
+
+    public AccessTokenDenylist(JdbcTemplate jdbcTemplate,
+                               @Value("${jwt.expiration.access-token}") long accessTokenTtlMillis,
+                               @Value("${chat.auth.denylist.expected-entries:100000}") int expectedEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.accessTokenTtlMillis = accessTokenTtlMillis;
+        this.expectedEntries = expectedEntries;
+        this.filters = Filters.of(expectedEntries);
+    }
+
+    public boolean isRevoked(JwtClaims claims) {
+        Filters current = filters;
+        String jti = claims.jti();
+        if (jti != null && current.jtis().mightContain(jti) && revokedJtis.containsKey(jti)) {
+            return true;
+        }
+
+        Long userId = claims.userId();
+        if (userId != null && current.users().mightContain(userId)) {
+            long[] watermark = watermarks.get(userId);
+            return watermark != null && (claims.issuedAt() == null || claims.issuedAt().toEpochMilli() < watermark[0]);
+        }
+        return false;
+    }
+
+    // Logout: this access token stops working before it expires
+    public void revoke(JwtClaims claims) {
+        if (claims.jti() == null || claims.expiresAt() == null) {
+            return;
+        }
+        jdbcTemplate.update(INSERT_JTI_SQL, claims.jti(), claims.userId(), Timestamp.from(claims.expiresAt()));
+        addJti(claims.jti(), claims.expiresAt().toEpochMilli());
+    }
+
+    // Logout everywhere: every access token of the user issued until now stops working
+    public void revokeAllForUser(Long userId) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + accessTokenTtlMillis;
+        jdbcTemplate.update(UPSERT_WATERMARK_SQL, userId, new Timestamp(now), new Timestamp(expiresAt));
+        addWatermark(userId, now, expiresAt);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        sync();
+        log.info("Access token denylist loaded: {} tokens, {} users", revokedJtis.size(), watermarks.size());
+    }
+
+    // Other nodes' revocations in, expired entries out
+    @Scheduled(fixedDelayString = "${chat.auth.denylist.sync-ms:5000}")
+    public void sync() {
+        Timestamp since = new Timestamp(Math.max(0, syncedUntilMillis - SYNC_OVERLAP_MILLIS));
+        long[] newest = {syncedUntilMillis};
+
+        jdbcTemplate.query(JTIS_SINCE_SQL, resultSet -> {
+            addJti(resultSet.getString("jti"), resultSet.getTimestamp("expires_at").getTime());
+            newest[0] = Math.max(newest[0], resultSet.getTimestamp("created_at").getTime());
+        }, since);
+        jdbcTemplate.query(WATERMARKS_SINCE_SQL, resultSet -> {
+            addWatermark(resultSet.getLong("user_id"), resultSet.getTimestamp("not_before").getTime(),
+                    resultSet.getTimestamp("expires_at").getTime());
+            newest[0] = Math.max(newest[0], resultSet.getTimestamp("created_at").getTime());
+        }, since);
+        syncedUntilMillis = newest[0];
+
+        expire(System.currentTimeMillis());
+    }
+
+    private void expire(long now) {
+        writeLock.lock();
+        try {
+            boolean removedJtis = revokedJtis.values().removeIf(expiresAt -> expiresAt <= now);
+            boolean removedUsers = watermarks.values().removeIf(watermark -> watermark[1] <= now);
+            if (removedJtis || removedUsers) {
+                rebuildFilters();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (jdbcTemplate.update(DELETE_EXPIRED_JTIS_SQL) + jdbcTemplate.update(DELETE_EXPIRED_WATERMARKS_SQL) > 0) {
+            log.debug("Expired access token revocations deleted");
+        }
+    }
+
+    private void addJti(String jti, long expiresAt) {
+        writeLock.lock();
+        try {
+            // map first: a filter hit always finds the entry
+            revokedJtis.merge(jti, expiresAt, Math::max);
+            if (revokedJtis.size() > filters.capacity()) {
+                rebuildFilters();
+            } else {
+                filters.jtis().add(jti);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void addWatermark(Long userId, long notBefore, long expiresAt) {
+        writeLock.lock();
+        try {
+            watermarks.merge(userId, new long[]{notBefore, expiresAt},
+                    (current, added) -> new long[]{Math.max(current[0], added[0]), Math.max(current[1], added[1])});
+            if (watermarks.size() > filters.capacity()) {
+                rebuildFilters();
+            } else {
+                filters.users().add(userId);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // under the write lock; sized with room to grow, so the false positive rate holds
+    private void rebuildFilters() {
+        Filters rebuilt = Filters.of(Math.max(expectedEntries, 2 * Math.max(revokedJtis.size(), watermarks.size())));
+        revokedJtis.keySet().forEach(rebuilt.jtis()::add);
+        watermarks.keySet().forEach(rebuilt.users()::add);
+        filters = rebuilt;
+    }
+
+    private record Filters(BloomFilter jtis, BloomFilter users, int capacity) {
+        static Filters of(int capacity) {
+            return new Filters(new BloomFilter(capacity, FALSE_POSITIVE_RATE), new BloomFilter(capacity, FALSE_POSITIVE_RATE), capacity);
+        }
+    }
+}
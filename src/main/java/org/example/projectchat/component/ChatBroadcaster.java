@@ -0,0 +1,144 @@
+package org.example.projectchat.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.cluster.ClusterFanout;
+import org.example.projectchat.cluster.FanoutEnvelope;
+import org.example.projectchat.websocket.PayloadCodec;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Broadcasts a payload that is serialized exactly once into immutable bytes.
+// The simple broker hands the same byte[] to every subscriber; only the per-subscription
+// headers (subscription id, message id) are added per session.
+// Every message is delivered to local sessions and published to peer nodes through ClusterFanout.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatBroadcaster {
+    private static final int RECENT_ENVELOPES = 4096;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final ClusterFanout clusterFanout;
+    private final SnowflakeIdGenerator idGenerator;
+    private final PayloadCodec payloadCodec;
+
+    // ids of envelopes already delivered here, so a redelivered notification is not sent twice
+    private final Lock recentEnvelopesLock = new ReentrantLock();
+    private final Set<Long> recentEnvelopes = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENT_ENVELOPES;
+        }
+    });
+
+    @PostConstruct
+    public void subscribe() {
+        clusterFanout.subscribe(this::deliverRemote);
+    }
+
+    public void broadcast(String destination, Object payload) {
+        Message<byte[]> message = encode(payload);
+        messagingTemplate.send(destination, message);
+        publish(destination, null, message);
+    }
+
+    // this node's sessions only: for frames that every node derives from state it shares with the peers
+    public void broadcastLocal(String destination, Object payload) {
+        messagingTemplate.send(destination, encode(payload));
+    }
+
+    // /user/{username}{destination} on every node where the user has a session
+    public void sendToUser(String username, String destination, Object payload) {
+        Message<byte[]> message = encode(payload);
+        messagingTemplate.send(userDestination(username, destination), message);
+        publish(destination, username, message);
+    }
+
+    // A minimal header set keeps the per-subscriber header copy in the broker small
+    public Message<byte[]> encode(Object payload) {
+        if (payload instanceof String text) {
+            return createMessage(text.getBytes(StandardCharsets.UTF_8), MimeTypeUtils.TEXT_PLAIN, null);
+        }
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new MessageDeliveryException("Failed to serialize broadcast payload: " + e.getMessage());
+        }
+        return createMessage(body, MimeTypeUtils.APPLICATION_JSON, payloadCodec.lazy(payload));
+    }
+
+    private void publish(String destination, String username, Message<byte[]> message) {
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        try {
+            clusterFanout.publish(new FanoutEnvelope(idGenerator.nextId(), idGenerator.getNodeId(),
+                    String.valueOf(contentType), destination, username, message.getPayload()));
+        } catch (Exception e) {
+            log.error("Failed to publish {} to peer nodes: {}", destination, e.getMessage());
+        }
+    }
+
+    private void deliverRemote(FanoutEnvelope envelope) {
+        if (envelope.isControl() || envelope.originNode() == idGenerator.getNodeId() || !markDelivered(envelope.id())) {
+            return;
+        }
+
+        MimeType contentType = MimeType.valueOf(envelope.contentType());
+        PayloadCodec.LazyCbor cbor = MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)
+                ? payloadCodec.lazyFromJson(envelope.payload())
+                : null;
+        Message<byte[]> message = createMessage(envelope.payload(), contentType, cbor);
+        if (envelope.isUserDestination()) {
+            messagingTemplate.send(userDestination(envelope.user(), envelope.destination()), message);
+        } else {
+            messagingTemplate.send(envelope.destination(), message);
+        }
+    }
+
+    private boolean markDelivered(long envelopeId) {
+        recentEnvelopesLock.lock();
+        try {
+            return recentEnvelopes.add(envelopeId);
+        } finally {
+            recentEnvelopesLock.unlock();
+        }
+    }
+
+    private String userDestination(String username, String destination) {
+        // same encoding as SimpMessagingTemplate.convertAndSendToUser
+        return messagingTemplate.getUserDestinationPrefix() + username.replace("/", "%2F") + destination;
+    }
+
+    // cbor: encoded only if some subscriber negotiated CBOR (see CborOutboundInterceptor)
+    private static Message<byte[]> createMessage(byte[] body, MimeType contentType, PayloadCodec.LazyCbor cbor) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(contentType);
+        if (cbor != null) {
+            accessor.setHeader(PayloadCodec.CBOR_PAYLOAD_HEADER, cbor);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+}
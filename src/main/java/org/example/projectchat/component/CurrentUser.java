@@ -0,0 +1,31 @@
+package org.example.projectchat.component;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.security.Principal;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Lightweight view of the authenticated user, resolved without touching the database.
+// Injected into REST and STOMP handler methods by the CurrentUser argument resolvers.
+public record CurrentUser(Long id, String username, Set<String> roles) {
+
+    // Key under which the STOMP CONNECT interceptor keeps the user in the session attributes
+    public static final String SESSION_ATTRIBUTE = CurrentUser.class.getName();
+
+    public static CurrentUser from(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            return from(userDetails);
+        }
+        return null;
+    }
+
+    public static CurrentUser from(CustomUserDetails userDetails) {
+        Set<String> roles = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toUnmodifiableSet());
+        return new CurrentUser(userDetails.getId(), userDetails.getUsername(), roles);
+    }
+}
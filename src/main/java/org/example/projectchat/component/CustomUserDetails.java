@@ -5,8 +5,10 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -20,4 +22,13 @@ public class CustomUserDetails implements UserDetails {
     private String password;
     private List<String> adminGroupIds;
     private Collection<? extends GrantedAuthority> authorities;
+
+    // Every principal is built here: at login, on token refresh and from access token claims
+    public static CustomUserDetails of(Long id, String username, String password,
+                                       Collection<String> roles, List<String> adminGroupIds) {
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+                .toList();
+        return new CustomUserDetails(id, username, password, new ArrayList<>(adminGroupIds), authorities);
+    }
 }
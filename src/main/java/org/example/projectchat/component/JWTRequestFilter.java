@@ -13,8 +13,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -27,8 +25,8 @@ import java.io.IOException;
 @RequiredArgsConstructor
 @Slf4j
 public class JWTRequestFilter extends OncePerRequestFilter {
-    private final JWTUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final JwtVerifier jwtVerifier;
+    private final PrincipalResolver principalResolver;
 
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER_PREFIX = "Bearer ";
@@ -45,14 +43,15 @@ public class JWTRequestFilter extends OncePerRequestFilter {
         }
 
         try {
-            String username = jwtUtil.extractUsername(jwt);
+            // signature and expiry, one parse
+            JwtClaims claims = jwtVerifier.verify(jwt);
+            String username = claims.subject();
 
-            CustomUserDetails userDetails = (CustomUserDetails) userDetailsService.loadUserByUsername(username);
-            log.debug("Authenticated user ID: {}", userDetails.getId());
-            log.debug("Admin Group IDs: {}", userDetails.getAdminGroupIds());
+            // null for refresh tokens and tokens not issued to the current account
+            CustomUserDetails userDetails = principalResolver.resolve(claims);
 
-
-            if(jwtUtil.validateToken(jwt, userDetails)){
+            if(userDetails != null){
+                log.debug("Authenticated user ID: {}", userDetails.getId());
 
                 UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
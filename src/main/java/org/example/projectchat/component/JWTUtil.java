@@ -2,12 +2,10 @@ package org.example.projectchat.component;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
-import javax.crypto.SecretKey;
 import java.time.Instant;
 import java.util.Date;
 import java.util.List;
@@ -15,9 +13,10 @@ import java.util.UUID;
 import java.util.function.Function;
 
 @Component
+@RequiredArgsConstructor
 public class JWTUtil {
-    @Value("${jwt.secret.key}")
-    private String SUPER_SECRET_KEY ;
+    private final JwtVerifier jwtVerifier;
+    private final SnowflakeIdGenerator idGenerator;
 
     @Value("${jwt.expiration.access-token}")
     private long jwtExpirationAccessToken;
@@ -25,13 +24,13 @@ public class JWTUtil {
     @Value("${jwt.expiration.refresh-token}")
     private long jwtExpirationRefreshToken;
 
-    private SecretKey getSigningKey(){
-        byte[] keyBytes = Decoders.BASE64.decode(SUPER_SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private Claims extractAllClaims(String token){
+        return jwtVerifier.parse(token);
     }
 
-    private Claims extractAllClaims(String token){
-        return Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token).getPayload();
+    // All claims with a single parse
+    public JwtClaims readClaims(String token){
+        return JwtClaims.from(extractAllClaims(token));
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimResolver){
@@ -63,10 +62,12 @@ public class JWTUtil {
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date())
                 .expiration(expirationDate)
+                // time-ordered, carries the issue time in milliseconds (see JwtClaims)
+                .id(Long.toString(idGenerator.nextId()))
                 .claim("userId", userDetails.getId())
                 .claim("roles", roles)
                 .claim("adminOf", userDetails.getAdminGroupIds())
-                .signWith(getSigningKey())
+                .signWith(jwtVerifier.getSigningKey())
                 .compact();
     }
 
@@ -79,19 +80,7 @@ public class JWTUtil {
                 .issuedAt(new Date())
                 .expiration(expirationDate)
                 .claim("jti", UUID.randomUUID().toString())
-                .signWith(getSigningKey())
+                .signWith(jwtVerifier.getSigningKey())
                 .compact();
     }
-
-    public boolean validateToken(String token, CustomUserDetails userDetails) {
-        try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        }catch (Exception e){
-            return false;
-        }
-    }
-    private boolean isTokenExpired(String token){
-        return extractExpiration(token).isBefore(Instant.now());
-    }
 }
@@ -0,0 +1,37 @@
+package org.example.projectchat.component;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+// Immutable view of a verified token. userId, roles and adminGroupIds are only present in access tokens.
+// issuedAt has millisecond precision for access tokens: their jti is a Snowflake id (iat only has seconds).
+public record JwtClaims(String subject, Long userId, List<String> roles, List<String> adminGroupIds,
+                        Instant issuedAt, Instant expiresAt, String jti) {
+
+    static JwtClaims from(Claims claims) {
+        Number userId = claims.get("userId", Number.class);
+        List<?> roles = claims.get("roles", List.class);
+        List<?> adminOf = claims.get("adminOf", List.class);
+        Date expiration = claims.getExpiration();
+        String jti = claims.getId();
+        return new JwtClaims(
+                claims.getSubject(),
+                userId != null ? userId.longValue() : null,
+                roles != null ? roles.stream().map(String::valueOf).toList() : List.of(),
+                adminOf != null ? adminOf.stream().map(String::valueOf).toList() : List.of(),
+                issuedAt(jti, claims.getIssuedAt()),
+                expiration != null ? expiration.toInstant() : null,
+                jti
+        );
+    }
+
+    private static Instant issuedAt(String jti, Date issuedAt) {
+        if (jti != null && !jti.isEmpty() && jti.chars().allMatch(Character::isDigit)) {
+            return Instant.ofEpochMilli(SnowflakeIdGenerator.timestampMillisOf(Long.parseLong(jti)));
+        }
+        return issuedAt != null ? issuedAt.toInstant() : null;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.projectchat.component;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Owns the signing key and the parser (both built once) and verifies each token with a single parse.
+// Clients send the same token with every request, so successful verifications are kept for a short time,
+// keyed by the signature segment; an entry is only used for the identical token and never past its expiry.
+@Component
+public class JwtVerifier {
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long cacheTtlMillis;
+    private final int cacheMaxSize;
+
+    private final Map<String, Verified> verified = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public JwtVerifier(@Value("${jwt.secret.key}") String secretKey,
+                       @Value("${jwt.verified-cache.ttl-ms:30000}") long cacheTtlMillis,
+                       @Value("${jwt.verified-cache.max-size:100000}") int cacheMaxSize,
+                       MeterRegistry meterRegistry) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cacheMaxSize = cacheMaxSize;
+
+        this.hits = Counter.builder("chat.auth.jwt.verifications").tag("result", "cached").register(meterRegistry);
+        this.misses = Counter.builder("chat.auth.jwt.verifications").tag("result", "parsed").register(meterRegistry);
+    }
+
+    public SecretKey getSigningKey() {
+        return signingKey;
+    }
+
+    // Claims of a correctly signed, unexpired token; throws JwtException (IllegalArgumentException if blank) otherwise
+    public JwtClaims verify(String token) {
+        String signature = signatureOf(token);
+        long now = System.currentTimeMillis();
+
+        Verified cached = signature != null ? verified.get(signature) : null;
+        if (cached != null) {
+            if (now < cached.validUntil() && cached.token().equals(token)) {
+                hits.increment();
+                return cached.claims();
+            }
+            verified.remove(signature, cached);
+        }
+
+        misses.increment();
+        JwtClaims claims = JwtClaims.from(parse(token));
+        if (signature != null && cacheTtlMillis > 0) {
+            long validUntil = now + cacheTtlMillis;
+            if (claims.expiresAt() != null) {
+                validUntil = Math.min(validUntil, claims.expiresAt().toEpochMilli());
+            }
+            if (verified.size() >= cacheMaxSize) {
+                evict(now);
+            }
+            verified.put(signature, new Verified(token, claims, validUntil));
+        }
+        return claims;
+    }
+
+    // Full parse without the cache
+    public Claims parse(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    private void evict(long now) {
+        verified.values().removeIf(entry -> entry.validUntil() <= now);
+        // still full of live entries: start over rather than track recency on the hot path
+        if (verified.size() >= cacheMaxSize) {
+            verified.clear();
+        }
+    }
+
+    private static String signatureOf(String token) {
+        if (token == null) {
+            return null;
+        }
+        int lastDot = token.lastIndexOf('.');
+        return lastDot >= 0 && lastDot < token.length() - 1 ? token.substring(lastDot + 1) : null;
+    }
+
+    private record Verified(String token, JwtClaims claims, long validUntil) {
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.projectchat.component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.exception.PasswordHashingRejectedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Password hashing (login, register) runs here instead of on request threads: a fixed pool of platform threads
+// (bcrypt is CPU bound) with a short queue. A full queue, or a task that waited longer than a client would,
+// fails fast with 503 so that a credential stuffing burst cannot starve the other endpoints.
+// The blocking work around a hash (token and user inserts, rehash updates) goes to the completion executor,
+// so a slow database cannot hold hashing threads.
+@Component
+@Slf4j
+public class PasswordHashingExecutor implements DisposableBean {
+    private final ThreadPoolExecutor pool;
+    private final ThreadPoolExecutor completionPool;
+    private final long maxWaitNanos;
+    private final MeterRegistry meterRegistry;
+
+    public PasswordHashingExecutor(MeterRegistry meterRegistry,
+                                   Environment environment,
+                                   @Value("${chat.auth.hashing.threads:0}") int threads,
+                                   @Value("${chat.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${chat.auth.hashing.max-wait-ms:2000}") long maxWaitMs,
+                                   @Value("${chat.auth.hashing.completion-threads:10}") int completionThreads) {
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ThreadPoolExecutor(count, count, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.prestartAllCoreThreads();
+        // no queue bound needed: completions only follow hashes, which the bounded pool already limits
+        ThreadFactory completionThreadFactory = Threading.VIRTUAL.isActive(environment)
+                ? new VirtualThreadTaskExecutor("password-hashing-completion-").getVirtualThreadFactory()
+                : new CustomizableThreadFactory("password-hashing-completion-");
+        this.completionPool = new ThreadPoolExecutor(completionThreads, completionThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), completionThreadFactory);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("chat.auth.hashing.queue.size", pool, executor -> executor.getQueue().size()).register(meterRegistry);
+        Gauge.builder("chat.auth.hashing.active", pool, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        log.info("Password hashing uses {} threads, queue capacity {}", count, queueCapacity);
+    }
+
+    // Runs the task on the hashing pool. Throws PasswordHashingRejectedException right away when the queue is full;
+    // a task that waited too long completes the future with it instead of running.
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                timer("chat.auth.hashing.wait", operation).record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxWaitNanos) {
+                    rejected(operation, "expired");
+                    result.completeExceptionally(new PasswordHashingRejectedException("Server is busy, try again later"));
+                    return;
+                }
+
+                long startedAt = System.nanoTime();
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    timer("chat.auth.hashing.duration", operation).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected(operation, "saturated");
+            throw new PasswordHashingRejectedException("Server is busy, try again later");
+        }
+        return result;
+    }
+
+    // For the database work before and after a hash (handleAsync / thenApplyAsync)
+    public Executor getCompletionExecutor() {
+        return completionPool;
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        completionPool.shutdown();
+        completionPool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void rejected(String operation, String reason) {
+        Counter.builder("chat.auth.hashing.rejected")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.debug("Password hashing for {} rejected ({})", operation, reason);
+    }
+
+    private Timer timer(String name, String operation) {
+        return Timer.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+}
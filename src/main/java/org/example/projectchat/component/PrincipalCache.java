@@ -0,0 +1,98 @@
+package org.example.projectchat.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.config.security.MyUserDetailService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Node-local username -> principal for token authentication that still needs the account (principal-source: database).
+// Entries expire after the ttl, so changes made on another node show up within it; on this node
+// invalidate() has to be called when a user's roles or password change. Logins never read from here.
+@Component
+@Slf4j
+public class PrincipalCache {
+    private final MyUserDetailService userDetailService;
+    private final long ttlMillis;
+    private final int maxSize;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Bumped by every invalidation; a load that overlapped one is returned but not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PrincipalCache(MyUserDetailService userDetailService,
+                          @Value("${chat.auth.principal-cache.ttl-ms:60000}") long ttlMillis,
+                          @Value("${chat.auth.principal-cache.max-size:100000}") int maxSize) {
+        this.userDetailService = userDetailService;
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    public CustomUserDetails get(String username) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(username);
+        if (entry != null && now < entry.expiresAt()) {
+            return entry.user();
+        }
+
+        long invalidationsBefore = invalidations.get();
+        CustomUserDetails loaded = userDetailService.loadUserByUsername(username);
+        // the password hash is only needed for logins
+        CustomUserDetails principal = new CustomUserDetails(
+                loaded.getId(), loaded.getUsername(), null, loaded.getAdminGroupIds(), loaded.getAuthorities());
+
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(username, new Entry(principal, now + ttlMillis));
+        if (invalidations.get() != invalidationsBefore) {
+            entries.remove(username);
+        }
+        return principal;
+    }
+
+    // Roles or password of the user changed; applied after the surrounding transaction commits
+    public void invalidate(String username) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            entries.remove(username);
+        });
+    }
+
+    // Role definitions changed
+    public void invalidateAll() {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            entries.clear();
+        });
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        if (entries.size() >= maxSize) {
+            log.debug("Principal cache full of live entries, clearing it");
+            entries.clear();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Entry(CustomUserDetails user, long expiresAt) {
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.projectchat.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+// The authenticated principal of a verified access token, for the REST filter and the STOMP CONNECT interceptor.
+// chat.auth.principal-source: claims = built from the signed userId/roles/adminOf claims alone, no database access
+// (role changes apply with the next access token); database = the account, through the PrincipalCache.
+@Component
+public class PrincipalResolver {
+    private final PrincipalCache principalCache;
+    private final AccessTokenDenylist denylist;
+    private final boolean fromClaims;
+
+    public PrincipalResolver(PrincipalCache principalCache,
+                             AccessTokenDenylist denylist,
+                             @Value("${chat.auth.principal-source:claims}") String principalSource) {
+        this.principalCache = principalCache;
+        this.denylist = denylist;
+        this.fromClaims = "claims".equalsIgnoreCase(principalSource);
+    }
+
+    // null if the token is not an access token (refresh tokens carry no userId), was revoked or not issued to the account
+    public CustomUserDetails resolve(JwtClaims claims) {
+        if (claims.userId() == null || claims.subject() == null || denylist.isRevoked(claims)) {
+            return null;
+        }
+
+        if (fromClaims) {
+            return CustomUserDetails.of(claims.userId(), claims.subject(), null, claims.roles(), claims.adminGroupIds());
+        }
+
+        CustomUserDetails userDetails = principalCache.get(claims.subject());
+        return claims.userId().equals(userDetails.getId()) ? userDetails : null;
+    }
+}
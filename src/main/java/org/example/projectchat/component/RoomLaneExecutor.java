@@ -0,0 +1,219 @@
+package org.example.projectchat.component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.util.Destinations;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Executor for the clientInboundChannel: SEND frames for /app/chat.sendMessage/{roomId} are hashed
+// by room onto single-threaded lanes (strict per-room order, parallel across rooms), other SEND frames
+// by session, and control frames (CONNECT, SUBSCRIBE, DISCONNECT, ...) go to their own lane.
+// Per session, a frame never runs before an earlier control frame of the same session has finished
+// (a SEND right after SUBSCRIBE sees the subscription): it is held back and handed to its lane then.
+// Control frames are not held back, so an UNSUBSCRIBE or DISCONNECT may run before the session's
+// earlier SENDs have; those are still processed.
+@Component
+@ConditionalOnProperty(name = "chat.inbound.dispatcher", havingValue = "lanes", matchIfMissing = true)
+@Slf4j
+public class RoomLaneExecutor implements Executor, DisposableBean {
+    private static final String SEND_MESSAGE_PREFIX = "/app/chat.sendMessage/";
+
+    private final ThreadPoolExecutor[] lanes;
+    private final ThreadPoolExecutor controlLane;
+    private final int laneCapacity;
+    // sessionId -> control frames not finished yet and the frames held back behind them
+    private final Map<String, SessionBarrier> barriers = new ConcurrentHashMap<>();
+
+    public RoomLaneExecutor(MeterRegistry meterRegistry,
+                            Environment environment,
+                            @Value("${chat.inbound.lanes:0}") int laneCount,
+                            @Value("${chat.inbound.lane-capacity:10000}") int laneCapacity) {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+
+        this.lanes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = newLane(threadFactory("inbound-lane-" + i + "-", virtualThreads), laneCapacity);
+            registerQueueGauge(meterRegistry, lanes[i], String.valueOf(i));
+        }
+        this.controlLane = newLane(threadFactory("inbound-control-", virtualThreads), laneCapacity);
+        this.laneCapacity = laneCapacity;
+        registerQueueGauge(meterRegistry, controlLane, "control");
+
+        log.info("Inbound STOMP dispatch uses {} room lanes and a control lane ({} threads)",
+                count, virtualThreads ? "virtual" : "platform");
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        ThreadPoolExecutor lane = laneFor(task);
+        String sessionId = sessionIdOf(task);
+        if (sessionId == null) {
+            lane.execute(task);
+        } else if (lane == controlLane) {
+            executeControl(sessionId, task);
+        } else if (!holdBack(sessionId, lane, task)) {
+            lane.execute(task);
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getQueueDepth(int lane) {
+        return lanes[lane].getQueue().size();
+    }
+
+    public int getControlQueueDepth() {
+        return controlLane.getQueue().size();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        controlLane.shutdown();
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        controlLane.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void executeControl(String sessionId, Runnable task) {
+        barriers.compute(sessionId, (id, barrier) -> {
+            SessionBarrier current = barrier != null ? barrier : new SessionBarrier();
+            current.pendingControl++;
+            return current;
+        });
+        try {
+            controlLane.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release(sessionId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(sessionId);
+            throw e;
+        }
+    }
+
+    // true if the session has control frames in flight; the task then runs once they are done
+    private boolean holdBack(String sessionId, ThreadPoolExecutor lane, Runnable task) {
+        boolean[] held = {false};
+        boolean[] full = {false};
+        barriers.computeIfPresent(sessionId, (id, barrier) -> {
+            held[0] = true;
+            if (barrier.heldBack.size() >= laneCapacity) {
+                full[0] = true;
+            } else {
+                barrier.heldBack.add(new HeldTask(lane, task));
+            }
+            return barrier;
+        });
+        if (full[0]) {
+            throw new RejectedExecutionException("Too many frames of session " + sessionId + " waiting for its control frames");
+        }
+        return held[0];
+    }
+
+    private void release(String sessionId) {
+        List<HeldTask> released = new ArrayList<>();
+        barriers.computeIfPresent(sessionId, (id, barrier) -> {
+            if (--barrier.pendingControl > 0) {
+                return barrier;
+            }
+            released.addAll(barrier.heldBack);
+            return null;
+        });
+        for (HeldTask held : released) {
+            try {
+                held.lane().execute(held.task());
+            } catch (RejectedExecutionException e) {
+                log.warn("Inbound lane is full, dropping a held back frame of session {}", sessionId);
+            }
+        }
+    }
+
+    private static String sessionIdOf(Runnable task) {
+        return task instanceof MessageHandlingRunnable handlingRunnable
+                ? SimpMessageHeaderAccessor.getSessionId(handlingRunnable.getMessage().getHeaders())
+                : null;
+    }
+
+    private ThreadPoolExecutor laneFor(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handlingRunnable)) {
+            return controlLane;
+        }
+
+        MessageHeaders headers = handlingRunnable.getMessage().getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return controlLane;
+        }
+
+        long roomId = Destinations.parseId(SimpMessageHeaderAccessor.getDestination(headers), SEND_MESSAGE_PREFIX);
+        if (roomId >= 0) {
+            return lanes[spread(Long.hashCode(roomId * 0x9E3779B97F4A7C15L))];
+        }
+
+        // other application destinations keep per-session order
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        return lanes[spread(sessionId != null ? sessionId.hashCode() : 0)];
+    }
+
+    private int spread(int hash) {
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    // a lane still runs one task at a time; on virtual threads a lane blocked on JDBC releases its carrier
+    private static ThreadFactory threadFactory(String prefix, boolean virtualThreads) {
+        return virtualThreads
+                ? new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory()
+                : new CustomizableThreadFactory(prefix);
+    }
+
+    private static ThreadPoolExecutor newLane(ThreadFactory threadFactory, int capacity) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static void registerQueueGauge(MeterRegistry meterRegistry, ThreadPoolExecutor lane, String name) {
+        Gauge.builder("chat.inbound.lane.queue.size", lane, executor -> executor.getQueue().size())
+                .tag("lane", name)
+                .register(meterRegistry);
+    }
+
+    private static final class SessionBarrier {
+        private int pendingControl;
+        private final List<HeldTask> heldBack = new ArrayList<>();
+    }
+
+    private record HeldTask(ThreadPoolExecutor lane, Runnable task) {
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.projectchat.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Time-ordered 64-bit ids: 41 bits of millis since EPOCH_MILLIS | 10 bits node id | 12 bits sequence.
+// Lock-free and allocation-free: the whole state is the last issued id.
+@Component
+@Slf4j
+public class SnowflakeIdGenerator {
+    public static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final long nodeBits;
+    private final AtomicLong lastId = new AtomicLong();
+
+    public SnowflakeIdGenerator(@Value("${chat.id.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ", got " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        log.info("Snowflake id generator initialized for node {}", nodeId);
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = lastId.get();
+            long candidate = ((System.currentTimeMillis() - EPOCH_MILLIS) << TIMESTAMP_SHIFT) | nodeBits;
+
+            if (candidate <= last) {
+                // same millisecond or clock moved back: continue after the last id,
+                // borrowing the next millisecond when the sequence is exhausted
+                candidate = (last & SEQUENCE_MASK) == SEQUENCE_MASK
+                        ? (((last >>> TIMESTAMP_SHIFT) + 1) << TIMESTAMP_SHIFT) | nodeBits
+                        : last + 1;
+            }
+
+            if (lastId.compareAndSet(last, candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    public static long timestampMillisOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.projectchat.component;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Resolves CurrentUser parameters of @MessageMapping methods from the STOMP session,
+// where the CONNECT interceptor stored it once for the lifetime of the connection
+@Component
+public class StompCurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return CurrentUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, Message<?> message) {
+        Map<String, Object> sessionAttributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        if (sessionAttributes != null && sessionAttributes.get(CurrentUser.SESSION_ATTRIBUTE) instanceof CurrentUser currentUser) {
+            return currentUser;
+        }
+
+        CurrentUser currentUser = CurrentUser.from(SimpMessageHeaderAccessor.getUser(message.getHeaders()));
+        if (currentUser == null) {
+            throw new AccessDeniedException("WebSocket session is not authenticated");
+        }
+        return currentUser;
+    }
+}
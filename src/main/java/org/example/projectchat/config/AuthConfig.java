@@ -1,5 +1,6 @@
 package org.example.projectchat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -8,8 +9,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class AuthConfig {
 
+    // raising the strength rehashes each password on its next successful login (see MyUserDetailService)
     @Bean
-    public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder passwordEncoder(@Value("${chat.auth.bcrypt-strength:10}") int strength){
+        return new BCryptPasswordEncoder(strength);
     }
 }
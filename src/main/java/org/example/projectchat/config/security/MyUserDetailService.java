@@ -1,12 +1,14 @@
 package org.example.projectchat.config.security;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.component.CustomUserDetails;
+import org.example.projectchat.component.PasswordHashingExecutor;
+import org.example.projectchat.model.Role;
 import org.example.projectchat.model.User;
 import org.example.projectchat.repository.UserRepository;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -16,29 +18,51 @@ import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class MyUserDetailService implements UserDetailsService {
+@Slf4j
+public class MyUserDetailService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     @Override
     public CustomUserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User appUser = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User with username: " + username + "not found"));
 
-        List<GrantedAuthority> authorities = appUser.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName()))
-                .map(authority -> (GrantedAuthority) authority)
-                .toList();
-
-        // TODO:
-        List<String> adminGroupIds = new ArrayList<>();
-
-        return new CustomUserDetails(
+        return CustomUserDetails.of(
                 appUser.getId(),
                 appUser.getUsername(),
                 appUser.getPassword(),
-                adminGroupIds,
-                authorities
+                appUser.getRoles().stream().map(Role::getName).toList(),
+                adminGroupIdsOf(appUser.getId())
         );
     }
+
+    // Groups the user administers, carried in the access token; also used by the token refresh
+    public List<String> adminGroupIdsOf(Long userId) {
+        // TODO:
+        return new ArrayList<>();
+    }
+
+    // Called by DaoAuthenticationProvider after a successful login whose stored hash is weaker than
+    // chat.auth.bcrypt-strength; the new hash was computed from the presented password (on the hashing pool).
+    // The update is written on the completion executor; if it fails, the next login rehashes again.
+    // Cached principals carry no password, so the principal cache needs no invalidation.
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        String username = user.getUsername();
+        passwordHashingExecutor.getCompletionExecutor().execute(() -> {
+            try {
+                if (userRepository.updatePassword(username, newPassword) > 0) {
+                    log.info("Password hash of user '{}' upgraded", username);
+                }
+            } catch (Exception e) {
+                log.warn("Password hash of user '{}' not upgraded: {}", username, e.getMessage());
+            }
+        });
+        // freshly loaded by loadUserByUsername for this login
+        CustomUserDetails details = (CustomUserDetails) user;
+        details.setPassword(newPassword);
+        return details;
+    }
 }
@@ -2,6 +2,7 @@ package org.example.projectchat.config.security;
 
 import lombok.RequiredArgsConstructor;
 import org.example.projectchat.component.JWTRequestFilter;
+import org.example.projectchat.controller.UserController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,7 +14,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -32,7 +32,7 @@ import java.util.List;
 public class SecurityConfig {
 
     private final JWTRequestFilter jwtRequestFilter;
-    private final UserDetailsService userDetailsService;
+    private final MyUserDetailService userDetailsService;
     private final PasswordEncoder passwordEncoder;
 
     private static final String[] SWAGGER_WHITELIST = {
@@ -53,6 +53,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(userDetailsService);
         authenticationProvider.setPasswordEncoder(passwordEncoder);
+        // rehash on login when the configured bcrypt strength was raised
+        authenticationProvider.setUserDetailsPasswordService(userDetailsService);
 
         return authenticationProvider;
     }
@@ -64,6 +66,8 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(List.of("http://localhost:5173", "http://127.0.0.1:5500"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Cache-Control", "X-Requested-With"));
+        // response headers the browser client may read
+        configuration.setExposedHeaders(List.of(UserController.NEXT_OFFSET_HEADER));
 
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
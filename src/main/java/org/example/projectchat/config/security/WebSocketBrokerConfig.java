@@ -0,0 +1,33 @@
+package org.example.projectchat.config.security;
+
+import org.example.projectchat.websocket.BackpressureSubProtocolWebSocketHandler;
+import org.example.projectchat.websocket.OutboundBackpressureMetrics;
+import org.example.projectchat.websocket.OutboundOverflowPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+// What @EnableWebSocketMessageBroker imports, except that sessions get the configured outbound
+// overflow policy; WebSocketConfig and other WebSocketMessageBrokerConfigurer beans still apply.
+@Configuration
+public class WebSocketBrokerConfig extends DelegatingWebSocketMessageBrokerConfiguration {
+    private final OutboundBackpressureMetrics backpressureMetrics;
+    private final OutboundOverflowPolicy overflowPolicy;
+
+    public WebSocketBrokerConfig(OutboundBackpressureMetrics backpressureMetrics,
+                                 @Value("${chat.ws.outbound.overflow-policy:disconnect}") String overflowPolicy) {
+        this.backpressureMetrics = backpressureMetrics;
+        this.overflowPolicy = OutboundOverflowPolicy.from(overflowPolicy);
+    }
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                        AbstractSubscribableChannel clientOutboundChannel) {
+        return new BackpressureSubProtocolWebSocketHandler(
+                clientInboundChannel, clientOutboundChannel, overflowPolicy, backpressureMetrics);
+    }
+}
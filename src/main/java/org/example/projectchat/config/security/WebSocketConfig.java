@@ -2,13 +2,28 @@ package org.example.projectchat.config.security;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.component.CustomUserDetails;
-import org.example.projectchat.component.JWTUtil;
+import org.example.projectchat.component.JwtClaims;
+import org.example.projectchat.component.JwtVerifier;
+import org.example.projectchat.component.PrincipalResolver;
+import org.example.projectchat.component.RoomLaneExecutor;
+import org.example.projectchat.component.StompCurrentUserArgumentResolver;
+import org.example.projectchat.websocket.CborOutboundInterceptor;
+import org.example.projectchat.websocket.PayloadCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.stomp.StompCommand;
@@ -17,30 +32,46 @@ import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.util.StringUtils;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 @Configuration
-@EnableWebSocketMessageBroker
 @Order(Ordered.HIGHEST_PRECEDENCE+99)
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
-    private final JWTUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final JwtVerifier jwtVerifier;
+    private final PrincipalResolver principalResolver;
+    private final StompCurrentUserArgumentResolver stompCurrentUserArgumentResolver;
+    private final ObjectProvider<RoomLaneExecutor> roomLaneExecutor;
+    private final Environment environment;
+    private final PayloadCodec payloadCodec;
+    private final CborOutboundInterceptor cborOutboundInterceptor;
 
     private final String AUTHORIZATION_HEADER = "Authorization";
     private final String BEARER_PREFIX = "Bearer ";
 
+    @Value("${chat.ws.outbound.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.ws.outbound.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry messageBrokerRegistry){
         messageBrokerRegistry.enableSimpleBroker("/topic", "/queue"); // /topic for public, /queue for private chat
         messageBrokerRegistry.setApplicationDestinationPrefixes("/app");
         messageBrokerRegistry.setUserDestinationPrefix("/user");
+
+        if(Threading.VIRTUAL.isActive(environment)){
+            messageBrokerRegistry.configureBrokerChannel().executor(new VirtualThreadTaskExecutor("ws-broker-"));
+            // a thread per message would otherwise reorder frames of the same session
+            messageBrokerRegistry.setPreservePublishOrder(true);
+        }
     }
 
     @Override
@@ -50,8 +81,46 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     }
 
+    // per-session outbound limits; what happens on overflow is chat.ws.outbound.overflow-policy (WebSocketBrokerConfig)
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration){
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration channelRegistration){
+        if(Threading.VIRTUAL.isActive(environment)){
+            channelRegistration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        }
+        channelRegistration.interceptors(cborOutboundInterceptor);
+    }
+
+    // SEND frames with content-type application/cbor; everything else keeps the default (JSON) converters
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters){
+        MappingJackson2MessageConverter cborConverter = new MappingJackson2MessageConverter(PayloadCodec.APPLICATION_CBOR);
+        cborConverter.setObjectMapper(payloadCodec.getCborMapper());
+        cborConverter.setStrictContentTypeMatch(true);
+        messageConverters.add(cborConverter);
+        return true;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> argumentResolvers){
+        argumentResolvers.add(stompCurrentUserArgumentResolver);
+    }
+
     @Override
     public void configureClientInboundChannel(ChannelRegistration channelRegistration){
+        // per-room ordered lanes (chat.inbound.dispatcher=lanes), otherwise Spring's default pool
+        RoomLaneExecutor laneExecutor = roomLaneExecutor.getIfAvailable();
+        if(laneExecutor != null){
+            channelRegistration.executor(laneExecutor);
+        }else if(Threading.VIRTUAL.isActive(environment)){
+            channelRegistration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+
         channelRegistration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -68,14 +137,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         log.debug("Извлечен JWT: {}", jwt);
 
                         try {
-                            String username = jwtUtil.extractUsername(jwt);
+                            JwtClaims claims = jwtVerifier.verify(jwt);
+                            String username = claims.subject();
                             if(StringUtils.hasText(username)){
-                                CustomUserDetails userDetails = (CustomUserDetails) userDetailsService.loadUserByUsername(username);
-                                log.debug("Authenticated user ID: {} in WebSocket", userDetails.getId());
-                                log.debug("Admin Group IDs: {} in WebSocket", userDetails.getAdminGroupIds());
-
+                                CustomUserDetails userDetails = principalResolver.resolve(claims);
 
-                                if(jwtUtil.validateToken(jwt, userDetails)){
+                                if(userDetails != null){
+                                    log.debug("Authenticated user ID: {} in WebSocket", userDetails.getId());
                                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                                             userDetails,
                                             null,
@@ -83,9 +151,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                                     );
 
                                     accessor.setUser(authentication);
+                                    // keep id/username/roles in the session so handlers never look the user up again
+                                    if(accessor.getSessionAttributes() != null){
+                                        accessor.getSessionAttributes().put(CurrentUser.SESSION_ATTRIBUTE, CurrentUser.from(userDetails));
+                                    }
                                     log.info("Пользователь '{}' аутентифицирован для WebSocket сессии.", username);
                                 }else {
-                                    log.warn("Невалидный JWT токен для WebSocket (проверка validateToken не прошла).");
+                                    log.warn("Невалидный JWT токен для WebSocket (не access токен или выдан не этому пользователю).");
                                     throw new AuthenticationException("Invalid JWT token") {};
                                 }
                             }
@@ -1,5 +1,6 @@
 package org.example.projectchat.controller;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -8,14 +9,18 @@ import org.example.projectchat.DTO.auth.LoginRequest;
 import org.example.projectchat.DTO.auth.LoginResponse;
 import org.example.projectchat.DTO.auth.RefreshTokenResponseDto;
 import org.example.projectchat.DTO.auth.RegisterRequest;
+import org.example.projectchat.component.AccessTokenDenylist;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.component.CustomUserDetails;
 import org.example.projectchat.component.JWTUtil;
-import org.example.projectchat.config.security.MyUserDetailService;
+import org.example.projectchat.component.JwtVerifier;
+import org.example.projectchat.component.PasswordHashingExecutor;
+import org.example.projectchat.exception.PasswordHashingRejectedException;
 import org.example.projectchat.exception.TokenRefreshException;
-import org.example.projectchat.model.RefreshToken;
 import org.example.projectchat.model.Role;
 import org.example.projectchat.model.User;
 import org.example.projectchat.repository.UserRepository;
+import org.example.projectchat.search.UserSearchIndex;
 import org.example.projectchat.service.RoleService;
 import org.example.projectchat.service.RefreshTokenService;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,12 +32,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -48,41 +53,58 @@ public class AuthController {
 
     private final RoleService roleService;
     private final RefreshTokenService refreshTokenService;
-    private final MyUserDetailService myUserDetailService;
+    private final UserSearchIndex userSearchIndex;
+    private final JwtVerifier jwtVerifier;
+    private final AccessTokenDenylist accessTokenDenylist;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private static final String BEARER_PREFIX = "Bearer ";
 
     @Value("${jwt.expiration.refresh-token}")
     private long jwtExpirationRefreshToken;
 
+    // bcrypt runs on the hashing pool, not on the request thread; a saturated pool answers 503 right away
     @PostMapping("/login")
-    public ResponseEntity<?> createAuthenticationToken(@RequestBody LoginRequest loginRequest, HttpServletResponse response){
-        try {
-            UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(loginRequest.username(), loginRequest.password());
-
-            // we give token to authentication and authentication use it to loadUser and PasswordEncoder
-            Authentication authentication = authenticationManager.authenticate(authenticationToken);
-
-            // if authentication will success
-            // get user details from Authentication
-            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
-
-            String accessToken = jwtUtil.generateAccessToken(userDetails);
-            String refreshToken = refreshTokenService.createRefreshToken(userDetails.getUsername()).getToken();
-
-            ResponseCookie cookie = ResponseCookie.from("refreshToken", refreshToken)
-                    .httpOnly(true)
-                    .secure(false) // TODO: In production it will be true for https
-                    .path("/api/auth")
-                    .maxAge(jwtExpirationRefreshToken)
-                    .sameSite("Lax")
-                    .build();
-            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
-
-            return ResponseEntity.ok(new LoginResponse(accessToken));
-        }catch (BadCredentialsException e){
-            return ResponseEntity.status(401).body("Error authentication: Incorrect login or password");
-        }catch (Exception e){
-            return ResponseEntity.status(500).body("Error in server: " + e.getMessage());
-        }
+    public CompletableFuture<ResponseEntity<?>> createAuthenticationToken(@RequestBody LoginRequest loginRequest){
+        UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(loginRequest.username(), loginRequest.password());
+
+        // we give token to authentication and authentication use it to loadUser and PasswordEncoder
+        // tokens (and the refresh token insert) are created on the completion executor, the hashing pool only hashes
+        return passwordHashingExecutor.submit("login", () -> authenticationManager.authenticate(authenticationToken))
+                .handleAsync((authentication, error) -> {
+                    if(error instanceof PasswordHashingRejectedException rejected){
+                        throw rejected;
+                    }
+                    if(error instanceof BadCredentialsException){
+                        return ResponseEntity.status(401).body("Error authentication: Incorrect login or password");
+                    }
+                    if(error != null){
+                        return ResponseEntity.status(500).body("Error in server: " + error.getMessage());
+                    }
+                    try {
+                        // if authentication will success
+                        // get user details from Authentication
+                        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+
+                        String accessToken = jwtUtil.generateAccessToken(userDetails);
+                        String refreshToken = refreshTokenService.createRefreshToken(userDetails);
+
+                        ResponseCookie cookie = ResponseCookie.from("refreshToken", refreshToken)
+                                .httpOnly(true)
+                                .secure(false) // TODO: In production it will be true for https
+                                .path("/api/auth")
+                                .maxAge(jwtExpirationRefreshToken)
+                                .sameSite("Lax")
+                                .build();
+
+                        // completed off the request thread: the cookie goes with the entity, not on the servlet response
+                        return ResponseEntity.ok()
+                                .header(HttpHeaders.SET_COOKIE, cookie.toString())
+                                .body(new LoginResponse(accessToken));
+                    }catch (Exception e){
+                        return ResponseEntity.status(500).body("Error in server: " + e.getMessage());
+                    }
+                }, passwordHashingExecutor.getCompletionExecutor());
     }
 
     @PostMapping("/refresh")
@@ -94,17 +116,11 @@ public class AuthController {
         }
 
         try {
-            RefreshToken foundRefreshToken = refreshTokenService.findByToken(refreshToken)
-                    .orElseThrow(() -> new TokenRefreshException("Refresh token not found in DB."));
+            // the owner (id, username, roles) comes back from the rotation statement itself
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotateRefreshToken(refreshToken);
+            String newAccessToken = jwtUtil.generateAccessToken(rotation.user());
 
-            refreshTokenService.verifyExpirationAndRevocation(foundRefreshToken);
-
-            User user = foundRefreshToken.getUser();
-            String newAccessToken = jwtUtil.generateAccessToken(createCustomUserDetailsFromUser(user));
-
-            String newRefreshTokenString = refreshTokenService.rotateRefreshToken(foundRefreshToken);
-
-            ResponseCookie newRefreshTokenCookie = ResponseCookie.from("refreshToken", newRefreshTokenString)
+            ResponseCookie newRefreshTokenCookie = ResponseCookie.from("refreshToken", rotation.refreshToken())
                     .httpOnly(true)
                     .secure(false) // TODO: In production it will be true
                     .path("/api/auth")
@@ -126,9 +142,31 @@ public class AuthController {
         }
     }
 
-    private CustomUserDetails createCustomUserDetailsFromUser(User user){
-        return (CustomUserDetails) myUserDetailService.loadUserByUsername(user.getUsername());
+    // Logout on every device: all refresh tokens and every access token issued until now
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(CurrentUser user, HttpServletResponse response){
+        int revoked = refreshTokenService.revokeAllUserTokens(user.id());
+        accessTokenDenylist.revokeAllForUser(user.id());
+        clearRefreshTokenCookie(response);
+        log.info("User '{}' logged out everywhere ({} refresh tokens revoked).", user.username(), revoked);
+
+        Map<String, String> responseLogout = new HashMap<>();
+        responseLogout.put("message", "Logged out on all devices.");
+        return ResponseEntity.ok(responseLogout);
+    }
+
+    // the access token of the logging out client stops working too; an invalid or expired one needs nothing
+    private void revokeAccessToken(String authorization){
+        if(authorization == null || !authorization.startsWith(BEARER_PREFIX)){
+            return;
+        }
+        try {
+            accessTokenDenylist.revoke(jwtVerifier.verify(authorization.substring(BEARER_PREFIX.length())));
+        }catch (JwtException | IllegalArgumentException e){
+            log.debug("Access token on logout not revoked: {}", e.getMessage());
+        }
     }
+
     private void clearRefreshTokenCookie(HttpServletResponse response) {
         ResponseCookie deleteRefreshTokenCookie = ResponseCookie.from("refreshToken", "")
                 .httpOnly(true)
@@ -141,35 +179,42 @@ public class AuthController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest registerRequest){
+    public CompletableFuture<ResponseEntity<?>> register(@Valid @RequestBody RegisterRequest registerRequest){
         if(userRepository.existsUserByUsername(registerRequest.username())){
-            return ResponseEntity.status(HttpStatus.CONFLICT).body("User by this username are exist");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).body("User by this username are exist"));
         }
 
-        User newUser = new User();
-        newUser.setUsername(registerRequest.username());
-        newUser.setUserFirstName(registerRequest.userFirstName());
-        newUser.setEmail(registerRequest.email());
-        newUser.setPassword(passwordEncoder.encode(registerRequest.password()));
-
         Role userRole = roleService.findUserByName("ROLE_USER")
                 .orElseThrow(() -> new RuntimeException("Error: Role is not found"));
-        newUser.getRoles().add(userRole);
 
-        try {
-            userRepository.save(newUser);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "User created successfully");
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
-        }catch (Exception e){
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Server error during registration: " + e.getMessage());
-        }
+        return passwordHashingExecutor.submit("register", () -> passwordEncoder.encode(registerRequest.password()))
+                .thenApplyAsync(passwordHash -> {
+                    User newUser = new User();
+                    newUser.setUsername(registerRequest.username());
+                    newUser.setUserFirstName(registerRequest.userFirstName());
+                    newUser.setEmail(registerRequest.email());
+                    newUser.setPassword(passwordHash);
+                    newUser.getRoles().add(userRole);
+
+                    try {
+                        userRepository.save(newUser);
+                        userSearchIndex.userRegistered(newUser.getId(), newUser.getUsername());
+                        Map<String, String> response = new HashMap<>();
+                        response.put("message", "User created successfully");
+                        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+                    }catch (Exception e){
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Server error during registration: " + e.getMessage());
+                    }
+                }, passwordHashingExecutor.getCompletionExecutor());
 
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(@CookieValue(name = "refreshToken", required = false) String refreshTokenString, HttpServletResponse response){
+    public ResponseEntity<?> logout(@CookieValue(name = "refreshToken", required = false) String refreshTokenString,
+                                    @RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                    HttpServletResponse response){
         log.info("Logout attempt received.");
+        revokeAccessToken(authorization);
 
         if (refreshTokenString == null || refreshTokenString.isEmpty()) {
             log.info("No refresh token found in cookie. Assuming already logged out or cookie cleared.");
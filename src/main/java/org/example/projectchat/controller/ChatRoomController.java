@@ -6,15 +6,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.chat.ChatRoomDto;
 import org.example.projectchat.DTO.chat.ChatRoomListItemDto;
 import org.example.projectchat.DTO.chat.CreateGroupChatRequest;
-import org.example.projectchat.model.User;
+import org.example.projectchat.DTO.chat.MarkReadRequest;
+import org.example.projectchat.DTO.chat.RoomReadStateDto;
+import org.example.projectchat.DTO.chat.RoomOnlineCountDto;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.service.ChatRoomService;
-import org.example.projectchat.service.UserService;
+import org.example.projectchat.service.PresenceService;
+import org.example.projectchat.service.ReadCursorService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
 
-import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -24,17 +27,14 @@ import java.util.List;
 public class ChatRoomController {
 
     // Injection services
-    private final UserService userService;
     private final ChatRoomService chatRoomService;
+    private final PresenceService presenceService;
+    private final ReadCursorService readCursorService;
 
     // Get current user's chat
     @GetMapping
-    public ResponseEntity<List<ChatRoomListItemDto>> getUserChatRooms(Principal principal){
-        String username = principal.getName();
-        log.info("Response chat rooms for user {}", username);
-
-        User user = userService.findByUsername(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+    public ResponseEntity<List<ChatRoomListItemDto>> getUserChatRooms(CurrentUser user){
+        log.info("Response chat rooms for user {}", user.username());
 
         List<ChatRoomListItemDto> chatRoomDtos = chatRoomService.findUserChatListItems(user);
 
@@ -45,13 +45,9 @@ public class ChatRoomController {
     @GetMapping("/{roomId}")
     public ResponseEntity<ChatRoomDto> getChatRoomById(
             @PathVariable Long roomId,
-            Principal principal) {
-
-        String username = principal.getName();
-        log.info("Запрос деталей для комнаты {} от пользователя {}", roomId, username);
+            CurrentUser user) {
 
-        User user = userService.findByUsername(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден"));
+        log.info("Запрос деталей для комнаты {} от пользователя {}", roomId, user.username());
 
         ChatRoomDto chatRoomDto = chatRoomService.getChatRoomDetails(roomId, user);
 
@@ -62,13 +58,9 @@ public class ChatRoomController {
     @PostMapping("/group")
     public ResponseEntity<ChatRoomDto> createGroupChat(
             @Valid @RequestBody CreateGroupChatRequest createGroupChatRequest,
-            Principal principal)
+            CurrentUser user)
     {
-        String username = principal.getName();
-        log.info("Create chat rooms for user {}", username);
-
-        User user = userService.findByUsername(username)
-                .orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not FOUND"));
+        log.info("Create chat rooms for user {}", user.username());
 
         ChatRoomDto newGroup = chatRoomService.createGroupChat(
                 createGroupChatRequest.groupName(),
@@ -82,13 +74,9 @@ public class ChatRoomController {
     @PostMapping("/private/{username}")
     public ResponseEntity<ChatRoomDto> getOrCreatePrivateChat(
             @PathVariable String username,
-            Principal principal
+            CurrentUser userA
     ){
-        String usernameA = principal.getName();
-        log.info("Запрос на приватный чат между {} и пользователем {}", usernameA, username);
-
-        User userA = userService.findByUsername(usernameA)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Current User not found"));
+        log.info("Запрос на приватный чат между {} и пользователем {}", userA.username(), username);
 
         ChatRoomDto chatRoomDto =chatRoomService.getOrCreateChatRoomService(userA, username);
 
@@ -100,13 +88,9 @@ public class ChatRoomController {
     public ResponseEntity<ChatRoomDto> addParticipantToRoom(
             @PathVariable Long roomId,
             @PathVariable String usernameToAdd,
-            Principal principal
+            CurrentUser userInitiator
     ){
-        String username = principal.getName();
-        log.info("Response to add user {} in group {} from user {}",usernameToAdd, roomId, username);
-
-        User userInitiator = userService.findByUsername(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User for adding member to group NOT FOUND"));
+        log.info("Response to add user {} in group {} from user {}",usernameToAdd, roomId, userInitiator.username());
 
         ChatRoomDto chatRoomDto = chatRoomService.addParticipantsToGroup(roomId, usernameToAdd, userInitiator);
         return ResponseEntity.ok(chatRoomDto);
@@ -117,17 +101,34 @@ public class ChatRoomController {
     public ResponseEntity<ChatRoomDto> deleteParticipantFromRoom(
             @PathVariable Long roomId,
             @PathVariable String usernameToDelete,
-            Principal principal
+            CurrentUser userInitiator
     ){
-        String username = principal.getName();
-        log.info("Response to delete user {} in group {} from user {}",usernameToDelete, roomId, username);
-
-        User userInitiator = userService.findByUsername(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User for removing member from group NOT FOUND"));
+        log.info("Response to delete user {} in group {} from user {}",usernameToDelete, roomId, userInitiator.username());
 
         chatRoomService.deleteParticipantsFromGroup(roomId, usernameToDelete, userInitiator);
 
         return ResponseEntity.noContent().build();
     }
 
+    // Members of the room that are currently connected
+    @GetMapping("/{roomId}/online")
+    public ResponseEntity<List<UserDto>> getOnlineMembers(@PathVariable Long roomId, CurrentUser user){
+        return ResponseEntity.ok(presenceService.findOnlineMembers(roomId, user));
+    }
+
+    @GetMapping("/{roomId}/online/count")
+    public ResponseEntity<RoomOnlineCountDto> getOnlineCount(@PathVariable Long roomId, CurrentUser user){
+        return ResponseEntity.ok(presenceService.countOnlineMembers(roomId, user));
+    }
+
+    // Advance the read cursor; it never moves backwards
+    @PutMapping("/{roomId}/read")
+    public ResponseEntity<RoomReadStateDto> markRead(
+            @PathVariable Long roomId,
+            @Valid @RequestBody MarkReadRequest markReadRequest,
+            CurrentUser user
+    ){
+        return ResponseEntity.ok(readCursorService.markRead(roomId, markReadRequest.messageId(), user));
+    }
+
 }
@@ -5,9 +5,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.chat.MessageDto;
 import org.example.projectchat.DTO.chat.MessageRequest;
-import org.example.projectchat.model.User;
+import org.example.projectchat.DTO.chat.MessageSearchResultDto;
+import org.example.projectchat.DTO.chat.MessageSliceDto;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.service.MessageService;
-import org.example.projectchat.service.UserService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -15,9 +16,6 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
-
-import java.security.Principal;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -25,7 +23,6 @@ import java.security.Principal;
 @Slf4j
 public class MessageController {
     private final MessageService messageService;
-    private final UserService userService;
 
     // Send Message
     @PostMapping
@@ -41,16 +38,41 @@ public class MessageController {
     public ResponseEntity<Page<MessageDto>> getMessageHistory(
             @PathVariable Long roomId,
             @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.ASC) Pageable pageable,
-            Principal principal
+            CurrentUser user
             )
     {
-        String username = principal.getName();
-        log.info("Запрос истории сообщений для комнаты {} от пользователя {}", roomId, username);
-
-        User user = userService.findByUsername(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден"));
+        log.info("Запрос истории сообщений для комнаты {} от пользователя {}", roomId, user.username());
 
         Page<MessageDto> messageDtoPage = messageService.findMessageHistory(roomId, user, pageable);
         return ResponseEntity.ok(messageDtoPage);
     }
+
+    // Message history newest first with keyset cursors (no count query, flat latency at any depth)
+    @GetMapping("/rooms/{roomId}")
+    public ResponseEntity<MessageSliceDto> getMessageSlice(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int limit,
+            CurrentUser user
+    ){
+        log.info("Запрос истории сообщений (cursor) для комнаты {} от пользователя {}", roomId, user.username());
+
+        return ResponseEntity.ok(messageService.findMessageSlice(roomId, user, cursor, before, after, limit));
+    }
+
+    // Full-text search: words must all match, word* matches a prefix, "quoted words" a phrase
+    @GetMapping("/rooms/{roomId}/search")
+    public ResponseEntity<MessageSearchResultDto> searchMessages(
+            @PathVariable Long roomId,
+            @RequestParam String q,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "20") int limit,
+            CurrentUser user
+    ){
+        log.info("Поиск сообщений в комнате {} от пользователя {}", roomId, user.username());
+
+        return ResponseEntity.ok(messageService.searchMessages(roomId, user, q, before, limit));
+    }
 }
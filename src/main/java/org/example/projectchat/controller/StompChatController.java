@@ -1,81 +1,69 @@
 package org.example.projectchat.controller;
 
 
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.chat.ChatMessageDto;
-import org.example.projectchat.DTO.chat.MessageDto;
-import org.example.projectchat.model.ChatRoom;
-import org.example.projectchat.model.Message;
-import org.example.projectchat.model.User;
-import org.example.projectchat.repository.ChatRoomRepository;
-import org.example.projectchat.repository.MessageRepository;
-import org.example.projectchat.service.UserService;
-import org.springframework.http.HttpStatus;
+import org.example.projectchat.DTO.chat.TypingRequest;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.service.MessageIngestService;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.example.projectchat.service.TypingIndicatorService;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Controller;
-import org.springframework.web.server.ResponseStatusException;
-
-import java.security.Principal;
 
 @Controller
 @Slf4j
 @RequiredArgsConstructor
 public class StompChatController {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final MessageRepository messageRepository;
-    private final ChatRoomRepository chatRoomRepository;
-    private final UserService userService;
+    private final ChatBroadcaster chatBroadcaster;
+    private final MessageIngestService messageIngestService;
+    private final RoomMembershipIndex membershipIndex;
+    private final TypingIndicatorService typingIndicatorService;
 
     @MessageMapping("/chat.sendMessage/{roomId}")
-    @Transactional
-    public void sendMessage(@DestinationVariable Long roomId, @Payload ChatMessageDto chatMessageDto, Principal principal){
-        String username = principal.getName();
+    public void sendMessage(@DestinationVariable Long roomId, @Payload ChatMessageDto chatMessageDto, CurrentUser sender){
+        String username = sender.username();
         log.info("Сообщение получено для комнаты {}: от {}: {} (ClientMsgID: {})",
                 roomId, username, chatMessageDto.content(), chatMessageDto.clientMessageId()); // Log it
 
-        User sender = userService.findByUsername(username).orElseThrow(() -> {
-            log.error("STOMP CHAT Error: User {} not found", username);
-            messagingTemplate.convertAndSendToUser(username, "/queue/errors", "User not found for sending message.");
-            return new IllegalArgumentException("Sender not found");
-        });
-
-        ChatRoom chatRoom = chatRoomRepository.findById(roomId).orElseThrow(() -> {
-            log.error("STOMP CHAT Error: Room with ID {} not found", roomId);
-            messagingTemplate.convertAndSendToUser(username, "/queue/errors", "Chat room not found.");
-            return new IllegalArgumentException("Room chat not found!");
-        });
-
-        if (chatRoom.getParticipants().stream().noneMatch(p -> p.getId().equals(sender.getId()))) {
+        // unknown rooms have no participants, so this also covers "room not found"
+        if (!membershipIndex.isMember(roomId, sender.id())) {
             log.warn("STOMP CHAT: User {} is not a participant of room {}", username, roomId);
-            messagingTemplate.convertAndSendToUser(username, "/queue/errors", "You are not a participant of this chat room.");
+            chatBroadcaster.sendToUser(username, "/queue/errors", "You are not a participant of this chat room.");
             throw new AccessDeniedException("User is not a participant of this chat room.");
         }
 
-        Message message = new Message();
-        message.setContent(chatMessageDto.content());
-        message.setSender(sender);
-        message.setChatRoom(chatRoom);
+        typingIndicatorService.stopTyping(roomId, sender.id());
 
-        Message savedMessage = messageRepository.save(message);
-        log.info("Сообщение сохранено с ID: {}", savedMessage.getId());
+        String destination = "/topic/rooms/" + roomId;
+        messageIngestService.submit(roomId, sender.id(), username, chatMessageDto.content(), chatMessageDto.clientMessageId())
+                .whenComplete((messageToSendToClients, ex) -> {
+                    if (ex != null) {
+                        log.error("STOMP CHAT Error: message from {} to room {} was not saved: {}", username, roomId, ex.getMessage());
+                        chatBroadcaster.sendToUser(username, "/queue/errors", "Message could not be saved.");
+                        return;
+                    }
 
-        MessageDto messageToSendToClients = new MessageDto(
-                savedMessage.getId(),
-                savedMessage.getContent(),
-                savedMessage.getCreatedAt(),
-                sender.getUsername(),
-                chatMessageDto.clientMessageId()
-        );
+                    // broadcast only after the batch containing this message is committed
+                    log.info("Сообщение сохранено с ID: {}", messageToSendToClients.id());
+                    chatBroadcaster.broadcast(destination, messageToSendToClients);
+                    log.info("STOMP CHAT: Message broadcast to topic: {} with payload: {}", destination, messageToSendToClients);
+                });
+    }
 
-        String destination = "/topic/rooms/" + roomId;
-        messagingTemplate.convertAndSend(destination, messageToSendToClients);
-        log.info("STOMP CHAT: Message broadcast to topic: {} with payload: {}", destination, messageToSendToClients);
+    // Ephemeral, never persisted; aggregated per room and sent to /topic/rooms/{roomId}/typing
+    @MessageMapping("/chat.typing/{roomId}")
+    public void typing(@DestinationVariable Long roomId, @Payload TypingRequest typingRequest, CurrentUser sender){
+        if (!membershipIndex.isMember(roomId, sender.id())) {
+            log.debug("STOMP TYPING: User {} is not a participant of room {}", sender.username(), roomId);
+            return;
+        }
+        typingIndicatorService.update(roomId, sender, typingRequest.typing());
     }
 }
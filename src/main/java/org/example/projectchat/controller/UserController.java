@@ -3,6 +3,8 @@ package org.example.projectchat.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.DTO.user.UserSearchResultDto;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,17 +19,30 @@ import java.util.List;
 @RequiredArgsConstructor
 @Slf4j
 public class UserController {
+    // offset of the next page; absent on the last page
+    public static final String NEXT_OFFSET_HEADER = "X-Next-Offset";
+
     private final UserService userService;
 
-    // Search user based their usernames
+    // Autocomplete users by username: prefix matches and the caller's contacts first, paged by offset.
+    // The body stays a plain list of users; paging is in the X-Next-Offset header.
     @GetMapping("/search")
-    public ResponseEntity<List<UserDto>> searchUsers(@RequestParam String usernameQuery){
+    public ResponseEntity<List<UserDto>> searchUsers(
+            @RequestParam String usernameQuery,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "10") int limit,
+            CurrentUser user
+    ){
         log.info("Received user search request for query: '{}'", usernameQuery);
 
-        List<UserDto> foundUsers = userService.searchUserByUsernameContaining(usernameQuery);
-        log.info("Found {} users for query: '{}'", foundUsers.size(), usernameQuery);
+        UserSearchResultDto foundUsers = userService.searchUsers(user, usernameQuery, offset, limit);
+        log.info("Found {} users for query: '{}'", foundUsers.users().size(), usernameQuery);
 
-        return ResponseEntity.ok(foundUsers);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (foundUsers.nextOffset() != null) {
+            response.header(NEXT_OFFSET_HEADER, String.valueOf(foundUsers.nextOffset()));
+        }
+        return response.body(foundUsers.users());
     }
 
 }
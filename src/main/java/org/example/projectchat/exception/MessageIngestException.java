@@ -0,0 +1,16 @@
+package org.example.projectchat.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class MessageIngestException extends RuntimeException
+{
+    public MessageIngestException(String message){
+        super(message);
+    }
+
+    public MessageIngestException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.projectchat.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingRejectedException extends RuntimeException
+{
+    public PasswordHashingRejectedException(String message){
+        super(message);
+    }
+}
@@ -1,7 +1,9 @@
 package org.example.projectchat.exception.handler;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.exception.PasswordHashingRejectedException;
 import org.example.projectchat.exception.TokenRefreshException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -42,6 +44,16 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex, "You do not have permission to access this resource.", HttpStatus.FORBIDDEN, request);
     }
 
+    // Password hashing pool saturated: expected under a login burst, so no stack trace
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<Object> handlePasswordHashingRejected(PasswordHashingRejectedException ex, WebRequest request) {
+        log.warn("Password hashing rejected: {} (Path: {})", ex.getMessage(), getPath(request));
+        ResponseEntity<Object> response = buildErrorResponse(ex, ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE, request);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, WebRequest request) {
         List<String> errors = ex.getBindingResult()
@@ -2,109 +2,100 @@ package org.example.projectchat.listener;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.example.projectchat.DTO.chat.ChatMessageDto;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.service.PresenceDeltaService;
+import org.example.projectchat.service.PresenceService;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
-import java.security.Principal;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketEventListener {
-    private final SimpMessagingTemplate simpMessagingTemplate;
-    private final Map<String, ActiveWebSocketUser> activeUsers = new ConcurrentHashMap<>();
-    private static final Pattern chatTopicPattern = Pattern.compile("/topic/chats/(\\d+)");
+    private final PresenceService presenceService;
+    private final PresenceDeltaService presenceDeltaService;
 
+    // CONNECTED rather than CONNECT: the CONNECT event fires before the interceptor authenticates the session
     @EventListener
-    public void handleWebSocketEventListener(SessionConnectEvent sessionConnectEvent){
-        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(sessionConnectEvent.getMessage());
-        Principal userPrincipal = accessor.getUser();
-        String sessionId = accessor.getSessionId();
-
-        if (userPrincipal != null && sessionId != null) {
-            log.info(">>> WebSocket CONNECTED. SessionId: {}, User: {}", sessionId, userPrincipal.getName());
-        } else {
-            log.warn(">>> WebSocket CONNECTED. SessionId: {}. User is NULL (maybe handshake phase?)", sessionId);
+    public void handleWebSocketConnectedListener(SessionConnectedEvent connectedEvent){
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(connectedEvent.getMessage().getHeaders());
+        CurrentUser user = CurrentUser.from(connectedEvent.getUser());
+
+        if (user == null || sessionId == null) {
+            log.warn(">>> WebSocket CONNECTED. SessionId: {}. User is NULL", sessionId);
+            return;
         }
+
+        boolean firstSession = presenceService.connect(sessionId, user);
+        log.info(">>> WebSocket CONNECTED. SessionId: {}, User: {}, first session: {}", sessionId, user.username(), firstSession);
     }
 
     @EventListener
     public void handleWebSocketSubscriberListener(SessionSubscribeEvent subscribeEvent){
         SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.wrap(subscribeEvent.getMessage());
         String destination = headerAccessor.getDestination();
-        Principal principal = headerAccessor.getUser();
         String sessionId = headerAccessor.getSessionId();
+        CurrentUser user = currentUser(headerAccessor);
 
-        if(principal == null || sessionId == null){
+        if(user == null || sessionId == null){
             log.warn("Попытка подписки на {} без аутентифицированного пользователя (SessionId: {})", destination, sessionId);
             return;
         }
 
-        String username = principal.getName();
-        log.info("Пользователь '{}' (SessionId: {}) подписался на: {}", username, sessionId, destination);
-
-        if(destination != null){
-            Matcher matcher = chatTopicPattern.matcher(destination);
-            if(matcher.matches()){
-                Long roomId = Long.parseLong(matcher.group(1));
-                log.info("Пользователь '{}' присоединился к комнате {}", username, roomId);
+        log.info("Пользователь '{}' (SessionId: {}) подписался на: {}", user.username(), sessionId, destination);
 
-                ActiveWebSocketUser activeUser = activeUsers.computeIfAbsent(sessionId, id -> new ActiveWebSocketUser(username));
-                activeUser.addSubscribedRoomId(roomId);
-                log.info("Пользователь '{}' теперь активен в комнате {}. Активные сессии: {}", username, roomId, activeUsers.size());
+        Long joinedRoomId = presenceService.subscribe(sessionId, headerAccessor.getSubscriptionId(), destination);
+        if(joinedRoomId != null){
+            log.info("Пользователь '{}' присоединился к комнате {}", user.username(), joinedRoomId);
+            presenceDeltaService.joined(joinedRoomId, user.id(), user.username());
+        }
+    }
 
-                ChatMessageDto systemMessage = new ChatMessageDto(
-                        "System",
-                        username + " joined the chat!"
-                );
+    @EventListener
+    public void handleWebSocketUnsubscribeListener(SessionUnsubscribeEvent unsubscribeEvent){
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.wrap(unsubscribeEvent.getMessage());
+        Long leftRoomId = presenceService.unsubscribe(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
+        CurrentUser user = currentUser(headerAccessor);
 
-                simpMessagingTemplate.convertAndSend(destination, systemMessage);
-            }
+        if(leftRoomId != null && user != null){
+            presenceDeltaService.left(leftRoomId, user.id(), user.username());
         }
     }
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent disconnectEvent){
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(disconnectEvent.getMessage());
-        Principal principal = headerAccessor.getUser();
-        String sessionId = headerAccessor.getSessionId();
+        String sessionId = disconnectEvent.getSessionId();
 
         if (sessionId == null) {
             log.error("<<< Disconnect event received without sessionId!");
             return;
         }
 
-        ActiveWebSocketUser disconnectedUser = activeUsers.remove(sessionId);
-        if(disconnectedUser != null){
-            String username = disconnectedUser.getUsername();
-            Set<Long> roomIds = disconnectedUser.getSubscribedRoomsId();
-            log.info("<<< WebSocket DISCONNECTED. SessionId: {}, User: {}. Был в комнатах: {}", sessionId, username, roomIds);
-
-            ChatMessageDto systemMessage = new ChatMessageDto("System", username + " left the chat.");
+        PresenceService.Disconnection disconnection = presenceService.disconnect(sessionId);
+        if(disconnection == null){
+            log.warn("<<< WebSocket DISCONNECTED. SessionId: {}. User information not available.", sessionId);
+            return;
+        }
 
-            if(roomIds != null){
-                roomIds.forEach(roomId -> {
-                    String destination = "/topic/chats/" + roomId;
-                    simpMessagingTemplate.convertAndSend(destination, systemMessage);
-                    log.info("Отправлено 'left' уведомление для {} в {}", username, destination);
-                });
-            }
+        log.info("<<< WebSocket DISCONNECTED. SessionId: {}, User: {}. Покинул комнаты: {}",
+                sessionId, disconnection.username(), disconnection.leftRooms());
+        // other devices of the same user keep them online in their rooms; a quick reconnect cancels the leave
+        disconnection.leftRooms().forEach(roomId ->
+                presenceDeltaService.left(roomId, disconnection.userId(), disconnection.username()));
+    }
 
-        }else{
-            log.warn("<<< WebSocket DISCONNECTED. SessionId: {}. User information not available.", sessionId);
-            log.info("Активные сессии после дисконнекта: {}", activeUsers.size());
+    private static CurrentUser currentUser(SimpMessageHeaderAccessor headerAccessor){
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        if (sessionAttributes != null && sessionAttributes.get(CurrentUser.SESSION_ATTRIBUTE) instanceof CurrentUser currentUser) {
+            return currentUser;
         }
+        return CurrentUser.from(headerAccessor.getUser());
     }
 }
@@ -17,7 +17,7 @@ import java.util.Set;
 @AllArgsConstructor
 public class ChatRoom {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     private String name;
@@ -38,5 +38,7 @@ public class ChatRoom {
 
     @CreationTimestamp
     private LocalDateTime createdAt;
+    // written by the message ingest batch only
+    @Column(insertable = false, updatable = false)
     private LocalDateTime lastActivityAt;
 }
@@ -15,11 +15,12 @@ import java.time.Instant;
 @NoArgsConstructor
 public class RefreshToken {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
-    @Column(unique = true, nullable = false, length = 512)
-    private String token;
+    // SHA-256 of the token; the token itself is not stored
+    @Column(name = "token_hash", unique = true, nullable = false)
+    private byte[] tokenHash;
 
     @Column(unique = true, nullable = false)
     private String jti;
@@ -28,6 +29,12 @@ public class RefreshToken {
 
     private boolean revoked = false;
 
+    private Instant revokedAt;
+
+    // id of the first token of the login this token was rotated from
+    @Column(nullable = false)
+    private Long familyId;
+
     private String replacedByTokenJti;
 
 
@@ -0,0 +1,59 @@
+package org.example.projectchat.model;
+
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+// Hibernate creates id generators itself; the configured SnowflakeIdGenerator bean is looked up
+// once per generator through Hibernate's bean container (Spring's, see HibernateJpaConfiguration).
+public class SnowflakeIdentifierGenerator implements IdentifierGenerator {
+    // the singleton, not a fresh instance per generator
+    private static final BeanContainer.LifecycleOptions SHARED_BEAN = new BeanContainer.LifecycleOptions() {
+        @Override
+        public boolean canUseCachedReferences() {
+            return true;
+        }
+
+        @Override
+        public boolean useJpaCompliantCreation() {
+            return false;
+        }
+    };
+
+    private SnowflakeIdGenerator idGenerator;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        BeanContainer beanContainer = serviceRegistry.requireService(ManagedBeanRegistry.class).getBeanContainer();
+        if (beanContainer == null) {
+            throw new MappingException("No bean container to look up SnowflakeIdGenerator from");
+        }
+        idGenerator = beanContainer.getBean(SnowflakeIdGenerator.class, SHARED_BEAN, new NoFallback()).getBeanInstance();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return idGenerator.nextId();
+    }
+
+    // the node id comes from configuration, so a default-constructed generator would be wrong
+    private static final class NoFallback implements BeanInstanceProducer {
+        @Override
+        public <B> B produceBeanInstance(Class<B> beanType) {
+            throw new MappingException("No " + beanType.getSimpleName() + " bean is configured");
+        }
+
+        @Override
+        public <B> B produceBeanInstance(String name, Class<B> beanType) {
+            return produceBeanInstance(beanType);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.projectchat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.model.ChatRoomType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+// The chat list in one statement: rooms, participants and the denormalized last message
+// (chat_rooms.last_message_id, kept up to date by the message ingest batch).
+@Repository
+@RequiredArgsConstructor
+public class ChatListQueryRepository {
+    private static final String CHAT_LIST_SQL = """
+            select c.id, c.name, c.type, c.message_count, c.last_message_id,
+                   array(select u.username from chatroom_participants cp join users u on u.id = cp.user_id
+                         where cp.chatroom_id = c.id order by u.username) as participants,
+                   m.content, m.created_at, s.username
+            from chatroom_participants p
+            join chat_rooms c on c.id = p.chatroom_id
+            left join messages m on m.id = c.last_message_id
+            left join users s on s.id = m.sender_id
+            where p.user_id = ?
+            order by c.last_activity_at desc nulls last, c.id desc
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<ChatListRow> findChatList(Long userId) {
+        return jdbcTemplate.query(CHAT_LIST_SQL, (resultSet, rowNum) -> mapRow(resultSet), userId);
+    }
+
+    private static ChatListRow mapRow(ResultSet resultSet) throws SQLException {
+        long lastMessageId = resultSet.getLong("last_message_id");
+        MessageDto lastMessage = null;
+        if (!resultSet.wasNull()) {
+            Timestamp createdAt = resultSet.getTimestamp("created_at");
+            String senderUsername = resultSet.getString("username");
+            lastMessage = new MessageDto(
+                    lastMessageId,
+                    resultSet.getString("content"),
+                    createdAt != null ? createdAt.toLocalDateTime() : null,
+                    senderUsername != null ? senderUsername : "System",
+                    null
+            );
+        }
+
+        return new ChatListRow(
+                resultSet.getLong("id"),
+                resultSet.getString("name"),
+                ChatRoomType.valueOf(resultSet.getString("type")),
+                participants(resultSet.getArray("participants")),
+                lastMessage,
+                resultSet.getLong("message_count")
+        );
+    }
+
+    private static List<String> participants(Array array) throws SQLException {
+        if (array == null) {
+            return List.of();
+        }
+        try {
+            return Arrays.asList((String[]) array.getArray());
+        } finally {
+            array.free();
+        }
+    }
+
+    public record ChatListRow(
+            Long id,
+            String name,
+            ChatRoomType type,
+            List<String> participantUsernames,
+            MessageDto lastMessage,
+            long messageCount
+    ) {
+    }
+}
@@ -13,14 +13,6 @@ import java.util.Set;
 
 public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
 
-    @Query("SELECT cr from ChatRoom cr join cr.participants p1 join cr.participants p2 " +
-    "WHERE cr.type = ?3 AND p1 = ?1 AND p2 = ?2 and size(cr.participants) = 2")
-    Optional<ChatRoom> findPrivateChatRoomByUsers(
-            User user1,
-            User user2,
-            ChatRoomType type
-            );
-
     Optional<ChatRoom> findByNameAndType(String name, ChatRoomType type);
 
     @Query("select distinct cr from ChatRoom cr join fetch cr.participants p where :user member of cr.participants")
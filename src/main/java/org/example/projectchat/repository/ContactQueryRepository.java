@@ -0,0 +1,35 @@
+package org.example.projectchat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.util.LikePattern;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+// Contacts = users sharing at least one room with the user
+@Repository
+@RequiredArgsConstructor
+public class ContactQueryRepository {
+    // walks the user's rooms by idx_chatroom_participants_user_id, then their participants by primary key
+    private static final String FIND_MATCHING_SQL = """
+            select u.id, u.username
+            from chatroom_participants mine
+            join chatroom_participants other on other.chatroom_id = mine.chatroom_id and other.user_id <> mine.user_id
+            join users u on u.id = other.user_id
+            where mine.user_id = ? and lower(u.username) like ? escape '\\'
+            group by u.id
+            order by lower(u.username) collate "C" not like ? escape '\\', lower(u.username) collate "C"
+            limit ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Contacts whose lower-cased username contains the needle: prefix matches first, then alphabetical
+    public List<UserDto> findMatching(Long userId, String needle, int limit) {
+        return jdbcTemplate.query(FIND_MATCHING_SQL,
+                (resultSet, rowNum) -> new UserDto(resultSet.getLong("id"), resultSet.getString("username")),
+                userId, LikePattern.infix(needle), LikePattern.prefix(needle), limit);
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.projectchat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+// Keyset reads of a room's history. Every query walks idx_messages_chatroom_id_createdAt:
+// created_at gives the index range, the id comparison only breaks ties, so the cost of a page
+// does not depend on how deep it is. No count queries.
+@Repository
+@RequiredArgsConstructor
+public class MessageHistoryQueryRepository {
+    private static final String SELECT = "select m.id, m.content, m.created_at, u.username "
+            + "from messages m left join users u on u.id = m.sender_id ";
+    private static final String LATEST_SQL = SELECT
+            + "where m.chatroom_id = ? order by m.created_at desc, m.id desc limit ?";
+    private static final String BEFORE_SQL = SELECT
+            + "where m.chatroom_id = ? and m.created_at <= ? and (m.created_at < ? or m.id < ?) "
+            + "order by m.created_at desc, m.id desc limit ?";
+    private static final String AFTER_SQL = SELECT
+            + "where m.chatroom_id = ? and m.created_at >= ? and (m.created_at > ? or m.id > ?) "
+            + "order by m.created_at asc, m.id asc limit ?";
+    private static final String CREATED_AT_SQL = "select created_at from messages where id = ? and chatroom_id = ?";
+
+    private static final RowMapper<HistoryRow> ROW_MAPPER = (resultSet, rowNum) -> {
+        Timestamp createdAt = resultSet.getTimestamp("created_at");
+        String senderUsername = resultSet.getString("username");
+        return new HistoryRow(new MessageDto(
+                resultSet.getLong("id"),
+                resultSet.getString("content"),
+                createdAt.toLocalDateTime(),
+                senderUsername != null ? senderUsername : "Unknown",
+                null
+        ), createdAt.toInstant());
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // newest first
+    public List<HistoryRow> findLatest(Long roomId, int limit) {
+        return jdbcTemplate.query(LATEST_SQL, ROW_MAPPER, roomId, limit);
+    }
+
+    // strictly older than (createdAt, id), newest first
+    public List<HistoryRow> findBefore(Long roomId, Instant createdAt, long id, int limit) {
+        Timestamp timestamp = Timestamp.from(createdAt);
+        return jdbcTemplate.query(BEFORE_SQL, ROW_MAPPER, roomId, timestamp, timestamp, id, limit);
+    }
+
+    // strictly newer than (createdAt, id), oldest first
+    public List<HistoryRow> findAfter(Long roomId, Instant createdAt, long id, int limit) {
+        Timestamp timestamp = Timestamp.from(createdAt);
+        return jdbcTemplate.query(AFTER_SQL, ROW_MAPPER, roomId, timestamp, timestamp, id, limit);
+    }
+
+    public Optional<Instant> findCreatedAt(Long roomId, long messageId) {
+        return jdbcTemplate.query(CREATED_AT_SQL, (resultSet, rowNum) -> resultSet.getTimestamp(1).toInstant(), messageId, roomId)
+                .stream().findFirst();
+    }
+
+    public record HistoryRow(MessageDto message, Instant createdAt) {
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.projectchat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+// Private chats by their canonical pair key (private_user_low, private_user_high), see V9
+@Repository
+@RequiredArgsConstructor
+public class PrivateChatQueryRepository {
+    // the other user and, if it exists, the private room of the pair in one index probe each
+    private static final String FIND_SQL = "select u.id, u.username, c.id from users u "
+            + "left join chat_rooms c on c.private_user_low = least(u.id, ?) and c.private_user_high = greatest(u.id, ?) "
+            + "where u.username = ?";
+    private static final String FIND_ROOM_SQL =
+            "select id from chat_rooms where private_user_low = ? and private_user_high = ?";
+    // a concurrent insert of the same pair waits for the other transaction and then does nothing
+    private static final String INSERT_ROOM_SQL = "insert into chat_rooms (id, name, type, private_user_low, private_user_high) "
+            + "values (?, ?, 'PRIVATE', ?, ?) "
+            + "on conflict (private_user_low, private_user_high) where private_user_low is not null do nothing returning id";
+    private static final String INSERT_PARTICIPANTS_SQL =
+            "insert into chatroom_participants (chatroom_id, user_id) values (?, ?), (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<Lookup> findByUsername(Long requesterId, String username) {
+        return jdbcTemplate.query(FIND_SQL, (resultSet, rowNum) -> {
+            long roomId = resultSet.getLong(3);
+            return new Lookup(resultSet.getLong(1), resultSet.getString(2), resultSet.wasNull() ? null : roomId);
+        }, requesterId, requesterId, username).stream().findFirst();
+    }
+
+    // id of the pair's room: newly created (created = true) or the one a concurrent call created first
+    public Created createIfAbsent(long roomId, String name, Long userA, Long userB) {
+        long low = Math.min(userA, userB);
+        long high = Math.max(userA, userB);
+
+        List<Long> inserted = jdbcTemplate.queryForList(INSERT_ROOM_SQL, Long.class, roomId, name, low, high);
+        if (!inserted.isEmpty()) {
+            jdbcTemplate.update(INSERT_PARTICIPANTS_SQL, roomId, low, roomId, high);
+            return new Created(roomId, true);
+        }
+        return new Created(jdbcTemplate.queryForObject(FIND_ROOM_SQL, Long.class, low, high), false);
+    }
+
+    public record Lookup(Long userId, String username, Long roomId) {
+    }
+
+    public record Created(Long roomId, boolean created) {
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.projectchat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Refresh tokens by token hash (see V12); every operation is a single statement
+@Repository
+@RequiredArgsConstructor
+public class RefreshTokenQueryRepository {
+    private static final String INSERT_SQL = "insert into refresh_tokens (id, token_hash, jti, expiry_date, revoked, user_id, family_id) "
+            + "values (?, ?, ?, ?, false, ?, ?)";
+    // Revokes the presented token and issues its successor only if the token was still live. A concurrent rotation of the
+    // same token waits for the row lock and then matches nothing, so at most one successor exists per token.
+    private static final String ROTATE_SQL = """
+            with rotated as (
+                update refresh_tokens set revoked = true, revoked_at = now(), replaced_by_token_jti = ?
+                where token_hash = ? and not revoked and expiry_date > now()
+                returning user_id, family_id
+            ), issued as (
+                insert into refresh_tokens (id, token_hash, jti, expiry_date, revoked, user_id, family_id)
+                select ?, ?, ?, ?, false, user_id, family_id from rotated
+                returning user_id
+            )
+            select u.id, u.username,
+                   array(select r.name from user_roles ur join roles r on r.id = ur.role_id where ur.user_id = u.id) as roles
+            from issued join users u on u.id = issued.user_id
+            """;
+    private static final String FIND_STATE_SQL = "select family_id, revoked, expiry_date from refresh_tokens where token_hash = ?";
+    private static final String REVOKE_FAMILY_SQL =
+            "update refresh_tokens set revoked = true, revoked_at = now() where family_id = ? and not revoked";
+    private static final String REVOKE_SQL =
+            "update refresh_tokens set revoked = true, revoked_at = now() where token_hash = ? and not revoked";
+    private static final String REVOKE_USER_SQL =
+            "update refresh_tokens set revoked = true, revoked_at = now() where user_id = ? and not revoked";
+    // one chunk per statement (and transaction); rows locked by a concurrent purge or rotation are left for the next run
+    private static final String PURGE_CHUNK_SQL = "delete from refresh_tokens where id in ("
+            + "select id from refresh_tokens where expiry_date < now() or revoked_at < ? limit ? for update skip locked)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insert(long id, byte[] tokenHash, String jti, Instant expiresAt, Long userId, long familyId) {
+        jdbcTemplate.update(INSERT_SQL, id, tokenHash, jti, Timestamp.from(expiresAt), userId, familyId);
+    }
+
+    // The owner of the rotated token, empty if the token is unknown, revoked or expired
+    public Optional<TokenOwner> rotate(byte[] tokenHash, long newId, byte[] newTokenHash, String newJti, Instant newExpiresAt) {
+        return jdbcTemplate.query(ROTATE_SQL, (resultSet, rowNum) -> mapOwner(resultSet),
+                newJti, tokenHash, newId, newTokenHash, newJti, Timestamp.from(newExpiresAt)).stream().findFirst();
+    }
+
+    public Optional<TokenState> findState(byte[] tokenHash) {
+        return jdbcTemplate.query(FIND_STATE_SQL, (resultSet, rowNum) -> {
+            Timestamp expiryDate = resultSet.getTimestamp("expiry_date");
+            return new TokenState(resultSet.getLong("family_id"), resultSet.getBoolean("revoked"),
+                    expiryDate != null ? expiryDate.toInstant() : null);
+        }, (Object) tokenHash).stream().findFirst();
+    }
+
+    public int revokeFamily(long familyId) {
+        return jdbcTemplate.update(REVOKE_FAMILY_SQL, familyId);
+    }
+
+    public int revoke(byte[] tokenHash) {
+        return jdbcTemplate.update(REVOKE_SQL, (Object) tokenHash);
+    }
+
+    public int revokeAllForUser(Long userId) {
+        return jdbcTemplate.update(REVOKE_USER_SQL, userId);
+    }
+
+    // Deletes up to limit expired tokens and tokens revoked before revokedBefore
+    public int purgeChunk(Instant revokedBefore, int limit) {
+        return jdbcTemplate.update(PURGE_CHUNK_SQL, Timestamp.from(revokedBefore), limit);
+    }
+
+    private static TokenOwner mapOwner(ResultSet resultSet) throws SQLException {
+        Array roles = resultSet.getArray("roles");
+        try {
+            return new TokenOwner(resultSet.getLong("id"), resultSet.getString("username"),
+                    roles != null ? Arrays.asList((String[]) roles.getArray()) : List.of());
+        } finally {
+            if (roles != null) {
+                roles.free();
+            }
+        }
+    }
+
+    public record TokenOwner(Long userId, String username, List<String> roles) {
+    }
+
+    public record TokenState(long familyId, boolean revoked, Instant expiresAt) {
+    }
+}
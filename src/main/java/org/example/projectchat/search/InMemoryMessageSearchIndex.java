@@ -0,0 +1,157 @@
+package org.example.projectchat.search;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.service.MessageBatchListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Embedded inverted index: per room, term -> (message id -> word positions), terms sorted for prefix lookups.
+// Filled by the ingest batch, so it only knows messages written by this node since it started:
+// meant for tests and single-node development, not for production data.
+@Component
+@ConditionalOnProperty(name = "chat.search.backend", havingValue = "memory")
+public class InMemoryMessageSearchIndex implements MessageSearchIndex, MessageBatchListener {
+    private final Map<Long, RoomIndex> rooms = new ConcurrentHashMap<>();
+
+    @Override
+    public void onBatchCommitted(Batch batch) {
+        for (PersistedMessage message : batch.messages()) {
+            add(message.roomId(), message.message());
+        }
+    }
+
+    public void add(Long roomId, MessageDto message) {
+        rooms.computeIfAbsent(roomId, id -> new RoomIndex()).add(message);
+    }
+
+    @Override
+    public List<MessageDto> search(Long roomId, SearchQuery query, Long beforeId, int limit) {
+        RoomIndex room = rooms.get(roomId);
+        if (room == null || query.isEmpty()) {
+            return List.of();
+        }
+        return room.search(query, beforeId != null ? beforeId : Long.MAX_VALUE, limit);
+    }
+
+    private static final class RoomIndex {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final NavigableMap<String, NavigableMap<Long, int[]>> postings = new TreeMap<>();
+        private final Map<Long, MessageDto> messages = new HashMap<>();
+
+        void add(MessageDto message) {
+            Map<String, List<Integer>> positions = new HashMap<>();
+            List<String> words = SearchQuery.tokenize(message.content());
+            for (int position = 0; position < words.size(); position++) {
+                positions.computeIfAbsent(words.get(position), word -> new ArrayList<>()).add(position);
+            }
+
+            lock.writeLock().lock();
+            try {
+                messages.put(message.id(), new MessageDto(message.id(), message.content(), message.createdAt(), message.senderUsername(), null));
+                positions.forEach((word, wordPositions) -> postings
+                        .computeIfAbsent(word, w -> new TreeMap<>())
+                        .put(message.id(), wordPositions.stream().mapToInt(Integer::intValue).toArray()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<MessageDto> search(SearchQuery query, long beforeId, int limit) {
+            lock.readLock().lock();
+            try {
+                List<NavigableSet<Long>> candidates = new ArrayList<>();
+                for (SearchQuery.Clause clause : query.clauses()) {
+                    NavigableSet<Long> ids = candidates(clause, beforeId);
+                    if (ids.isEmpty()) {
+                        return List.of();
+                    }
+                    candidates.add(ids);
+                }
+                // walk the smallest set newest first, probe the others
+                candidates.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+                List<MessageDto> found = new ArrayList<>(limit);
+                for (Long id : candidates.get(0).descendingSet()) {
+                    if (found.size() == limit) {
+                        break;
+                    }
+                    boolean all = true;
+                    for (int i = 1; i < candidates.size() && all; i++) {
+                        all = candidates.get(i).contains(id);
+                    }
+                    if (all) {
+                        found.add(messages.get(id));
+                    }
+                }
+                return found;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private NavigableSet<Long> candidates(SearchQuery.Clause clause, long beforeId) {
+            if (clause.isPhrase()) {
+                return phraseMatches(clause.words(), beforeId);
+            }
+
+            String word = clause.words().get(0);
+            if (!clause.prefix()) {
+                NavigableMap<Long, int[]> wordPostings = postings.get(word);
+                return wordPostings == null ? Collections.emptyNavigableSet() : wordPostings.headMap(beforeId, false).navigableKeySet();
+            }
+
+            NavigableSet<Long> ids = new TreeSet<>();
+            for (NavigableMap<Long, int[]> wordPostings : postings.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                ids.addAll(wordPostings.headMap(beforeId, false).keySet());
+            }
+            return ids;
+        }
+
+        // messages containing the words at consecutive positions
+        private NavigableSet<Long> phraseMatches(List<String> words, long beforeId) {
+            List<NavigableMap<Long, int[]>> wordPostings = new ArrayList<>(words.size());
+            for (String word : words) {
+                NavigableMap<Long, int[]> found = postings.get(word);
+                if (found == null) {
+                    return Collections.emptyNavigableSet();
+                }
+                wordPostings.add(found);
+            }
+
+            NavigableSet<Long> ids = new TreeSet<>();
+            for (Map.Entry<Long, int[]> first : wordPostings.get(0).headMap(beforeId, false).entrySet()) {
+                for (int start : first.getValue()) {
+                    if (phraseAt(wordPostings, first.getKey(), start)) {
+                        ids.add(first.getKey());
+                        break;
+                    }
+                }
+            }
+            return ids;
+        }
+
+        private static boolean phraseAt(List<NavigableMap<Long, int[]>> wordPostings, Long id, int start) {
+            for (int i = 1; i < wordPostings.size(); i++) {
+                int[] positions = wordPostings.get(i).get(id);
+                if (positions == null || Arrays.binarySearch(positions, start + i) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
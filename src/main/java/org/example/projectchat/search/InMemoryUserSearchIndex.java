@@ -0,0 +1,136 @@
+package org.example.projectchat.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.user.UserDto;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Embedded username index for databases without pg_trgm: names sorted for prefixes, trigram -> names for infixes.
+// Loaded at startup and extended by registrations on this node; users registered on other nodes
+// are missing until the next restart.
+@Component
+@ConditionalOnProperty(name = "chat.user-search.backend", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryUserSearchIndex implements UserSearchIndex {
+    private static final String ALL_USERS_SQL = "select id, username from users";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableSet<Entry> names = new TreeSet<>();
+    private final Map<String, NavigableSet<Entry>> trigrams = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<UserDto> users = jdbcTemplate.query(ALL_USERS_SQL,
+                (resultSet, rowNum) -> new UserDto(resultSet.getLong("id"), resultSet.getString("username")));
+        users.forEach(user -> userRegistered(user.id(), user.username()));
+        log.info("Username index loaded with {} users", users.size());
+    }
+
+    @Override
+    public void userRegistered(Long userId, String username) {
+        Entry entry = new Entry(username.toLowerCase(Locale.ROOT), userId, username);
+        lock.writeLock().lock();
+        try {
+            if (names.add(entry)) {
+                for (String trigram : trigrams(entry.name())) {
+                    trigrams.computeIfAbsent(trigram, t -> new TreeSet<>()).add(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<UserDto> find(String needle, int limit) {
+        lock.readLock().lock();
+        try {
+            List<UserDto> found = new ArrayList<>();
+            for (Entry entry : names.subSet(bound(needle), true, bound(needle + Character.MAX_VALUE), false)) {
+                if (found.size() == limit) {
+                    break;
+                }
+                found.add(entry.user());
+            }
+            if (needle.length() >= MIN_INFIX_LENGTH) {
+                found.addAll(infixMatches(needle, limit));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // walk the rarest trigram of the needle in name order, probe the others, confirm the substring
+    private List<UserDto> infixMatches(String needle, int limit) {
+        List<NavigableSet<Entry>> postings = new ArrayList<>();
+        for (String trigram : trigrams(needle)) {
+            NavigableSet<Entry> entries = trigrams.get(trigram);
+            if (entries == null) {
+                return List.of();
+            }
+            postings.add(entries);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        List<UserDto> found = new ArrayList<>();
+        for (Entry entry : postings.get(0)) {
+            if (found.size() == limit) {
+                break;
+            }
+            boolean all = true;
+            for (int i = 1; i < postings.size() && all; i++) {
+                all = postings.get(i).contains(entry);
+            }
+            if (all && !entry.name().startsWith(needle) && entry.name().contains(needle)) {
+                found.add(entry.user());
+            }
+        }
+        return found;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(text.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static Entry bound(String name) {
+        return new Entry(name, Long.MIN_VALUE, null);
+    }
+
+    // ordered by lower-cased name, then id (names differing only in case are separate users)
+    private record Entry(String name, Long id, String username) implements Comparable<Entry> {
+        UserDto user() {
+            return new UserDto(id, username);
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : id.compareTo(other.id);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.projectchat.search;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+
+import java.util.List;
+
+// Full-text index over chat messages, maintained on the message write path.
+// chat.search.backend selects the implementation: postgres (tsvector + GIN) or memory (embedded).
+public interface MessageSearchIndex {
+
+    // Messages of the room matching every clause, newest first; only ids below beforeId if it is given
+    List<MessageDto> search(Long roomId, SearchQuery query, Long beforeId, int limit);
+}
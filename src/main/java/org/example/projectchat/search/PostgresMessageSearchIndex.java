@@ -0,0 +1,51 @@
+package org.example.projectchat.search;
+
+import lombok.RequiredArgsConstructor;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Expression GIN index over the message text (see V10) queried with to_tsquery:
+// word -> 'word', word* -> 'word:*', "a b" -> 'a <-> b'
+@Component
+@ConditionalOnProperty(name = "chat.search.backend", havingValue = "postgres", matchIfMissing = true)
+@RequiredArgsConstructor
+public class PostgresMessageSearchIndex implements MessageSearchIndex {
+    // same expression as the V10 index, or the planner cannot use it; tokens match SearchQuery.tokenize
+    public static final String SEARCH_DOCUMENT = "to_tsvector('simple', regexp_replace(m.content, '[[:punct:]]+', ' ', 'g'))";
+    private static final String SEARCH_SQL = "select m.id, m.content, m.created_at, u.username "
+            + "from messages m left join users u on u.id = m.sender_id "
+            + "where m.chatroom_id = ? and " + SEARCH_DOCUMENT + " @@ to_tsquery('simple', ?) and m.id < ? "
+            + "order by m.id desc limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<MessageDto> search(Long roomId, SearchQuery query, Long beforeId, int limit) {
+        return jdbcTemplate.query(SEARCH_SQL, (resultSet, rowNum) -> {
+            Timestamp createdAt = resultSet.getTimestamp("created_at");
+            String senderUsername = resultSet.getString("username");
+            return new MessageDto(
+                    resultSet.getLong("id"),
+                    resultSet.getString("content"),
+                    createdAt.toLocalDateTime(),
+                    senderUsername != null ? senderUsername : "Unknown",
+                    null
+            );
+        }, roomId, toTsQuery(query), beforeId != null ? beforeId : Long.MAX_VALUE, limit);
+    }
+
+    // tokens are letters and digits only (SearchQuery), so nothing needs quoting
+    public static String toTsQuery(SearchQuery query) {
+        return query.clauses().stream()
+                .map(clause -> clause.isPhrase()
+                        ? "(" + String.join(" <-> ", clause.words()) + ")"
+                        : clause.words().get(0) + (clause.prefix() ? ":*" : ""))
+                .collect(Collectors.joining(" & "));
+    }
+}
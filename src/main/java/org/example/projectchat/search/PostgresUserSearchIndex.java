@@ -0,0 +1,38 @@
+package org.example.projectchat.search;
+
+import lombok.RequiredArgsConstructor;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.util.LikePattern;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Both parts in one statement: a range scan of idx_users_username_lower_c for the prefix,
+// the trigram index for the infix part (skipped for short needles by the first parameter)
+@Component
+@ConditionalOnProperty(name = "chat.user-search.backend", havingValue = "postgres", matchIfMissing = true)
+@RequiredArgsConstructor
+public class PostgresUserSearchIndex implements UserSearchIndex {
+    private static final String FIND_SQL = """
+            (select id, username from users
+             where lower(username) collate "C" like ? escape '\\'
+             order by lower(username) collate "C" limit ?)
+            union all
+            (select id, username from users
+             where ? and lower(username) like ? escape '\\' and lower(username) collate "C" not like ? escape '\\'
+             order by lower(username) collate "C" limit ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<UserDto> find(String needle, int limit) {
+        String prefix = LikePattern.prefix(needle);
+        return jdbcTemplate.query(FIND_SQL,
+                (resultSet, rowNum) -> new UserDto(resultSet.getLong("id"), resultSet.getString("username")),
+                prefix, limit,
+                needle.length() >= MIN_INFIX_LENGTH, LikePattern.infix(needle), prefix, limit);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.projectchat.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Parsed search input: words (all must match), word* for a prefix, "quoted words" for a phrase.
+// Tokens only ever contain letters and digits, so backends can embed them without escaping.
+public record SearchQuery(List<Clause> clauses) {
+    public static final int MAX_CLAUSES = 8;
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    public static SearchQuery parse(String text) {
+        List<Clause> clauses = new ArrayList<>();
+        if (text == null) {
+            return new SearchQuery(clauses);
+        }
+
+        int i = 0;
+        while (i < text.length() && clauses.size() < MAX_CLAUSES) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = text.length();
+                }
+                List<String> words = tokenize(text.substring(i + 1, end));
+                if (!words.isEmpty()) {
+                    clauses.add(new Clause(words, false));
+                }
+                i = end + 1;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '"') {
+                    end++;
+                }
+                String word = text.substring(i, end);
+                boolean prefix = word.endsWith("*");
+                List<String> words = tokenize(word);
+                // "e-mail" is one clause of two adjacent words, like the stored text
+                if (!words.isEmpty()) {
+                    clauses.add(new Clause(words, prefix && words.size() == 1));
+                }
+                i = end;
+            }
+        }
+        return new SearchQuery(clauses);
+    }
+
+    // Lower-cased runs of letters and digits, in order
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // One word (optionally a prefix) or a phrase of adjacent words
+    public record Clause(List<String> words, boolean prefix) {
+        public boolean isPhrase() {
+            return words.size() > 1;
+        }
+    }
+}
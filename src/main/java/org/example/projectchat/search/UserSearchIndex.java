@@ -0,0 +1,20 @@
+package org.example.projectchat.search;
+
+import org.example.projectchat.DTO.user.UserDto;
+
+import java.util.List;
+
+// Username lookup for autocomplete. chat.user-search.backend selects the implementation:
+// postgres (prefix btree and pg_trgm index, see V11) or memory (embedded n-gram index).
+public interface UserSearchIndex {
+    // infix matching needs a whole trigram, shorter needles only match prefixes
+    int MIN_INFIX_LENGTH = 3;
+
+    // Up to limit users whose lower-cased username starts with the needle, plus up to limit users containing
+    // it elsewhere, each part alphabetical. The needle is lower-cased.
+    List<UserDto> find(String needle, int limit);
+
+    // Called after a new user has been saved
+    default void userRegistered(Long userId, String username) {
+    }
+}
@@ -6,11 +6,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.chat.ChatRoomDto;
 import org.example.projectchat.DTO.chat.ChatRoomListItemDto;
-import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
 import org.example.projectchat.model.ChatRoom;
 import org.example.projectchat.model.ChatRoomType;
 import org.example.projectchat.model.User;
+import org.example.projectchat.repository.ChatListQueryRepository;
 import org.example.projectchat.repository.ChatRoomRepository;
+import org.example.projectchat.repository.PrivateChatQueryRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -18,7 +21,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -26,8 +29,13 @@ import java.util.Set;
 @Slf4j
 public class ChatRoomService {
     private final ChatRoomRepository chatRoomRepository;
+    private final ChatListQueryRepository chatListQueryRepository;
     private final UserService userService;
-    private final MessageService messageService;
+    private final RoomMembershipIndex membershipIndex;
+    private final ReadCursorService readCursorService;
+    private final PrivateChatQueryRepository privateChatQueryRepository;
+    private final PrivateChatCache privateChatCache;
+    private final SnowflakeIdGenerator idGenerator;
 
     public List<ChatRoomDto> findUserChatRooms(User user){
         Set<ChatRoom> userRooms = chatRoomRepository.findByParticipantsContaining(user);
@@ -48,31 +56,29 @@ public class ChatRoomService {
         return roomDtoList;
     }
 
-    @org.springframework.transaction.annotation.Transactional(readOnly = true)
-    public List<ChatRoomListItemDto> findUserChatListItems(User user) {
-        List<ChatRoom> userRooms = chatRoomRepository.findAllByParticipantsContaining(user);
-
-        return userRooms.stream()
-            .map(roomEntity -> {
-                MessageDto lastMessage = messageService.findLastMessageForRoom(roomEntity.getId());
-                List<String> participantUsernames = roomEntity.getParticipants().stream()
-                        .map(User::getUsername)
-                        .toList();
-
-                return new ChatRoomListItemDto(
-                        roomEntity.getId(),
-                        roomEntity.getName(),
-                        roomEntity.getType(),
-                        participantUsernames,
-                        lastMessage
-                );
-            })
+    // One list query plus, once per user and node, the read cursor load
+    public List<ChatRoomListItemDto> findUserChatListItems(CurrentUser user) {
+        List<ChatListQueryRepository.ChatListRow> rows = chatListQueryRepository.findChatList(user.id());
+        rows.forEach(row -> readCursorService.observeRoom(row.id(), row.messageCount(),
+                row.lastMessage() != null ? row.lastMessage().id() : 0L));
+        Map<Long, Long> unreadCounts = readCursorService.unreadCounts(user.id(),
+                rows.stream().map(ChatListQueryRepository.ChatListRow::id).toList());
+
+        return rows.stream()
+            .map(row -> new ChatRoomListItemDto(
+                    row.id(),
+                    row.name(),
+                    row.type(),
+                    row.participantUsernames(),
+                    row.lastMessage(),
+                    unreadCounts.getOrDefault(row.id(), 0L)
+            ))
             .toList();
     }
 
 
     @Transactional
-    public ChatRoomDto createGroupChat(String groupName, User creator, Set<String> initParticipantUsernames){
+    public ChatRoomDto createGroupChat(String groupName, CurrentUser creator, Set<String> initParticipantUsernames){
         // Check: Is group unique
         if(chatRoomRepository.existsByNameAndType(groupName, ChatRoomType.GROUP)){
             log.warn("You cant creat group with name {}", groupName);
@@ -86,7 +92,7 @@ public class ChatRoomService {
 
         // Add user
         Set<User> participants = new HashSet<>();
-        participants.add(creator);
+        participants.add(userService.getReference(creator.id()));
 
         if(initParticipantUsernames != null && !initParticipantUsernames.isEmpty()){
             List<User> foundUsers = userService.findByUsernameInSet(initParticipantUsernames);
@@ -95,6 +101,7 @@ public class ChatRoomService {
         chatRoom.setParticipants(participants);
 
         ChatRoom saveChatRoom = chatRoomRepository.save(chatRoom);
+        membershipIndex.registerRoom(saveChatRoom.getId(), saveChatRoom.getParticipants().stream().map(User::getId).toList());
         log.info("New group with name {} created", groupName);
 
         List<String> participantNames = saveChatRoom.getParticipants()
@@ -108,56 +115,50 @@ public class ChatRoomService {
         );
     }
 
+    // Cache hit, or one index probe by the canonical pair key; creation is safe under concurrency
+    // (the unique pair index lets exactly one of two concurrent calls insert the room)
     @Transactional
-    public ChatRoomDto getOrCreateChatRoomService(User userA, String userBUsername){
-        // find userB
-        User userB = userService.findByUsername(userBUsername)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with username:"+userBUsername+" NOT FOUND"));
-
+    public ChatRoomDto getOrCreateChatRoomService(CurrentUser currentUser, String userBUsername){
         // check its not same user
-        if(userA.getId().equals(userB.getId())){
-            log.warn("Попытка создать чат с самим собой через сервис: {}", userA.getUsername());
+        if(currentUser.username().equals(userBUsername)){
+            log.warn("Попытка создать чат с самим собой через сервис: {}", currentUser.username());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You cant open private chat by yourself");
         }
 
-        Optional<ChatRoom> existingRoom = chatRoomRepository.findPrivateChatRoomByUsers(userA, userB, ChatRoomType.PRIVATE);
-        ChatRoom chatRoom;
-
-        // if have chat between two users
-        if(existingRoom.isPresent()){
-            chatRoom = existingRoom.get();
-            log.info("Найден существующий приватный чат (ID: {}) между {} и {}", chatRoom.getId(), userA.getUsername(), userB.getUsername());
-
-        }else {
-            log.info("Создание нового приватного чата между {} и {}", userA.getUsername(), userB.getUsername());
-            chatRoom = new ChatRoom();
-            chatRoom.setType(ChatRoomType.PRIVATE);
-            // currentUser send message to UserB then the name of room should be userB's username
-            chatRoom.setName(userB.getUsername());
-
-            // Add two user in chat
-            Set<User> participants = new HashSet<>();
-            participants.add(userA);
-            participants.add(userB);
-            chatRoom.setParticipants(participants);
-
-            chatRoom  = chatRoomRepository.save(chatRoom);
+        PrivateChatCache.PrivateChat privateChat = privateChatCache.get(currentUser.id(), userBUsername);
+        if(privateChat == null){
+            // find userB together with the existing room of the pair
+            PrivateChatQueryRepository.Lookup lookup = privateChatQueryRepository.findByUsername(currentUser.id(), userBUsername)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with username:"+userBUsername+" NOT FOUND"));
+
+            Long roomId = lookup.roomId();
+            if(roomId != null){
+                log.info("Найден существующий приватный чат (ID: {}) между {} и {}", roomId, currentUser.username(), lookup.username());
+            }else {
+                log.info("Создание нового приватного чата между {} и {}", currentUser.username(), lookup.username());
+                // currentUser send message to UserB then the name of room should be userB's username
+                PrivateChatQueryRepository.Created created = privateChatQueryRepository.createIfAbsent(
+                        idGenerator.nextId(), lookup.username(), currentUser.id(), lookup.userId());
+                roomId = created.roomId();
+                if(created.created()){
+                    membershipIndex.registerRoom(roomId, List.of(currentUser.id(), lookup.userId()));
+                }
+            }
+
+            privateChat = new PrivateChatCache.PrivateChat(roomId, lookup.userId(), lookup.username());
+            privateChatCache.put(currentUser.id(), currentUser.username(), privateChat);
         }
 
-        // Map to Dto
-        List<String> participantUsernames = chatRoom.getParticipants().stream()
-                .map(User::getUsername).toList();
-
         return new ChatRoomDto(
-                chatRoom.getId(),
-                userBUsername,
-                chatRoom.getType(),
-                participantUsernames
+                privateChat.roomId(),
+                privateChat.username(),
+                ChatRoomType.PRIVATE,
+                List.of(currentUser.username(), privateChat.username())
         );
     }
 
     @Transactional
-    public ChatRoomDto addParticipantsToGroup(Long roomId, String usernameToAdd, User initiator){
+    public ChatRoomDto addParticipantsToGroup(Long roomId, String usernameToAdd, CurrentUser initiator){
         ChatRoom chatRoom = chatRoomRepository.findById(roomId)
                 .orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND, "Group not found"));
 
@@ -166,7 +167,7 @@ public class ChatRoomService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unable to add participant to private chat");
         }
 
-        if(!chatRoomRepository.existsByIdAndParticipants_Id(roomId, initiator.getId())){
+        if(!membershipIndex.isMember(roomId, initiator.id())){
             throw new AccessDeniedException("You are not contain and cant add user in this group");
         }
 
@@ -183,14 +184,15 @@ public class ChatRoomService {
 
 
         chatRoom = chatRoomRepository.save(chatRoom);
+        membershipIndex.addMember(roomId, userToAdd.getId());
         log.info("Пользователь {} успешно добавлен в группу '{}' (ID: {}) пользователем {}",
-                userToAdd.getUsername(), chatRoom.getName(), chatRoom.getId(), initiator.getUsername());
+                userToAdd.getUsername(), chatRoom.getName(), chatRoom.getId(), initiator.username());
 
-        return mapToChatRoomDto(chatRoom, initiator.getUsername());
+        return mapToChatRoomDto(chatRoom, initiator.username());
     }
 
     @Transactional
-    public void deleteParticipantsFromGroup(Long roomId, String usernameToDelete, User initiator){
+    public void deleteParticipantsFromGroup(Long roomId, String usernameToDelete, CurrentUser initiator){
         ChatRoom chatRoom = chatRoomRepository.findById(roomId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Group not found"));
 
@@ -199,7 +201,7 @@ public class ChatRoomService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unable to delete participant to private chat");
         }
 
-        if(!chatRoomRepository.existsByIdAndParticipants_Id(roomId, initiator.getId())){
+        if(!membershipIndex.isMember(roomId, initiator.id())){
             log.warn("Попытка удалить участника не находясь в групповой чат (ID: {}, Type: {})", roomId, chatRoom.getType());
             throw new AccessDeniedException("You are not contain and cant add user in this group");
         }
@@ -207,7 +209,7 @@ public class ChatRoomService {
         User userToDelete = userService.findByUsername(usernameToDelete)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User" + usernameToDelete + " for delete is not found"));
 
-        if(initiator.getId().equals(userToDelete.getId())){
+        if(initiator.id().equals(userToDelete.getId())){
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Вы не можете удалить себя из группы этим методом. Используйте функцию 'Покинуть группу'.");
         }
 
@@ -219,28 +221,29 @@ public class ChatRoomService {
         }
 
         chatRoom = chatRoomRepository.save(chatRoom);
+        membershipIndex.removeMember(roomId, userToDelete.getId());
         log.info("Пользователь {} успешно удален из группу '{}' (ID: {}) пользователем {}",
-                userToDelete.getUsername(), chatRoom.getName(), chatRoom.getId(), initiator.getUsername());
+                userToDelete.getUsername(), chatRoom.getName(), chatRoom.getId(), initiator.username());
     }
 
     @org.springframework.transaction.annotation.Transactional(readOnly = true)
-    public ChatRoomDto getChatRoomDetails(Long roomId, User user) {
+    public ChatRoomDto getChatRoomDetails(Long roomId, CurrentUser user) {
         ChatRoom chatRoom = chatRoomRepository.findById(roomId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Комната с ID " + roomId + " не найдена"));
 
-        if (!chatRoomRepository.existsByIdAndParticipants_Id(roomId, user.getId())) {
-            log.warn("Доступ запрещен: Пользователь {} попытался получить детали комнаты {}, в которой не состоит", user.getUsername(), roomId);
+        if (!membershipIndex.isMember(roomId, user.id())) {
+            log.warn("Доступ запрещен: Пользователь {} попытался получить детали комнаты {}, в которой не состоит", user.username(), roomId);
             throw new AccessDeniedException("Доступ к этой комнате запрещен");
         }
 
-        log.info("Загружены детали для комнаты ID {} для пользователя {}", roomId, user.getUsername());
-        return mapToChatRoomDto(chatRoom, user.getUsername());
+        log.info("Загружены детали для комнаты ID {} для пользователя {}", roomId, user.username());
+        return mapToChatRoomDto(chatRoom, user.username());
     }
 
 
 
     public boolean existsByIdAndParticipants_Id(Long chatRoomId, Long userId){
-        return chatRoomRepository.existsByIdAndParticipants_Id(chatRoomId, userId);
+        return membershipIndex.isMember(chatRoomId, userId);
     }
 
     private ChatRoomDto mapToChatRoomDto(ChatRoom chatRoom, String currentUsername){
@@ -0,0 +1,21 @@
+package org.example.projectchat.service;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+
+import java.util.List;
+import java.util.Map;
+
+// Notified on the ingest completion thread once a batch is committed, before the senders' futures complete.
+// Batches arrive in commit order. Implementations must be quick and must not block: they delay the
+// completion of every following batch (and, once the completion queue is full, the writer).
+public interface MessageBatchListener {
+
+    void onBatchCommitted(Batch batch);
+
+    // messages in commit order; roomMessageCounts holds chat_rooms.message_count after the batch
+    record Batch(List<PersistedMessage> messages, Map<Long, Long> roomMessageCounts) {
+    }
+
+    record PersistedMessage(Long roomId, Long senderId, MessageDto message) {
+    }
+}
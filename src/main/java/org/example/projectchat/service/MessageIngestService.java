@@ -0,0 +1,312 @@
+package org.example.projectchat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.exception.MessageIngestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind pipeline for chat messages: frames are queued and group-committed
+// in multi-row JDBC batches, futures complete only once their batch is durable.
+// Batch listeners and the futures (with whatever the callers chained on them, e.g. the broadcast) run on
+// a separate completion thread in commit order, so the writer is already committing the next batch meanwhile.
+@Service
+@Slf4j
+public class MessageIngestService {
+    private static final String INSERT_SQL =
+            "insert into messages (id, content, created_at, sender_id, chatroom_id) values (?, ?, ?, ?, ?)";
+    // one statement per batch, rooms in id order so concurrent writers lock rows in the same order;
+    // greatest() keeps the newest last message when batches of several nodes interleave
+    private static final String ROOM_UPDATE_SQL =
+            "update chat_rooms c set message_count = c.message_count + d.added, "
+                    + "last_message_id = greatest(c.last_message_id, d.last_id), "
+                    + "last_activity_at = greatest(c.last_activity_at, d.last_at) "
+                    + "from unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::timestamptz[]) as d(id, added, last_id, last_at) "
+                    + "where c.id = d.id returning c.id, c.message_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SnowflakeIdGenerator idGenerator;
+    private final List<MessageBatchListener> batchListeners;
+    private final BlockingQueue<PendingMessage> queue;
+    // committed or failed batches waiting for their listeners and futures; a full queue holds up the writer
+    private final BlockingQueue<Runnable> completions;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter rejectedFull;
+    private final Counter rejectedShutdown;
+
+    private volatile boolean running;
+    private volatile boolean completing;
+    private Thread writerThread;
+    private Thread completionThread;
+
+    public MessageIngestService(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                SnowflakeIdGenerator idGenerator,
+                                List<MessageBatchListener> batchListeners,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.ingest.queue-capacity:10000}") int queueCapacity,
+                                @Value("${chat.ingest.batch-size:200}") int batchSize,
+                                @Value("${chat.ingest.flush-interval-ms:5}") long flushIntervalMs,
+                                @Value("${chat.ingest.completion-queue-capacity:1000}") int completionQueueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+        this.batchListeners = batchListeners;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.completions = new ArrayBlockingQueue<>(completionQueueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+        Gauge.builder("chat.ingest.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("chat.ingest.batch.size").register(meterRegistry);
+        this.rejectedFull = Counter.builder("chat.ingest.rejected").tag("reason", "queue-full").register(meterRegistry);
+        this.rejectedShutdown = Counter.builder("chat.ingest.rejected").tag("reason", "shutdown").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        completing = true;
+        completionThread = new Thread(this::runCompletions, "message-ingest-completion");
+        completionThread.setDaemon(true);
+        completionThread.start();
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "message-ingest-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // The writer drains the queue first, then the completion thread finishes what the writer handed over
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        completing = false;
+        completionThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Accept a message into the queue. The id is assigned here, before the row is written.
+    // The returned future completes once its batch is committed, or exceptionally if the queue is full
+    // or the service is shutting down.
+    public CompletableFuture<MessageDto> submit(Long roomId, Long senderId, String senderUsername,
+                                                String content, String clientMessageId) {
+        PendingMessage pendingMessage = new PendingMessage(
+                idGenerator.nextId(), roomId, senderId, senderUsername, content, clientMessageId,
+                // the column keeps microseconds; truncating here keeps in-memory copies equal to the stored row
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS), new CompletableFuture<>());
+
+        if (!running) {
+            log.warn("Message ingest is stopped, rejecting message for room {} from {}", roomId, senderUsername);
+            rejectedShutdown.increment();
+            pendingMessage.result().completeExceptionally(new MessageIngestException("Server is shutting down, message was not accepted"));
+        } else if (!queue.offer(pendingMessage)) {
+            log.warn("Message ingest queue is full, rejecting message for room {} from {}", roomId, senderUsername);
+            rejectedFull.increment();
+            pendingMessage.result().completeExceptionally(new MessageIngestException("Server is busy, message was not accepted"));
+        }
+        return pendingMessage.result();
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // size trigger: take what is already waiting; time trigger: wait for the rest until the deadline
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                log.error("Unexpected error in message ingest writer: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("Message ingest writer stopped");
+    }
+
+    private void runCompletions() {
+        while (completing || !completions.isEmpty()) {
+            try {
+                Runnable completion = completions.poll(100, TimeUnit.MILLISECONDS);
+                if (completion != null) {
+                    completion.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completing = false;
+            } catch (Exception e) {
+                log.error("Unexpected error in message ingest completion: {}", e.getMessage(), e);
+            }
+        }
+        log.info("Message ingest completion stopped");
+    }
+
+    // waits for room in the completion queue: the writer slows down rather than reordering completions
+    private void handOver(Runnable completion) throws InterruptedException {
+        completions.put(completion);
+    }
+
+    private void flush(List<PendingMessage> batch) throws InterruptedException {
+        batchSizeSummary.record(batch.size());
+        List<PendingMessage> messages = List.copyOf(batch);
+        MessageBatchListener.Batch committed;
+        try {
+            committed = transactionTemplate.execute(status -> insert(messages));
+        } catch (Exception batchError) {
+            log.warn("Batch insert of {} messages failed, retrying one by one: {}", messages.size(), batchError.getMessage());
+            flushOneByOne(messages);
+            return;
+        }
+        handOver(() -> complete(messages, committed));
+    }
+
+    // isolate the failing row(s) so one bad message does not fail the whole group
+    private void flushOneByOne(List<PendingMessage> batch) throws InterruptedException {
+        for (PendingMessage pendingMessage : batch) {
+            List<PendingMessage> single = List.of(pendingMessage);
+            MessageBatchListener.Batch committed;
+            try {
+                committed = transactionTemplate.execute(status -> insert(single));
+            } catch (Exception e) {
+                log.error("Failed to persist message for room {} from {}: {}",
+                        pendingMessage.roomId(), pendingMessage.senderUsername(), e.getMessage());
+                MessageIngestException error = new MessageIngestException("Message could not be saved", e);
+                handOver(() -> pendingMessage.result().completeExceptionally(error));
+                continue;
+            }
+            handOver(() -> complete(single, committed));
+        }
+    }
+
+    private MessageBatchListener.Batch insert(List<PendingMessage> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        List<MessageBatchListener.PersistedMessage> persisted = new ArrayList<>(batch.size());
+        for (PendingMessage pendingMessage : batch) {
+            rows.add(new Object[]{
+                    pendingMessage.id(),
+                    pendingMessage.content(),
+                    Timestamp.valueOf(pendingMessage.createdAt()),
+                    pendingMessage.senderId(),
+                    pendingMessage.roomId()
+            });
+            persisted.add(new MessageBatchListener.PersistedMessage(
+                    pendingMessage.roomId(),
+                    pendingMessage.senderId(),
+                    new MessageDto(
+                            pendingMessage.id(),
+                            pendingMessage.content(),
+                            pendingMessage.createdAt(),
+                            pendingMessage.senderUsername(),
+                            pendingMessage.clientMessageId()
+                    )
+            ));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        return new MessageBatchListener.Batch(persisted, updateRooms(batch));
+    }
+
+    private Map<Long, Long> updateRooms(List<PendingMessage> batch) {
+        Map<Long, RoomDelta> deltas = new TreeMap<>();
+        for (PendingMessage pendingMessage : batch) {
+            deltas.merge(pendingMessage.roomId(), new RoomDelta(1, pendingMessage.id(), pendingMessage.createdAt()), RoomDelta::plus);
+        }
+
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ROOM_UPDATE_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", deltas.keySet().toArray()));
+            statement.setArray(2, connection.createArrayOf("bigint",
+                    deltas.values().stream().map(RoomDelta::added).toArray()));
+            statement.setArray(3, connection.createArrayOf("bigint",
+                    deltas.values().stream().map(RoomDelta::lastId).toArray()));
+            statement.setArray(4, connection.createArrayOf("timestamptz",
+                    deltas.values().stream().map(delta -> Timestamp.valueOf(delta.lastAt())).toArray()));
+            return statement;
+        }, (RowCallbackHandler) resultSet -> counts.put(resultSet.getLong(1), resultSet.getLong(2)));
+        return counts;
+    }
+
+    private void complete(List<PendingMessage> batch, MessageBatchListener.Batch committed) {
+        for (MessageBatchListener listener : batchListeners) {
+            try {
+                listener.onBatchCommitted(committed);
+            } catch (Exception e) {
+                log.error("Message batch listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(committed.messages().get(i).message());
+        }
+    }
+
+    private record RoomDelta(long added, long lastId, LocalDateTime lastAt) {
+        RoomDelta plus(RoomDelta other) {
+            return other.lastId > lastId
+                    ? new RoomDelta(added + other.added, other.lastId, other.lastAt)
+                    : new RoomDelta(added + other.added, lastId, lastAt);
+        }
+    }
+
+    private record PendingMessage(
+            long id,
+            Long roomId,
+            Long senderId,
+            String senderUsername,
+            String content,
+            String clientMessageId,
+            LocalDateTime createdAt,
+            CompletableFuture<MessageDto> result
+    ) {
+    }
+}
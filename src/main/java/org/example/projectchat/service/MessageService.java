@@ -4,26 +4,43 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.chat.MessageDto;
 import org.example.projectchat.DTO.chat.MessageRequest;
+import org.example.projectchat.DTO.chat.MessageSearchResultDto;
+import org.example.projectchat.DTO.chat.MessageSliceDto;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.model.Message;
-import org.example.projectchat.model.User;
-import org.example.projectchat.repository.ChatRoomRepository;
+import org.example.projectchat.repository.MessageHistoryQueryRepository;
 import org.example.projectchat.repository.MessageRepository;
+import org.example.projectchat.search.MessageSearchIndex;
+import org.example.projectchat.search.SearchQuery;
+import org.example.projectchat.util.MessageCursor;
 import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MessageService {
+    public static final int MAX_SLICE_SIZE = 100;
+
     private final MessageRepository messageRepository;
+    private final MessageHistoryQueryRepository historyQueryRepository;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
 //    private final ChatRoomService chatRoomService;
-    private final ChatRoomRepository chatRoomRepository;
+    private final RoomMembershipIndex membershipIndex;
     private final ModelMapper modelMapper;
 
     public void saveMessage(MessageRequest messageRequest){
@@ -32,13 +49,19 @@ public class MessageService {
         messageRepository.save(message);
     }
 
+    // Offset paging with a count query per request; kept for old clients, see findMessageSlice
     @Transactional(readOnly = true)
-    public Page<MessageDto> findMessageHistory(Long chatRoomId, User user, Pageable pageable){
-        if(!chatRoomRepository.existsByIdAndParticipants_Id(chatRoomId, user.getId())){
-            log.warn("Access denied: User {} not contain in group {}", user.getUsername(), chatRoomId);
+    public Page<MessageDto> findMessageHistory(Long chatRoomId, CurrentUser user, Pageable pageable){
+        if(!membershipIndex.isMember(chatRoomId, user.id())){
+            log.warn("Access denied: User {} not contain in group {}", user.username(), chatRoomId);
             throw new AccessDeniedException("Access denied for history of this group");
         }
 
+        Page<MessageDto> cachedPage = findCachedPage(chatRoomId, pageable);
+        if (cachedPage != null) {
+            return cachedPage;
+        }
+
         Page<Message> messagePage = messageRepository.findByChatRoomIdOrderByCreatedAtAsc(chatRoomId, pageable);
         log.info("Найдено {} сообщений на странице {} для комнаты {}", messagePage.getNumberOfElements(), pageable.getPageNumber(), chatRoomId);
 
@@ -51,19 +74,119 @@ public class MessageService {
         ));
     }
 
-    @Transactional(readOnly = true)
-    public MessageDto findLastMessageForRoom(Long chatRoomId) {
-        Optional<Message> lastMessageOptional = messageRepository.findFirstByChatRoomIdOrderByCreatedAtDesc(chatRoomId);
-        if (lastMessageOptional.isPresent()) {
-            Message message = lastMessageOptional.get();
-            return new MessageDto(
-                    message.getId(),
-                    message.getContent(),
-                    message.getCreatedAt(),
-                    message.getSender() != null ? message.getSender().getUsername() : "System",
-                    null
-            );
+    // Keyset paging, newest first. The position is an opaque cursor from a previous slice or a message id
+    // (before/after); without any of them the newest messages are returned. At most one may be given.
+    public MessageSliceDto findMessageSlice(Long chatRoomId, CurrentUser user, String cursor, Long beforeId, Long afterId, int limit){
+        if(!membershipIndex.isMember(chatRoomId, user.id())){
+            log.warn("Access denied: User {} not contain in group {}", user.username(), chatRoomId);
+            throw new AccessDeniedException("Access denied for history of this group");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_SLICE_SIZE));
+        MessageCursor position = resolvePosition(chatRoomId, cursor, beforeId, afterId);
+
+        // one extra row tells whether there is more in the requested direction
+        List<MessageHistoryQueryRepository.HistoryRow> rows;
+        if (position == null) {
+            rows = findLatestRows(chatRoomId, pageSize + 1);
+        } else if (position.before()) {
+            rows = historyQueryRepository.findBefore(chatRoomId, position.createdAt(), position.id(), pageSize + 1);
+        } else {
+            rows = historyQueryRepository.findAfter(chatRoomId, position.createdAt(), position.id(), pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<MessageHistoryQueryRepository.HistoryRow> page = new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageSize)));
+        boolean forward = position != null && !position.before();
+        if (forward) {
+            Collections.reverse(page);
+        }
+        if (page.isEmpty()) {
+            return new MessageSliceDto(List.of(), null, null);
+        }
+
+        MessageHistoryQueryRepository.HistoryRow newest = page.get(0);
+        MessageHistoryQueryRepository.HistoryRow oldest = page.get(page.size() - 1);
+        boolean olderExist = forward || hasMore;
+        boolean newerExist = forward ? hasMore : position != null;
+
+        return new MessageSliceDto(
+                page.stream().map(MessageHistoryQueryRepository.HistoryRow::message).toList(),
+                olderExist ? new MessageCursor(true, oldest.createdAt(), oldest.message().id()).encode() : null,
+                newerExist ? new MessageCursor(false, newest.createdAt(), newest.message().id()).encode() : null
+        );
+    }
+
+    // Full-text search in one room, newest first, paged by message id
+    public MessageSearchResultDto searchMessages(Long chatRoomId, CurrentUser user, String text, Long beforeId, int limit){
+        if(!membershipIndex.isMember(chatRoomId, user.id())){
+            log.warn("Access denied: User {} not contain in group {}", user.username(), chatRoomId);
+            throw new AccessDeniedException("Access denied for search in this group");
+        }
+
+        SearchQuery query = SearchQuery.parse(text);
+        if (query.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query has no words");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_SLICE_SIZE));
+        List<MessageDto> found = messageSearchIndex.search(chatRoomId, query, beforeId, pageSize + 1);
+        boolean hasMore = found.size() > pageSize;
+        List<MessageDto> page = hasMore ? found.subList(0, pageSize) : found;
+        return new MessageSearchResultDto(page, hasMore ? page.get(page.size() - 1).id() : null);
+    }
+
+    // The newest page usually comes from the recent message cache
+    private List<MessageHistoryQueryRepository.HistoryRow> findLatestRows(Long chatRoomId, int count){
+        if (count <= recentMessageCache.getCapacity()) {
+            RecentMessageCache.Snapshot snapshot = recentMessageCache.latest(chatRoomId);
+            if (snapshot.complete() || snapshot.newestFirst().size() >= count) {
+                return snapshot.newestFirst().subList(0, Math.min(count, snapshot.newestFirst().size()));
+            }
+        }
+        return historyQueryRepository.findLatest(chatRoomId, count);
+    }
+
+    // Any page of a room whose whole history fits into the cache; null if the database has to answer
+    private Page<MessageDto> findCachedPage(Long chatRoomId, Pageable pageable){
+        Sort sort = pageable.getSort();
+        if (pageable.isUnpaged() || !(sort.isUnsorted() || sort.equals(Sort.by(Sort.Direction.ASC, "createdAt")))) {
+            return null;
+        }
+
+        RecentMessageCache.Snapshot snapshot = recentMessageCache.latest(chatRoomId);
+        if (!snapshot.complete()) {
+            return null;
+        }
+        List<MessageDto> oldestFirst = new ArrayList<>(snapshot.newestFirst().size());
+        for (int i = snapshot.newestFirst().size() - 1; i >= 0; i--) {
+            oldestFirst.add(snapshot.newestFirst().get(i).message());
+        }
+        int from = (int) Math.min(pageable.getOffset(), oldestFirst.size());
+        int to = Math.min(from + pageable.getPageSize(), oldestFirst.size());
+        return new PageImpl<>(oldestFirst.subList(from, to), pageable, oldestFirst.size());
+    }
+
+    private MessageCursor resolvePosition(Long chatRoomId, String cursor, Long beforeId, Long afterId){
+        int given = (cursor != null ? 1 : 0) + (beforeId != null ? 1 : 0) + (afterId != null ? 1 : 0);
+        if (given > 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only one of cursor, before and after can be used");
+        }
+
+        if (cursor != null) {
+            try {
+                return MessageCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+
+        Long messageId = beforeId != null ? beforeId : afterId;
+        if (messageId == null) {
+            return null;
         }
-        return null;
+        Instant createdAt = historyQueryRepository.findCreatedAt(chatRoomId, messageId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Message " + messageId + " is not found in this room"));
+        return new MessageCursor(beforeId != null, createdAt, messageId);
     }
 }
@@ -0,0 +1,113 @@
+package org.example.projectchat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.chat.PresenceDeltaDto;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Buffers join/leave events per room and sends them as one PresenceDeltaDto per room and interval
+// to /topic/rooms/{roomId}/presence. Opposite events of the same user cancel out, and leaves wait
+// for a grace period, so a disconnect followed by a quick reconnect produces no event at all.
+// Changes are cluster-wide (see PresenceService): every node records its own and its peers' changes and
+// sends the frames to its local sessions only, so a reconnect to another node cancels out the same way
+// and all nodes report the same online count.
+@Service
+@Slf4j
+public class PresenceDeltaService {
+    private final ChatBroadcaster chatBroadcaster;
+    private final PresenceService presenceService;
+    private final long leaveGraceMillis;
+    private final Counter publishedChanges;
+    private final Counter cancelledChanges;
+
+    // roomId -> userId -> change not yet published; each room is only touched inside compute
+    private final Map<Long, Map<Long, PendingChange>> pending = new ConcurrentHashMap<>();
+
+    public PresenceDeltaService(ChatBroadcaster chatBroadcaster,
+                                PresenceService presenceService,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.presence.leave-grace-ms:5000}") long leaveGraceMillis) {
+        this.chatBroadcaster = chatBroadcaster;
+        this.presenceService = presenceService;
+        this.leaveGraceMillis = leaveGraceMillis;
+        this.publishedChanges = Counter.builder("chat.presence.changes").tag("result", "published").register(meterRegistry);
+        this.cancelledChanges = Counter.builder("chat.presence.changes").tag("result", "cancelled").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        presenceService.addPeerChangeListener(change ->
+                record(change.roomId(), change.userId(), change.username(), change.joined()));
+    }
+
+    public void joined(Long roomId, Long userId, String username) {
+        record(roomId, userId, username, true);
+    }
+
+    public void left(Long roomId, Long userId, String username) {
+        record(roomId, userId, username, false);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.delta-flush-ms:2000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Long roomId : pending.keySet()) {
+            List<UserDto> joined = new ArrayList<>();
+            List<UserDto> left = new ArrayList<>();
+
+            pending.computeIfPresent(roomId, (id, changes) -> {
+                Iterator<Map.Entry<Long, PendingChange>> iterator = changes.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Long, PendingChange> entry = iterator.next();
+                    PendingChange change = entry.getValue();
+                    if (change.joined()) {
+                        joined.add(new UserDto(entry.getKey(), change.username()));
+                        iterator.remove();
+                    } else if (now - change.since() >= leaveGraceMillis) {
+                        left.add(new UserDto(entry.getKey(), change.username()));
+                        iterator.remove();
+                    }
+                }
+                return changes.isEmpty() ? null : changes;
+            });
+
+            if (!joined.isEmpty() || !left.isEmpty()) {
+                publishedChanges.increment(joined.size() + left.size());
+                chatBroadcaster.broadcastLocal("/topic/rooms/" + roomId + "/presence",
+                        new PresenceDeltaDto(roomId, joined, left, presenceService.onlineCount(roomId)));
+            }
+        }
+    }
+
+    private void record(Long roomId, Long userId, String username, boolean joined) {
+        long now = System.currentTimeMillis();
+        pending.compute(roomId, (id, changes) -> {
+            Map<Long, PendingChange> roomChanges = changes != null ? changes : new HashMap<>();
+            PendingChange previous = roomChanges.get(userId);
+            if (previous != null && previous.joined() != joined) {
+                // leave + join (or join + leave) within the window: nothing happened
+                roomChanges.remove(userId);
+                cancelledChanges.increment(2);
+            } else if (previous == null) {
+                roomChanges.put(userId, new PendingChange(username, joined, now));
+            }
+            return roomChanges.isEmpty() ? null : roomChanges;
+        });
+    }
+
+    private record PendingChange(String username, boolean joined, long since) {
+    }
+}
@@ -0,0 +1,396 @@
+package org.example.projectchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.chat.RoomOnlineCountDto;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.util.Destinations;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Presence: sessionId -> session, userId -> open sessions, roomId -> online users.
+// Multi-device users are reference counted: a user is online while any session is open, and
+// online in a room while any of their sessions is subscribed to /topic/rooms/{roomId}.
+// Every index is a ConcurrentHashMap updated with per-key compute, so unrelated users and rooms never contend.
+// With several nodes, room joins and leaves of local sessions are announced to the peers, so the room
+// view (online members, counts, join/leave changes) covers the whole cluster. Announcements may be lost,
+// so every node also re-announces its room presence each chat.presence.cluster-refresh-ms, and peers drop
+// entries that were not refreshed for three intervals (a node that went away included).
+// Sessions and isOnline stay node-local.
+@Service
+@Slf4j
+public class PresenceService {
+    public static final String ROOM_TOPIC_PREFIX = "/topic/rooms/";
+    private static final String LAST_SEEN_SQL = "update users set last_seen_at = ? where id = ?";
+    private static final String PRESENCE_TOPIC = "presence";
+    // keeps a refresh announcement well below the NOTIFY payload limit
+    private static final int ENTRIES_PER_ANNOUNCEMENT = 50;
+    private static final int MISSED_REFRESHES = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoomMembershipIndex membershipIndex;
+    private final ClusterControlChannel controlChannel;
+    private final ObjectMapper objectMapper;
+    private final boolean clustered;
+    private final long refreshMillis;
+
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, UserPresence> users = new ConcurrentHashMap<>();
+    // roomId -> online users of this node and of the peers; each room is only changed inside compute
+    private final Map<Long, RoomPresence> rooms = new ConcurrentHashMap<>();
+    // userId -> last seen, written in batches by flushLastSeen
+    private final Map<Long, Timestamp> pendingLastSeen = new ConcurrentHashMap<>();
+    private final List<Consumer<RoomChange>> peerChangeListeners = new CopyOnWriteArrayList<>();
+
+    public PresenceService(JdbcTemplate jdbcTemplate,
+                           RoomMembershipIndex membershipIndex,
+                           ClusterControlChannel controlChannel,
+                           ObjectMapper objectMapper,
+                           @Value("${chat.cluster.fanout:loopback}") String clusterFanout,
+                           @Value("${chat.presence.cluster-refresh-ms:15000}") long refreshMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.membershipIndex = membershipIndex;
+        this.controlChannel = controlChannel;
+        this.objectMapper = objectMapper;
+        this.clustered = !"loopback".equals(clusterFanout);
+        this.refreshMillis = refreshMillis;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (clustered) {
+            controlChannel.subscribe(PRESENCE_TOPIC, this::onPeerAnnouncement);
+        }
+    }
+
+    // listener is told about users that came online or went offline in a room because of another node
+    public void addPeerChangeListener(Consumer<RoomChange> listener) {
+        peerChangeListeners.add(listener);
+    }
+
+    // true if this is the user's first open session
+    public boolean connect(String sessionId, CurrentUser user) {
+        if (sessions.putIfAbsent(sessionId, new SessionPresence(user.id(), user.username())) != null) {
+            return false;
+        }
+        UserPresence presence = users.merge(user.id(), new UserPresence(user.username(), 1),
+                (current, added) -> new UserPresence(current.username(), current.sessions() + 1));
+        return presence.sessions() == 1;
+    }
+
+    // roomId if the user just came online in that room (on any node), otherwise null
+    public Long subscribe(String sessionId, String subscriptionId, String destination) {
+        long roomId = Destinations.parseId(destination, ROOM_TOPIC_PREFIX);
+        SessionPresence session = sessions.get(sessionId);
+        if (roomId < 0 || session == null || subscriptionId == null) {
+            return null;
+        }
+        // subscriptions of non-members do not count as presence
+        if (!membershipIndex.isMember(roomId, session.userId())
+                || session.subscriptions().putIfAbsent(subscriptionId, roomId) != null) {
+            return null;
+        }
+        return joinRoom(roomId, session.userId(), session.username()) ? roomId : null;
+    }
+
+    // roomId if the user just went offline in that room (on every node), otherwise null
+    public Long unsubscribe(String sessionId, String subscriptionId) {
+        SessionPresence session = sessions.get(sessionId);
+        if (session == null || subscriptionId == null) {
+            return null;
+        }
+        Long roomId = session.subscriptions().remove(subscriptionId);
+        if (roomId == null) {
+            return null;
+        }
+        return leaveRoom(roomId, session.userId(), session.username()) ? roomId : null;
+    }
+
+    // Rooms the user went offline in (on every node) because this session closed; null if the session is unknown
+    public Disconnection disconnect(String sessionId) {
+        SessionPresence session = sessions.remove(sessionId);
+        if (session == null) {
+            return null;
+        }
+
+        List<Long> leftRooms = new ArrayList<>();
+        for (Long roomId : session.subscriptions().values()) {
+            if (leaveRoom(roomId, session.userId(), session.username()) && !leftRooms.contains(roomId)) {
+                leftRooms.add(roomId);
+            }
+        }
+
+        UserPresence presence = users.computeIfPresent(session.userId(), (id, current) ->
+                current.sessions() > 1 ? new UserPresence(current.username(), current.sessions() - 1) : null);
+        boolean wentOffline = presence == null;
+        if (wentOffline) {
+            pendingLastSeen.put(session.userId(), Timestamp.from(Instant.now()));
+        }
+        return new Disconnection(session.userId(), session.username(), leftRooms, wentOffline);
+    }
+
+    public boolean isOnline(Long userId) {
+        return users.containsKey(userId);
+    }
+
+    public List<UserDto> findOnlineMembers(Long roomId, CurrentUser requester) {
+        checkMember(roomId, requester);
+
+        RoomPresence room = rooms.get(roomId);
+        if (room == null) {
+            return Collections.emptyList();
+        }
+        List<UserDto> members = new ArrayList<>(room.local().size() + room.remote().size());
+        for (Long userId : room.local().keySet()) {
+            UserPresence presence = users.get(userId);
+            if (presence != null) {
+                members.add(new UserDto(userId, presence.username()));
+            }
+        }
+        room.remote().forEach((userId, member) -> {
+            if (!room.local().containsKey(userId)) {
+                members.add(new UserDto(userId, member.username()));
+            }
+        });
+        return members;
+    }
+
+    public RoomOnlineCountDto countOnlineMembers(Long roomId, CurrentUser requester) {
+        checkMember(roomId, requester);
+        return new RoomOnlineCountDto(roomId, onlineCount(roomId));
+    }
+
+    public int onlineCount(Long roomId) {
+        RoomPresence room = rooms.get(roomId);
+        return room != null ? room.onlineCount() : 0;
+    }
+
+    // Re-announces this node's room presence and forgets peer entries that were not refreshed in time
+    @Scheduled(fixedDelayString = "${chat.presence.cluster-refresh-ms:15000}")
+    public void refreshCluster() {
+        if (!clustered) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        rooms.forEach((roomId, room) -> room.local().keySet().forEach(userId -> {
+            UserPresence presence = users.get(userId);
+            if (presence != null) {
+                entries.add(new Entry(roomId, userId, presence.username()));
+            }
+        }));
+        for (int from = 0; from < entries.size(); from += ENTRIES_PER_ANNOUNCEMENT) {
+            announce(entries.subList(from, Math.min(entries.size(), from + ENTRIES_PER_ANNOUNCEMENT)), List.of());
+        }
+
+        long staleBefore = System.currentTimeMillis() - MISSED_REFRESHES * refreshMillis;
+        for (Long roomId : rooms.keySet()) {
+            List<RoomChange> changes = new ArrayList<>();
+            rooms.computeIfPresent(roomId, (id, room) -> {
+                room.remote().forEach((userId, member) -> {
+                    member.nodes().values().removeIf(refreshedAt -> refreshedAt < staleBefore);
+                    if (member.nodes().isEmpty()) {
+                        room.remote().remove(userId);
+                        if (!room.local().containsKey(userId)) {
+                            changes.add(new RoomChange(roomId, userId, member.username(), false));
+                        }
+                    }
+                });
+                return room.isEmpty() ? null : room;
+            });
+            notifyPeerChanges(changes);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.last-seen-flush-ms:30000}")
+    @PreDestroy
+    public void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Long userId : pendingLastSeen.keySet()) {
+            Timestamp lastSeen = pendingLastSeen.remove(userId);
+            if (lastSeen != null) {
+                rows.add(new Object[]{lastSeen, userId});
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(LAST_SEEN_SQL, rows);
+            log.debug("Last seen written for {} users", rows.size());
+        } catch (Exception e) {
+            log.error("Failed to write last seen for {} users: {}", rows.size(), e.getMessage());
+            // keep the values for the next flush unless a newer one arrived meanwhile
+            rows.forEach(row -> pendingLastSeen.putIfAbsent((Long) row[1], (Timestamp) row[0]));
+        }
+    }
+
+    // true if the user was not online in the room anywhere before
+    private boolean joinRoom(Long roomId, Long userId, String username) {
+        boolean[] firstLocal = {false};
+        boolean[] joined = {false};
+        rooms.compute(roomId, (id, current) -> {
+            RoomPresence room = current != null ? current : new RoomPresence();
+            joined[0] = !room.contains(userId);
+            firstLocal[0] = room.local().merge(userId, 1, Integer::sum) == 1;
+            return room;
+        });
+        if (firstLocal[0]) {
+            announce(List.of(new Entry(roomId, userId, username)), List.of());
+        }
+        return joined[0];
+    }
+
+    // true if the user is no longer online in the room anywhere
+    private boolean leaveRoom(Long roomId, Long userId, String username) {
+        boolean[] lastLocal = {false};
+        boolean[] left = {false};
+        rooms.computeIfPresent(roomId, (id, room) -> {
+            if (!room.local().containsKey(userId)) {
+                return room;
+            }
+            lastLocal[0] = room.local().computeIfPresent(userId, (user, count) -> count > 1 ? count - 1 : null) == null;
+            left[0] = !room.contains(userId);
+            return room.isEmpty() ? null : room;
+        });
+        if (lastLocal[0]) {
+            announce(List.of(), List.of(new Entry(roomId, userId, username)));
+        }
+        return left[0];
+    }
+
+    private void announce(List<Entry> joined, List<Entry> left) {
+        if (!clustered) {
+            return;
+        }
+        try {
+            controlChannel.publish(PRESENCE_TOPIC, objectMapper.writeValueAsString(
+                    new Announcement(controlChannel.getNodeId(), joined, left)));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode presence announcement: {}", e.getMessage());
+        }
+    }
+
+    private void onPeerAnnouncement(String payload) {
+        Announcement announcement;
+        try {
+            announcement = objectMapper.readValue(payload, Announcement.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+
+        long now = System.currentTimeMillis();
+        List<RoomChange> changes = new ArrayList<>();
+        for (Entry entry : announcement.joined()) {
+            rooms.compute(entry.roomId(), (id, current) -> {
+                RoomPresence room = current != null ? current : new RoomPresence();
+                if (!room.contains(entry.userId())) {
+                    changes.add(new RoomChange(entry.roomId(), entry.userId(), entry.username(), true));
+                }
+                room.remote().computeIfAbsent(entry.userId(), user -> new RemoteMember(entry.username()))
+                        .nodes().put(announcement.node(), now);
+                return room;
+            });
+        }
+        for (Entry entry : announcement.left()) {
+            rooms.computeIfPresent(entry.roomId(), (id, room) -> {
+                RemoteMember member = room.remote().get(entry.userId());
+                if (member != null && member.nodes().remove(announcement.node()) != null && member.nodes().isEmpty()) {
+                    room.remote().remove(entry.userId());
+                    if (!room.local().containsKey(entry.userId())) {
+                        changes.add(new RoomChange(entry.roomId(), entry.userId(), entry.username(), false));
+                    }
+                }
+                return room.isEmpty() ? null : room;
+            });
+        }
+        notifyPeerChanges(changes);
+    }
+
+    private void notifyPeerChanges(List<RoomChange> changes) {
+        for (RoomChange change : changes) {
+            peerChangeListeners.forEach(listener -> listener.accept(change));
+        }
+    }
+
+    private void checkMember(Long roomId, CurrentUser requester) {
+        if (!membershipIndex.isMember(roomId, requester.id())) {
+            log.warn("Access denied: User {} not contain in group {}", requester.username(), roomId);
+            throw new AccessDeniedException("Access denied for presence of this group");
+        }
+    }
+
+    public record Disconnection(Long userId, String username, List<Long> leftRooms, boolean wentOffline) {
+    }
+
+    public record RoomChange(Long roomId, Long userId, String username, boolean joined) {
+    }
+
+    // what a node announces: its sessions' users that came online (or are still online) and went offline per room
+    public record Announcement(long node, List<Entry> joined, List<Entry> left) {
+    }
+
+    public record Entry(Long roomId, Long userId, String username) {
+    }
+
+    // local: userId -> number of this node's subscriptions; remote: userId -> peers that have the user online
+    private record RoomPresence(Map<Long, Integer> local, Map<Long, RemoteMember> remote) {
+        RoomPresence() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        boolean contains(Long userId) {
+            return local.containsKey(userId) || remote.containsKey(userId);
+        }
+
+        boolean isEmpty() {
+            return local.isEmpty() && remote.isEmpty();
+        }
+
+        int onlineCount() {
+            int count = local.size();
+            for (Long userId : remote.keySet()) {
+                if (!local.containsKey(userId)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    // nodeId -> when that node last announced the user
+    private record RemoteMember(String username, Map<Long, Long> nodes) {
+        RemoteMember(String username) {
+            this(username, new ConcurrentHashMap<>());
+        }
+    }
+
+    private record UserPresence(String username, int sessions) {
+    }
+
+    private record SessionPresence(Long userId, String username, Map<String, Long> subscriptions) {
+        SessionPresence(Long userId, String username) {
+            this(userId, username, new ConcurrentHashMap<>());
+        }
+    }
+}
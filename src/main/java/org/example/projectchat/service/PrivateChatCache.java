@@ -0,0 +1,72 @@
+package org.example.projectchat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// (requester, other username) -> private room, so reopening a DM needs no query at all.
+// Keyed by the username the client sends; the canonical pair key lives in the database.
+// Private rooms are never deleted and their participants never change, so entries do not go stale.
+@Service
+public class PrivateChatCache {
+    private final Map<DirectKey, PrivateChat> chats;
+    // an access-ordered LinkedHashMap changes on every get
+    private final Lock lock = new ReentrantLock();
+
+    public PrivateChatCache(@Value("${chat.private-chat.cache-size:100000}") int maxEntries) {
+        this.chats = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DirectKey, PrivateChat> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public PrivateChat get(Long requesterId, String username) {
+        lock.lock();
+        try {
+            return chats.get(new DirectKey(requesterId, username));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Both directions; applied after the surrounding transaction commits
+    public void put(Long requesterId, String requesterUsername, PrivateChat chat) {
+        afterCommit(() -> {
+            lock.lock();
+            try {
+                chats.put(new DirectKey(requesterId, chat.username()), chat);
+                chats.put(new DirectKey(chat.userId(), requesterUsername), new PrivateChat(chat.roomId(), requesterId, requesterUsername));
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // the room and the other participant
+    public record PrivateChat(Long roomId, Long userId, String username) {
+    }
+
+    private record DirectKey(Long requesterId, String username) {
+    }
+}
@@ -0,0 +1,315 @@
+package org.example.projectchat.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.chat.RoomReadStateDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Read cursors (last read message per user and room) and unread counts, kept in memory.
+// A room's position counter is chat_rooms.message_count, bumped by the ingest batch in the same
+// transaction; a cursor stores the counter value at the message it points to, so
+// unread = room counter - cursor position, without counting messages.
+// Cursor changes are written to chatroom_read_cursors in batches by flushCursors.
+// With several nodes, reads are announced to the peers; counters and cursors are also reloaded after
+// chat.read-cursors.ttl-ms, which brings in other nodes' messages and any announcement that was lost.
+@Service
+@Slf4j
+public class ReadCursorService implements MessageBatchListener {
+    private static final String ROOM_STATS_SQL =
+            "select c.id, c.message_count, (select m.id from messages m where m.chatroom_id = c.id "
+                    + "order by m.created_at desc, m.id desc limit 1) from chat_rooms c where c.id = any(?)";
+    private static final String USER_CURSORS_SQL =
+            "select chatroom_id, last_read_message_id, read_count from chatroom_read_cursors where user_id = ?";
+    // created_at bounds the index range, the id comparison is the exact one
+    private static final String MESSAGES_AFTER_SQL =
+            "select count(*) from messages where chatroom_id = ? and created_at >= ? and id > ?";
+    private static final String UPSERT_CURSOR_SQL =
+            "insert into chatroom_read_cursors (user_id, chatroom_id, last_read_message_id, read_count, updated_at) "
+                    + "values (?, ?, ?, ?, now()) on conflict (user_id, chatroom_id) do update "
+                    + "set last_read_message_id = excluded.last_read_message_id, read_count = excluded.read_count, "
+                    + "updated_at = excluded.updated_at "
+                    + "where chatroom_read_cursors.last_read_message_id < excluded.last_read_message_id";
+    // tolerated clock difference between id assignment and created_at (other nodes included)
+    private static final long CREATED_AT_SLACK_MILLIS = 1000;
+    private static final String CURSOR_TOPIC = "read-cursors";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoomMembershipIndex membershipIndex;
+    private final ClusterControlChannel controlChannel;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    // Both maps only ever move forward (merged by max), so loads and batch updates may arrive in any order
+    private final Map<Long, RoomCounter> rooms = new ConcurrentHashMap<>();
+    private final Map<Long, UserCursors> users = new ConcurrentHashMap<>();
+    private final Map<CursorKey, Cursor> pendingWrites = new ConcurrentHashMap<>();
+    private final Lock evictionLock = new ReentrantLock();
+
+    public ReadCursorService(JdbcTemplate jdbcTemplate,
+                             RoomMembershipIndex membershipIndex,
+                             ClusterControlChannel controlChannel,
+                             @Value("${chat.read-cursors.ttl-ms:30000}") long ttlMillis,
+                             @Value("${chat.read-cursors.max-entries:100000}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.membershipIndex = membershipIndex;
+        this.controlChannel = controlChannel;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        controlChannel.subscribe(CURSOR_TOPIC, this::onPeerRead);
+    }
+
+    // Runs on the ingest completion thread: advances room counters and moves each sender's cursor past their own message
+    @Override
+    public void onBatchCommitted(Batch batch) {
+        Map<Long, Long> inBatch = new HashMap<>();
+        Map<Long, Long> lastMessageIds = new HashMap<>();
+        for (PersistedMessage message : batch.messages()) {
+            inBatch.merge(message.roomId(), 1L, Long::sum);
+            lastMessageIds.merge(message.roomId(), message.message().id(), Math::max);
+        }
+
+        batch.roomMessageCounts().forEach((roomId, count) ->
+                rooms.merge(roomId, new RoomCounter(count, lastMessageIds.getOrDefault(roomId, 0L), 0), RoomCounter::max));
+
+        // the k-th message of a room in this batch sits at position count - inBatch + k
+        Map<Long, Long> seen = new HashMap<>();
+        for (PersistedMessage message : batch.messages()) {
+            Long count = batch.roomMessageCounts().get(message.roomId());
+            if (count != null) {
+                long position = count - inBatch.get(message.roomId()) + seen.merge(message.roomId(), 1L, Long::sum);
+                advance(message.senderId(), message.roomId(), new Cursor(message.message().id(), position));
+            }
+        }
+        evictIfFull();
+    }
+
+    public RoomReadStateDto markRead(Long roomId, Long messageId, CurrentUser user) {
+        if (!membershipIndex.isMember(roomId, user.id())) {
+            log.warn("Access denied: User {} not contain in group {}", user.username(), roomId);
+            throw new AccessDeniedException("Access denied for this group");
+        }
+
+        RoomCounter counter = roomCounter(roomId);
+        Cursor cursor;
+        if (messageId >= counter.lastMessageId()) {
+            // the common case: read up to the newest message, no query needed
+            cursor = new Cursor(counter.lastMessageId(), counter.messageCount());
+        } else {
+            cursor = new Cursor(messageId, counter.messageCount() - countMessagesAfter(roomId, messageId));
+        }
+
+        UserCursors userCursors = loadedCursors(user.id());
+        if (advance(user.id(), roomId, cursor)) {
+            controlChannel.publish(CURSOR_TOPIC, user.id() + ":" + roomId + ":" + cursor.lastReadMessageId() + ":" + cursor.position());
+        }
+        Cursor current = userCursors.cursors().get(roomId);
+        return new RoomReadStateDto(roomId, current.lastReadMessageId(), unread(counter, current));
+    }
+
+    // Counter values read elsewhere (e.g. by the chat list query) save the lazy load in unreadCounts
+    public void observeRoom(Long roomId, long messageCount, long lastMessageId) {
+        rooms.merge(roomId, new RoomCounter(messageCount, lastMessageId, System.currentTimeMillis()), RoomCounter::max);
+    }
+
+    // roomId -> unread messages of the user; rooms must be ones the user is a member of
+    public Map<Long, Long> unreadCounts(Long userId, Collection<Long> roomIds) {
+        long now = System.currentTimeMillis();
+        loadRooms(roomIds.stream().filter(roomId -> isStale(rooms.get(roomId), now)).toList());
+        UserCursors userCursors = loadedCursors(userId);
+
+        Map<Long, Long> unread = new HashMap<>();
+        for (Long roomId : roomIds) {
+            RoomCounter counter = rooms.get(roomId);
+            unread.put(roomId, counter == null ? 0L : unread(counter, userCursors.cursors().get(roomId)));
+        }
+        return unread;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.read-cursors.flush-ms:5000}")
+    @PreDestroy
+    public void flushCursors() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (CursorKey key : pendingWrites.keySet()) {
+            Cursor cursor = pendingWrites.remove(key);
+            if (cursor != null) {
+                rows.add(new Object[]{key.userId(), key.roomId(), cursor.lastReadMessageId(), cursor.position()});
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_CURSOR_SQL, rows);
+            log.debug("Read cursors written: {}", rows.size());
+        } catch (Exception e) {
+            log.error("Failed to write {} read cursors: {}", rows.size(), e.getMessage());
+            // keep them for the next flush unless a newer one arrived meanwhile
+            rows.forEach(row -> pendingWrites.merge(new CursorKey((Long) row[0], (Long) row[1]),
+                    new Cursor((Long) row[2], (Long) row[3]), Cursor::later));
+        }
+    }
+
+    // true if the cursor moved
+    private boolean advance(Long userId, Long roomId, Cursor cursor) {
+        UserCursors userCursors = users.computeIfAbsent(userId, id -> new UserCursors());
+        if (userCursors.cursors().merge(roomId, cursor, Cursor::later) == cursor) {
+            pendingWrites.merge(new CursorKey(userId, roomId), cursor, Cursor::later);
+            return true;
+        }
+        return false;
+    }
+
+    // userId:roomId:messageId:position read on a peer node, which also writes it; only loaded users are updated
+    private void onPeerRead(String payload) {
+        String[] parts = payload.split(":");
+        Long roomId = Long.parseLong(parts[1]);
+        Cursor cursor = new Cursor(Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+
+        UserCursors userCursors = users.get(Long.parseLong(parts[0]));
+        if (userCursors != null) {
+            userCursors.cursors().merge(roomId, cursor, Cursor::later);
+        }
+        // the reader saw the room up to this message, so the counter is at least there
+        rooms.computeIfPresent(roomId, (id, counter) -> RoomCounter.max(counter, new RoomCounter(cursor.position(), cursor.lastReadMessageId(), 0)));
+    }
+
+    private boolean isStale(RoomCounter counter, long now) {
+        return counter == null || now - counter.loadedAt() > ttlMillis;
+    }
+
+    // All three maps are bounded by maxEntries. Pending cursors are written right away; users and rooms past
+    // their TTL are dropped first (they would be reloaded anyway), then everything, and reloads find the written cursors.
+    private void evictIfFull() {
+        boolean full = users.size() > maxEntries || rooms.size() > maxEntries || pendingWrites.size() > maxEntries;
+        if (!full || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            flushCursors();
+            long now = System.currentTimeMillis();
+            users.values().removeIf(userCursors -> now - userCursors.loadedAt > ttlMillis);
+            rooms.values().removeIf(counter -> isStale(counter, now));
+            if (users.size() > maxEntries) {
+                users.clear();
+            }
+            if (rooms.size() > maxEntries) {
+                rooms.clear();
+            }
+            log.debug("Read cursor caches trimmed to {} users, {} rooms", users.size(), rooms.size());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static long unread(RoomCounter counter, Cursor cursor) {
+        long position = cursor == null ? 0 : cursor.position();
+        return Math.max(0, counter.messageCount() - position);
+    }
+
+    private RoomCounter roomCounter(Long roomId) {
+        RoomCounter counter = rooms.get(roomId);
+        if (isStale(counter, System.currentTimeMillis())) {
+            loadRooms(List.of(roomId));
+            counter = rooms.getOrDefault(roomId, new RoomCounter(0, 0, 0));
+        }
+        return counter;
+    }
+
+    private void loadRooms(List<Long> roomIds) {
+        if (roomIds.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        jdbcTemplate.query(ROOM_STATS_SQL,
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("bigint", roomIds.toArray())),
+                (RowCallbackHandler) resultSet -> rooms.merge(resultSet.getLong(1),
+                        new RoomCounter(resultSet.getLong(2), resultSet.getLong(3), now), RoomCounter::max));
+        evictIfFull();
+    }
+
+    // Stored cursors are (re)loaded when the user's entry is older than the TTL and merged under the in-memory ones
+    private UserCursors loadedCursors(Long userId) {
+        UserCursors userCursors = users.computeIfAbsent(userId, id -> new UserCursors());
+        long now = System.currentTimeMillis();
+        if (now - userCursors.loadedAt <= ttlMillis) {
+            return userCursors;
+        }
+
+        userCursors.loadLock.lock();
+        try {
+            if (now - userCursors.loadedAt > ttlMillis) {
+                jdbcTemplate.query(USER_CURSORS_SQL, (RowCallbackHandler) resultSet -> userCursors.cursors().merge(
+                        resultSet.getLong(1), new Cursor(resultSet.getLong(2), resultSet.getLong(3)), Cursor::later), userId);
+                userCursors.loadedAt = now;
+            }
+        } finally {
+            userCursors.loadLock.unlock();
+        }
+        evictIfFull();
+        return userCursors;
+    }
+
+    private long countMessagesAfter(Long roomId, long messageId) {
+        long idMillis = SnowflakeIdGenerator.timestampMillisOf(messageId);
+        // ids from before snowflake ids carry no timestamp
+        Timestamp from = idMillis > SnowflakeIdGenerator.EPOCH_MILLIS
+                ? Timestamp.from(Instant.ofEpochMilli(idMillis - CREATED_AT_SLACK_MILLIS))
+                : new Timestamp(0);
+        Long after = jdbcTemplate.queryForObject(MESSAGES_AFTER_SQL, Long.class, roomId, from, messageId);
+        return after != null ? after : 0;
+    }
+
+    // loadedAt: when the counter was last read from the database, 0 if only advanced locally
+    private record RoomCounter(long messageCount, long lastMessageId, long loadedAt) {
+        static RoomCounter max(RoomCounter a, RoomCounter b) {
+            return new RoomCounter(Math.max(a.messageCount, b.messageCount), Math.max(a.lastMessageId, b.lastMessageId),
+                    Math.max(a.loadedAt, b.loadedAt));
+        }
+    }
+
+    private record Cursor(long lastReadMessageId, long position) {
+        static Cursor later(Cursor a, Cursor b) {
+            return b.lastReadMessageId > a.lastReadMessageId ? b : a;
+        }
+    }
+
+    private record CursorKey(Long userId, Long roomId) {
+    }
+
+    private static final class UserCursors {
+        private final Map<Long, Cursor> cursors = new ConcurrentHashMap<>();
+        private final Lock loadLock = new ReentrantLock();
+        // 0 = never loaded
+        private volatile long loadedAt;
+
+        Map<Long, Cursor> cursors() {
+            return cursors;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example.projectchat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.repository.MessageHistoryQueryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Node-local ring buffer of the newest messages per room, so opening a room does not hit the database.
+// Filled by the ingest batch for rooms already cached, backfilled from the database on a miss.
+// The estimated size of all buffers is bounded; above the budget the least recently read rooms are dropped.
+// Only this node's writes reach the buffers, so it switches itself off when messages fan out to other nodes.
+@Service
+@Slf4j
+public class RecentMessageCache implements MessageBatchListener {
+    // fixed overhead per cached message (row, dto, strings, timestamps), characters are counted on top
+    private static final long ROW_OVERHEAD_BYTES = 160;
+    private static final int APPEND_STRIPES = 64;
+
+    private final MessageHistoryQueryRepository historyQueryRepository;
+    private final int capacity;
+    private final long maxBytes;
+    private final boolean enabled;
+
+    private final Map<Long, RoomBuffer> rooms = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final Lock evictionLock = new ReentrantLock();
+    // bumped before every append; a backfill that overlapped an append of its room is not installed
+    private final AtomicLongArray appendStripes = new AtomicLongArray(APPEND_STRIPES);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public RecentMessageCache(MessageHistoryQueryRepository historyQueryRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.history-cache.messages-per-room:64}") int capacity,
+                              @Value("${chat.history-cache.max-bytes:33554432}") long maxBytes,
+                              @Value("${chat.history-cache.enabled:true}") boolean enabled,
+                              @Value("${chat.cluster.fanout:loopback}") String clusterFanout) {
+        this.historyQueryRepository = historyQueryRepository;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        // peers' messages would be missing from the buffers while they still claim the room's newest page
+        this.enabled = enabled && "loopback".equals(clusterFanout);
+        if (enabled && !this.enabled) {
+            log.warn("Recent message cache disabled: chat.cluster.fanout={} runs several instances", clusterFanout);
+        }
+
+        this.hits = Counter.builder("chat.history.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.history.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("chat.history.cache.evictions").register(meterRegistry);
+        Gauge.builder("chat.history.cache.bytes", totalBytes, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.history.cache.rooms", rooms, Map::size).register(meterRegistry);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Newest messages of the room, newest first. complete = the room has no older messages than these.
+    public Snapshot latest(Long roomId) {
+        RoomBuffer buffer = rooms.get(roomId);
+        if (buffer != null) {
+            hits.increment();
+            return buffer.snapshot();
+        }
+
+        misses.increment();
+        if (!enabled) {
+            List<MessageHistoryQueryRepository.HistoryRow> loaded = historyQueryRepository.findLatest(roomId, capacity);
+            return new Snapshot(loaded, loaded.size() < capacity);
+        }
+
+        int stripe = stripe(roomId);
+        long appendsBefore = appendStripes.get(stripe);
+        List<MessageHistoryQueryRepository.HistoryRow> loaded = historyQueryRepository.findLatest(roomId, capacity);
+
+        RoomBuffer fresh = new RoomBuffer(capacity, loaded.size() < capacity);
+        // oldest first, so the ring ends with the newest message
+        for (int i = loaded.size() - 1; i >= 0; i--) {
+            fresh.append(loaded.get(i));
+        }
+
+        RoomBuffer installed = rooms.compute(roomId, (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            if (appendStripes.get(stripe) != appendsBefore) {
+                return null;
+            }
+            totalBytes.addAndGet(fresh.bytes());
+            return fresh;
+        });
+        if (installed == fresh) {
+            evictIfOverBudget();
+        }
+        return installed != null ? installed.snapshot() : fresh.snapshot();
+    }
+
+    @Override
+    public void onBatchCommitted(Batch batch) {
+        for (PersistedMessage message : batch.messages()) {
+            MessageDto dto = message.message();
+            // same shape as a row read back from the database (no client message id in history)
+            MessageHistoryQueryRepository.HistoryRow row = new MessageHistoryQueryRepository.HistoryRow(
+                    new MessageDto(dto.id(), dto.content(), dto.createdAt(), dto.senderUsername(), null),
+                    dto.createdAt().atZone(ZoneId.systemDefault()).toInstant());
+
+            appendStripes.incrementAndGet(stripe(message.roomId()));
+            rooms.computeIfPresent(message.roomId(), (id, buffer) -> {
+                totalBytes.addAndGet(buffer.append(row));
+                return buffer;
+            });
+        }
+        evictIfOverBudget();
+    }
+
+    private void evictIfOverBudget() {
+        if (totalBytes.get() <= maxBytes || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // drop cold rooms until 10% below the budget, so eviction does not run on every append
+            long target = maxBytes - maxBytes / 10;
+            List<Map.Entry<Long, RoomBuffer>> coldestFirst = new ArrayList<>(rooms.entrySet());
+            coldestFirst.sort(Comparator.comparingLong(entry -> entry.getValue().lastReadNanos));
+            int evicted = 0;
+            for (Map.Entry<Long, RoomBuffer> entry : coldestFirst) {
+                if (totalBytes.get() <= target) {
+                    break;
+                }
+                if (rooms.remove(entry.getKey(), entry.getValue())) {
+                    totalBytes.addAndGet(-entry.getValue().bytes());
+                    evicted++;
+                }
+            }
+            evictions.increment(evicted);
+            log.debug("Recent message cache evicted {} rooms, {} bytes left", evicted, totalBytes.get());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static int stripe(Long roomId) {
+        return (int) (roomId ^ (roomId >>> 32)) & (APPEND_STRIPES - 1);
+    }
+
+    private static long estimateBytes(MessageHistoryQueryRepository.HistoryRow row) {
+        MessageDto message = row.message();
+        int chars = (message.content() != null ? message.content().length() : 0)
+                + (message.senderUsername() != null ? message.senderUsername().length() : 0);
+        return ROW_OVERHEAD_BYTES + 2L * chars;
+    }
+
+    public record Snapshot(List<MessageHistoryQueryRepository.HistoryRow> newestFirst, boolean complete) {
+    }
+
+    // Only touched under its own lock (no I/O inside)
+    private static final class RoomBuffer {
+        private final Lock lock = new ReentrantLock();
+        private final MessageHistoryQueryRepository.HistoryRow[] ring;
+        private int head; // index of the oldest row
+        private int size;
+        private long bytes;
+        // true while the buffer holds every message of the room
+        private boolean complete;
+        private volatile long lastReadNanos = System.nanoTime();
+
+        RoomBuffer(int capacity, boolean complete) {
+            this.ring = new MessageHistoryQueryRepository.HistoryRow[capacity];
+            this.complete = complete;
+        }
+
+        // returns the change of the estimated size
+        long append(MessageHistoryQueryRepository.HistoryRow row) {
+            lock.lock();
+            try {
+                // a backfill that already saw this message may race with its append
+                for (int i = 0; i < size; i++) {
+                    if (ring[(head + i) % ring.length].message().id().equals(row.message().id())) {
+                        return 0;
+                    }
+                }
+
+                long delta = estimateBytes(row);
+                if (size < ring.length) {
+                    ring[(head + size) % ring.length] = row;
+                    size++;
+                } else {
+                    delta -= estimateBytes(ring[head]);
+                    ring[head] = row;
+                    head = (head + 1) % ring.length;
+                    complete = false;
+                }
+                bytes += delta;
+                return delta;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Snapshot snapshot() {
+            lastReadNanos = System.nanoTime();
+            lock.lock();
+            try {
+                List<MessageHistoryQueryRepository.HistoryRow> newestFirst = new ArrayList<>(size);
+                for (int i = size - 1; i >= 0; i--) {
+                    newestFirst.add(ring[(head + i) % ring.length]);
+                }
+                return new Snapshot(newestFirst, complete);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long bytes() {
+            lock.lock();
+            try {
+                return bytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
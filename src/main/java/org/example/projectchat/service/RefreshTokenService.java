@@ -1,143 +1,133 @@
 package org.example.projectchat.service;
 
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.component.CustomUserDetails;
 import org.example.projectchat.component.JWTUtil;
+import org.example.projectchat.component.JwtClaims;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.config.security.MyUserDetailService;
 import org.example.projectchat.exception.TokenRefreshException;
-import org.example.projectchat.model.RefreshToken;
-import org.example.projectchat.model.User;
-import org.example.projectchat.repository.RefreshTokenRepository;
-import org.springframework.http.HttpStatus;
+import org.example.projectchat.repository.RefreshTokenQueryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.util.List;
 import java.util.Optional;
 
+// Refresh tokens are stored as SHA-256 hashes. Every login starts a token family (one per device);
+// a rotation replaces the token within its family, and presenting a token that was already rotated
+// revokes the whole family (the token was copied).
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RefreshTokenService {
 
-    private final RefreshTokenRepository tokenRepository;
-    private final UserService userService;
+    private final RefreshTokenQueryRepository tokenQueryRepository;
     private final JWTUtil jwtUtil;
+    private final SnowflakeIdGenerator idGenerator;
+    private final MyUserDetailService userDetailService;
 
-    @Transactional
-    public RefreshToken createRefreshToken(String username){
-        User user = userService.findByUsername(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with username: " +username+"NOT_FOUND"));
-
-        String newRefreshToken = jwtUtil.generateRefreshToken(username);
-        String jti = jwtUtil.extractJti(newRefreshToken);
-        Instant dateExpiration = jwtUtil.extractExpiration(newRefreshToken);
-
-        tokenRepository.findByUserAndRevokedFalse(user).ifPresent(oldtoken ->{
-            oldtoken.setRevoked(true);
-            oldtoken.setReplacedByTokenJti(jti);
-            tokenRepository.save(oldtoken);
-        });
-
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setToken(newRefreshToken);
-        refreshToken.setJti(jti);
-        refreshToken.setExpiryDate(dateExpiration);
-        refreshToken.setUser(user);
-
-        tokenRepository.save(refreshToken);
-        return refreshToken;
-    }
-
-    public Optional<RefreshToken> findByToken(String refreshToken){
-        return tokenRepository.findByToken(refreshToken);
-    }
+    // revoked tokens are kept this long so that their reuse is recognized
+    @Value("${chat.refresh-tokens.revoked-retention-ms:86400000}")
+    private long revokedRetentionMs;
 
-    @Transactional
-    public RefreshToken verifyExpirationAndRevocation(RefreshToken refreshToken){
-        if(refreshToken.isRevoked()){
-            if(refreshToken.getReplacedByTokenJti() != null){
-                tokenRepository.findByJti(refreshToken.getReplacedByTokenJti()).ifPresent(newToken -> {
-                    newToken.setRevoked(true);
-                    tokenRepository.save(newToken);
-                    log.warn("Potential refresh token reuse detected! Token JTI: {}, replaced by JTI: {}. New token revoked.",
-                            refreshToken.getJti(), newToken.getJti());
-                });
-            }
+    @Value("${chat.refresh-tokens.purge-chunk-size:1000}")
+    private int purgeChunkSize;
 
-            throw new TokenRefreshException("Refresh token was revoked");
-        }
+    // New token family for a login; other devices keep their tokens
+    public String createRefreshToken(CustomUserDetails user){
+        String newRefreshToken = jwtUtil.generateRefreshToken(user.getUsername());
+        JwtClaims claims = jwtUtil.readClaims(newRefreshToken);
 
-        return refreshToken;
+        long id = idGenerator.nextId();
+        tokenQueryRepository.insert(id, hash(newRefreshToken), claims.jti(), claims.expiresAt(), user.getId(), id);
+        return newRefreshToken;
     }
 
-    @Transactional
-    public void revokeToken(String refreshToken){
-        RefreshToken find = tokenRepository.findByToken(refreshToken)
-                .orElseThrow(() -> new TokenRefreshException("Token not found"));
+    // Replaces the presented token with a new one of the same family, in one statement
+    public Rotation rotateRefreshToken(String presentedToken){
+        String username;
+        try {
+            username = jwtUtil.readClaims(presentedToken).subject();
+        } catch (JwtException | IllegalArgumentException e){
+            throw new TokenRefreshException("Refresh token is invalid or expired", e);
+        }
 
-        find.setRevoked(true);
-        tokenRepository.save(find);
-    }
+        String newToken = jwtUtil.generateRefreshToken(username);
+        JwtClaims newClaims = jwtUtil.readClaims(newToken);
+        byte[] presentedHash = hash(presentedToken);
 
-    @Transactional
-    public void revokeAllUserTokens(User user){
-        List<RefreshToken> tokens = tokenRepository.findAllByUser(user)
-                .stream().peek(token -> token.setRevoked(true)).toList();
+        Optional<RefreshTokenQueryRepository.TokenOwner> owner = tokenQueryRepository.rotate(
+                presentedHash, idGenerator.nextId(), hash(newToken), newClaims.jti(), newClaims.expiresAt());
+        if(owner.isPresent()){
+            return new Rotation(newToken, toUserDetails(owner.get()));
+        }
 
-        tokenRepository.saveAll(tokens);
+        // nothing rotated: find out why
+        RefreshTokenQueryRepository.TokenState state = tokenQueryRepository.findState(presentedHash)
+                .orElseThrow(() -> new TokenRefreshException("Refresh token not found in DB."));
+        if(state.revoked()){
+            int revoked = tokenQueryRepository.revokeFamily(state.familyId());
+            log.warn("Potential refresh token reuse detected! Family {} of user '{}' revoked ({} live tokens).",
+                    state.familyId(), username, revoked);
+            throw new TokenRefreshException("Refresh token was revoked");
+        }
+        throw new TokenRefreshException("Refresh token has expired");
     }
 
-    @Transactional
-    public String rotateRefreshToken(RefreshToken oldRefreshToken){
-        oldRefreshToken.setRevoked(true);
-        tokenRepository.save(oldRefreshToken);
-
-        String newToken = jwtUtil.generateRefreshToken(oldRefreshToken.getUser().getUsername());
-        String jti = jwtUtil.extractJti(newToken);
-        Instant expirationDate = jwtUtil.extractExpiration(newToken);
-
-        RefreshToken newRefreshToken = new RefreshToken();
-        newRefreshToken.setToken(newToken);
-        newRefreshToken.setJti(jti);
-        newRefreshToken.setUser(oldRefreshToken.getUser());
-        newRefreshToken.setExpiryDate(expirationDate);
-
-        RefreshToken savedToken = tokenRepository.save(newRefreshToken);
-
-        oldRefreshToken.setReplacedByTokenJti(savedToken.getJti());
+    public void invalidateRefreshToken(String tokenString){
+        if(tokenString == null || tokenString.isEmpty()){
+            log.debug("Attempted to invalidate null or empty refresh token");
+            return;
+        }
 
-        tokenRepository.save(oldRefreshToken);
-        return newToken;
+        if(tokenQueryRepository.revoke(hash(tokenString)) > 0){
+            log.info("Refresh token successfully marked as revoked.");
+        }else {
+            log.info("Attempted to invalidate a refresh token that is unknown or already revoked. No action needed.");
+        }
     }
 
-    @Transactional
-    public int deleteExpiredTokens(){
-        return tokenRepository.deleteAllByExpiryDateBefore(Instant.now());
+    public int revokeAllUserTokens(Long userId){
+        return tokenQueryRepository.revokeAllForUser(userId);
     }
 
-    @Transactional
-    public void invalidateRefreshToken(String tokenString){
-        if(tokenString.isEmpty() || tokenString == null){
-            log.debug("Attempted to invalidate null or empty refresh token");
-            return;
+    // Expired tokens and revoked tokens past the retention, in small chunks so that no statement holds many locks
+    @Scheduled(fixedDelayString = "${chat.refresh-tokens.purge-interval-ms:3600000}",
+            initialDelayString = "${chat.refresh-tokens.purge-interval-ms:3600000}")
+    public void purgeTokens(){
+        Instant revokedBefore = Instant.now().minusMillis(revokedRetentionMs);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = tokenQueryRepository.purgeChunk(revokedBefore, purgeChunkSize);
+            total += deleted;
+        } while (deleted == purgeChunkSize);
+
+        if(total > 0){
+            log.info("Purged {} expired or revoked refresh tokens", total);
         }
+    }
 
-        Optional<RefreshToken> refreshToken = tokenRepository.findByToken(tokenString);
-
-        if(refreshToken.isPresent()){
-            RefreshToken token = refreshToken.get();
-            if(token.isRevoked()){
-                log.debug("Refresh token (token string: {}) is already revoked. No action needed.", tokenString);
-                return;
-            }
+    private CustomUserDetails toUserDetails(RefreshTokenQueryRepository.TokenOwner owner){
+        return CustomUserDetails.of(owner.userId(), owner.username(), null, owner.roles(),
+                userDetailService.adminGroupIdsOf(owner.userId()));
+    }
 
-            token.setRevoked(true);
-            tokenRepository.save(token);
-            log.info("Refresh token (token string: {}) successfully marked as revoked.", tokenString);
-        }else {
-            log.info("Attempted to invalidate a refresh token that was not found in the database (token string: {}). It might have been already deleted or never existed.", tokenString);
+    private static byte[] hash(String token){
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
+
+    public record Rotation(String refreshToken, CustomUserDetails user) {
+    }
 }
@@ -0,0 +1,236 @@
+package org.example.projectchat.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.util.LongHashSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Node-local index roomId -> participant ids, so membership checks never touch Hibernate.
+// A room's set is read and changed in place under the read/write lock of its stripe, so a join costs O(1)
+// instead of a copy of the room. Rooms without participants are remembered for chat.membership.absent-ttl-ms,
+// so checks against unknown ids do not reach the database every time; the bound keeps random ids from growing it.
+// Every committed change is announced on the cluster fan-out; peers drop their copy of the room and reload it.
+@Service
+@Slf4j
+public class RoomMembershipIndex {
+    private static final String ALL_PARTICIPANTS_SQL = "select chatroom_id, user_id from chatroom_participants";
+    private static final String ROOM_PARTICIPANTS_SQL = "select user_id from chatroom_participants where chatroom_id = ?";
+    private static final int WARM_UP_ATTEMPTS = 3;
+    private static final String MEMBERSHIP_TOPIC = "membership";
+    private static final int STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterControlChannel controlChannel;
+    private final long absentTtlMillis;
+    private final int maxAbsentRooms;
+
+    private final Map<Long, LongHashSet> rooms = new ConcurrentHashMap<>();
+    private final ReadWriteLock[] stripes = new ReadWriteLock[STRIPES];
+    // roomId -> until when the room is known to have no participants
+    private final Map<Long, Long> absentRooms = new ConcurrentHashMap<>();
+    private final AtomicLong nextAbsentPurge = new AtomicLong();
+
+    // Bumped by every change; a load that overlapped a change is not published (it may be stale)
+    private final AtomicLong modifications = new AtomicLong();
+
+    public RoomMembershipIndex(JdbcTemplate jdbcTemplate,
+                               ClusterControlChannel controlChannel,
+                               @Value("${chat.membership.absent-ttl-ms:5000}") long absentTtlMillis,
+                               @Value("${chat.membership.absent-max-rooms:10000}") int maxAbsentRooms) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.controlChannel = controlChannel;
+        this.absentTtlMillis = absentTtlMillis;
+        this.maxAbsentRooms = maxAbsentRooms;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        controlChannel.subscribe(MEMBERSHIP_TOPIC, roomId -> invalidate(Long.parseLong(roomId)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (int attempt = 1; attempt <= WARM_UP_ATTEMPTS; attempt++) {
+            long startModifications = modifications.get();
+            Map<Long, LongHashSet> loaded = new HashMap<>();
+            jdbcTemplate.query(ALL_PARTICIPANTS_SQL, resultSet -> {
+                loaded.computeIfAbsent(resultSet.getLong(1), id -> new LongHashSet(8)).add(resultSet.getLong(2));
+            });
+
+            loaded.forEach((roomId, members) -> publish(roomId, members, startModifications));
+            if (modifications.get() == startModifications) {
+                log.info("Room membership index warmed up with {} rooms", loaded.size());
+                return;
+            }
+        }
+        log.warn("Room membership index warm-up raced with membership changes, remaining rooms will load lazily");
+    }
+
+    public boolean isMember(Long roomId, Long userId) {
+        if (roomId == null || userId == null) {
+            return false;
+        }
+
+        LongHashSet members = rooms.get(roomId);
+        if (members == null) {
+            if (isKnownAbsent(roomId)) {
+                return false;
+            }
+            members = loadRoom(roomId);
+        }
+
+        Lock lock = stripe(roomId).readLock();
+        lock.lock();
+        try {
+            return members.contains(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Registers a newly created room; applied after the surrounding transaction commits
+    public void registerRoom(Long roomId, Collection<Long> userIds) {
+        LongHashSet members = new LongHashSet(userIds.size());
+        userIds.forEach(members::add);
+        afterCommit(roomId, () -> rooms.compute(roomId, (id, current) -> {
+            modifications.incrementAndGet();
+            absentRooms.remove(roomId);
+            return members;
+        }));
+    }
+
+    public void addMember(Long roomId, Long userId) {
+        afterCommit(roomId, () -> change(roomId, members -> members.add(userId)));
+    }
+
+    public void removeMember(Long roomId, Long userId) {
+        afterCommit(roomId, () -> change(roomId, members -> members.remove(userId)));
+    }
+
+    // A peer changed the room: forget it, the next check reloads the committed participants
+    public void invalidate(Long roomId) {
+        rooms.compute(roomId, (id, current) -> {
+            modifications.incrementAndGet();
+            absentRooms.remove(roomId);
+            return null;
+        });
+    }
+
+    // a room that is not loaded stays unloaded; the next check reads the committed participants
+    private void change(Long roomId, Consumer<LongHashSet> change) {
+        rooms.compute(roomId, (id, current) -> {
+            modifications.incrementAndGet();
+            absentRooms.remove(roomId);
+            if (current != null) {
+                Lock lock = stripe(roomId).writeLock();
+                lock.lock();
+                try {
+                    change.accept(current);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return current;
+        });
+    }
+
+    private LongHashSet loadRoom(Long roomId) {
+        long startModifications = modifications.get();
+        List<Long> userIds = jdbcTemplate.queryForList(ROOM_PARTICIPANTS_SQL, Long.class, roomId);
+
+        LongHashSet members = new LongHashSet(userIds.size());
+        userIds.forEach(members::add);
+
+        if (members.isEmpty()) {
+            rememberAbsent(roomId, startModifications);
+        } else {
+            publish(roomId, members, startModifications);
+        }
+        return members;
+    }
+
+    private boolean isKnownAbsent(Long roomId) {
+        Long absentUntil = absentRooms.get(roomId);
+        if (absentUntil == null) {
+            return false;
+        }
+        if (absentUntil > System.currentTimeMillis()) {
+            return true;
+        }
+        absentRooms.remove(roomId, absentUntil);
+        return false;
+    }
+
+    private void rememberAbsent(Long roomId, long startModifications) {
+        long now = System.currentTimeMillis();
+        if (absentRooms.size() >= maxAbsentRooms) {
+            // expired entries are dropped at most once per ttl; while still full, absent rooms are not remembered
+            long purgeAt = nextAbsentPurge.get();
+            if (now >= purgeAt && nextAbsentPurge.compareAndSet(purgeAt, now + absentTtlMillis)) {
+                absentRooms.values().removeIf(absentUntil -> absentUntil <= now);
+            }
+            if (absentRooms.size() >= maxAbsentRooms) {
+                return;
+            }
+        }
+        // a change that overlapped the load removes the entry after bumping modifications, so it is never overwritten here
+        absentRooms.compute(roomId, (id, current) ->
+                modifications.get() == startModifications ? now + absentTtlMillis : current);
+    }
+
+    private void publish(Long roomId, LongHashSet members, long startModifications) {
+        rooms.compute(roomId, (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return modifications.get() == startModifications ? members : null;
+        });
+    }
+
+    private ReadWriteLock stripe(Long roomId) {
+        return stripes[Math.floorMod(Long.hashCode(roomId), STRIPES)];
+    }
+
+    private void announce(Long roomId) {
+        controlChannel.publish(MEMBERSHIP_TOPIC, roomId.toString());
+    }
+
+    // peers are told only once the change is committed, so their reload sees it
+    private void afterCommit(Long roomId, Runnable action) {
+        Runnable applyAndAnnounce = () -> {
+            action.run();
+            announce(roomId);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAndAnnounce.run();
+                }
+            });
+        } else {
+            applyAndAnnounce.run();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package org.example.projectchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.example.projectchat.DTO.chat.TypingDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.example.projectchat.component.CurrentUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ephemeral "who is typing" state per room, kept in memory only.
+// Updates just change the room state; at most one aggregated frame per room is sent per flush interval.
+// With several nodes, each node announces its own typers of a room to the peers whenever they change
+// (and again every half ttl while someone keeps typing), and every node sends the merged view of all
+// nodes to its local sessions, so frames from different nodes never overwrite each other.
+// A peer's typers disappear after ttl without a new announcement (a node that went away included).
+@Service
+@Slf4j
+public class TypingIndicatorService {
+    private static final int MAX_LISTED_NAMES = 3;
+    private static final String TYPING_TOPIC = "typing";
+
+    private final ChatBroadcaster chatBroadcaster;
+    private final ClusterControlChannel controlChannel;
+    private final ObjectMapper objectMapper;
+    private final boolean clustered;
+    private final long ttlMillis;
+    private final long minUpdateIntervalMillis;
+    private final Counter acceptedUpdates;
+    private final Counter rateLimitedUpdates;
+    private final Counter framesSent;
+
+    private final Map<Long, RoomTyping> rooms = new ConcurrentHashMap<>();
+
+    public TypingIndicatorService(ChatBroadcaster chatBroadcaster,
+                                  ClusterControlChannel controlChannel,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.cluster.fanout:loopback}") String clusterFanout,
+                                  @Value("${chat.typing.ttl-ms:5000}") long ttlMillis,
+                                  @Value("${chat.typing.min-update-interval-ms:1000}") long minUpdateIntervalMillis) {
+        this.chatBroadcaster = chatBroadcaster;
+        this.controlChannel = controlChannel;
+        this.objectMapper = objectMapper;
+        this.clustered = !"loopback".equals(clusterFanout);
+        this.ttlMillis = ttlMillis;
+        this.minUpdateIntervalMillis = minUpdateIntervalMillis;
+        this.acceptedUpdates = Counter.builder("chat.typing.updates").tag("result", "accepted").register(meterRegistry);
+        this.rateLimitedUpdates = Counter.builder("chat.typing.updates").tag("result", "rate-limited").register(meterRegistry);
+        this.framesSent = Counter.builder("chat.typing.frames").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (clustered) {
+            controlChannel.subscribe(TYPING_TOPIC, this::onPeerAnnouncement);
+        }
+    }
+
+    public void update(Long roomId, CurrentUser user, boolean typing) {
+        if (!typing) {
+            stopTyping(roomId, user.id());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        while (true) {
+            RoomTyping room = rooms.computeIfAbsent(roomId, id -> new RoomTyping());
+            UpdateResult result = room.start(user.id(), user.username(), now);
+            if (result == UpdateResult.CLOSED) {
+                // the flusher just dropped this idle room, retry with a fresh one
+                continue;
+            }
+            (result == UpdateResult.ACCEPTED ? acceptedUpdates : rateLimitedUpdates).increment();
+            return;
+        }
+    }
+
+    // also called when the user sends a message, so the indicator disappears with it
+    public void stopTyping(Long roomId, Long userId) {
+        RoomTyping room = rooms.get(roomId);
+        if (room != null) {
+            room.stop(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.typing.flush-interval-ms:500}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, RoomTyping> entry : rooms.entrySet()) {
+            Long roomId = entry.getKey();
+            RoomTyping room = entry.getValue();
+
+            Drained drained = room.drainChanges(now);
+            if (drained.announced() != null) {
+                announce(roomId, drained.announced());
+            }
+            if (drained.typingUsernames() != null) {
+                chatBroadcaster.broadcastLocal("/topic/rooms/" + roomId + "/typing", toDto(roomId, drained.typingUsernames()));
+                framesSent.increment();
+            }
+            if (room.closeIfIdle()) {
+                rooms.remove(roomId, room);
+            }
+        }
+    }
+
+    private void announce(Long roomId, List<Typist> typists) {
+        try {
+            controlChannel.publish(TYPING_TOPIC, objectMapper.writeValueAsString(
+                    new Announcement(controlChannel.getNodeId(), roomId, typists)));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode typing announcement: {}", e.getMessage());
+        }
+    }
+
+    private void onPeerAnnouncement(String payload) {
+        Announcement announcement;
+        try {
+            announcement = objectMapper.readValue(payload, Announcement.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        while (true) {
+            RoomTyping room = rooms.computeIfAbsent(announcement.roomId(), id -> new RoomTyping());
+            if (room.replacePeer(announcement.node(), announcement.typists(), expiresAt)) {
+                return;
+            }
+        }
+    }
+
+    // "A is typing", "A and B are typing", "A, B and C are typing", "A, B and 3 others are typing"
+    private static TypingDto toDto(Long roomId, List<String> typingUsernames) {
+        int total = typingUsernames.size();
+        List<String> listed = total <= MAX_LISTED_NAMES ? typingUsernames : typingUsernames.subList(0, MAX_LISTED_NAMES - 1);
+
+        String text;
+        if (total == 0) {
+            text = "";
+        } else if (total == 1) {
+            text = listed.get(0) + " is typing";
+        } else if (total <= MAX_LISTED_NAMES) {
+            text = String.join(", ", listed.subList(0, total - 1)) + " and " + listed.get(total - 1) + " are typing";
+        } else {
+            int others = total - listed.size();
+            text = String.join(", ", listed) + " and " + others + (others == 1 ? " other is" : " others are") + " typing";
+        }
+        return new TypingDto(roomId, List.copyOf(listed), total, text);
+    }
+
+    // a node's typers of one room, in the order they started typing; empty once nobody there types
+    public record Announcement(long node, Long roomId, List<Typist> typists) {
+    }
+
+    public record Typist(Long userId, String username) {
+    }
+
+    // announced: this node's typers to send to the peers, typingUsernames: the merged view for local sessions;
+    // either is null if there is nothing to send
+    private record Drained(List<Typist> announced, List<String> typingUsernames) {
+    }
+
+    private record PeerTyping(List<Typist> typists, long expiresAt) {
+    }
+
+    private enum UpdateResult {
+        ACCEPTED,
+        RATE_LIMITED,
+        CLOSED
+    }
+
+    private final class RoomTyping {
+        // insertion order = who started typing first
+        private final Map<Long, Typer> typers = new LinkedHashMap<>();
+        // nodeId -> typers last announced by that peer
+        private final Map<Long, PeerTyping> peers = new LinkedHashMap<>();
+        private final Lock lock = new ReentrantLock();
+        // the merged view changed since the last frame
+        private boolean changed;
+        // this node's typers changed since the last announcement
+        private boolean localChanged;
+        private long lastAnnouncedAt;
+        private boolean closed;
+
+        UpdateResult start(Long userId, String username, long now) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return UpdateResult.CLOSED;
+                }
+
+                Typer typer = typers.get(userId);
+                if (typer == null) {
+                    typers.put(userId, new Typer(username, now, now + ttlMillis));
+                    changed = true;
+                    localChanged = true;
+                    return UpdateResult.ACCEPTED;
+                }
+                if (now - typer.lastUpdate < minUpdateIntervalMillis) {
+                    return UpdateResult.RATE_LIMITED;
+                }
+                // still typing: extends the indicator without a new frame
+                typer.lastUpdate = now;
+                typer.expiresAt = now + ttlMillis;
+                return UpdateResult.ACCEPTED;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void stop(Long userId) {
+            lock.lock();
+            try {
+                if (typers.remove(userId) != null) {
+                    changed = true;
+                    localChanged = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // false if the flusher just dropped this idle room
+        boolean replacePeer(long node, List<Typist> typists, long expiresAt) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+
+                PeerTyping previous = typists.isEmpty() ? peers.remove(node) : peers.put(node, new PeerTyping(typists, expiresAt));
+                if (previous == null ? !typists.isEmpty() : !previous.typists().equals(typists)) {
+                    changed = true;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Drained drainChanges(long now) {
+            lock.lock();
+            try {
+                Iterator<Typer> iterator = typers.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().expiresAt <= now) {
+                        iterator.remove();
+                        changed = true;
+                        localChanged = true;
+                    }
+                }
+                if (peers.values().removeIf(peer -> peer.expiresAt() <= now)) {
+                    changed = true;
+                }
+
+                List<Typist> announced = null;
+                // re-announced while someone keeps typing, so the peers do not expire them
+                if (clustered && (localChanged || (!typers.isEmpty() && now - lastAnnouncedAt >= ttlMillis / 2))) {
+                    announced = new ArrayList<>(typers.size());
+                    for (Map.Entry<Long, Typer> entry : typers.entrySet()) {
+                        announced.add(new Typist(entry.getKey(), entry.getValue().username));
+                    }
+                    lastAnnouncedAt = now;
+                }
+                localChanged = false;
+                if (!changed) {
+                    return new Drained(announced, null);
+                }
+
+                changed = false;
+                // this node's typers first, then each peer's; a user typing on two devices is listed once
+                Set<Long> listed = new HashSet<>(typers.keySet());
+                List<String> usernames = new ArrayList<>(typers.size());
+                typers.values().forEach(typer -> usernames.add(typer.username));
+                for (PeerTyping peer : peers.values()) {
+                    for (Typist typist : peer.typists()) {
+                        if (listed.add(typist.userId())) {
+                            usernames.add(typist.username());
+                        }
+                    }
+                }
+                return new Drained(announced, usernames);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean closeIfIdle() {
+            lock.lock();
+            try {
+                if (typers.isEmpty() && peers.isEmpty() && !changed) {
+                    closed = true;
+                }
+                return closed;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Typer {
+        private final String username;
+        private long lastUpdate;
+        private long expiresAt;
+
+        private Typer(String username, long lastUpdate, long expiresAt) {
+            this.username = username;
+            this.lastUpdate = lastUpdate;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
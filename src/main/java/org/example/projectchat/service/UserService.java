@@ -3,12 +3,21 @@ package org.example.projectchat.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.DTO.user.UserSearchResultDto;
+import org.example.projectchat.component.CurrentUser;
 import org.example.projectchat.model.User;
+import org.example.projectchat.repository.ContactQueryRepository;
 import org.example.projectchat.repository.UserRepository;
+import org.example.projectchat.search.UserSearchIndex;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -16,22 +25,48 @@ import java.util.Set;
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
+    private static final int MAX_QUERY_LENGTH = 64;
+    private static final int MAX_PAGE_SIZE = 20;
+    private static final int MAX_RESULTS = 100;
+
     private final UserRepository userRepository;
+    private final UserSearchIndex userSearchIndex;
+    private final ContactQueryRepository contactQueryRepository;
 
-    @Transactional(readOnly = true)
-    public List<UserDto> searchUserByUsernameContaining(String query){
-        log.debug("Searching users by username containing: {}", query);
-        if(query == null || query.trim().isEmpty()){
-            log.debug("Empty query, returning empty list.");
-            return List.of();
+    // Autocomplete: prefix matches before infix matches, contacts first within each, then alphabetical.
+    // Suggestions beyond MAX_RESULTS are never paged to.
+    public UserSearchResultDto searchUsers(CurrentUser user, String query, int offset, int limit){
+        String needle = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        int start = Math.max(0, offset);
+        if(needle.isEmpty() || start >= MAX_RESULTS){
+            log.debug("Empty query or offset {} beyond the results, returning empty list.", offset);
+            return new UserSearchResultDto(List.of(), null);
+        }
+        if(needle.length() > MAX_QUERY_LENGTH){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query is too long");
+        }
+
+        int end = Math.min(start + Math.max(1, Math.min(limit, MAX_PAGE_SIZE)), MAX_RESULTS);
+        // each source is alphabetical within its rank, so the first `window` of each covers the first `window` overall;
+        // one more than the page end tells whether there is a next page
+        int window = end < MAX_RESULTS ? end + 1 : end;
+
+        Map<Long, Suggestion> suggestions = new HashMap<>();
+        for(UserDto contact : contactQueryRepository.findMatching(user.id(), needle, window)){
+            suggestions.put(contact.id(), Suggestion.of(contact, needle, true));
+        }
+        // + 1: the user may find themselves
+        for(UserDto match : userSearchIndex.find(needle, window + 1)){
+            suggestions.putIfAbsent(match.id(), Suggestion.of(match, needle, false));
         }
+        suggestions.remove(user.id());
 
-        List<User> foundUsers = userRepository.findByUsernameContainingIgnoreCase(query.trim());
-        List<UserDto> userDtos = foundUsers.stream()
-                .map(user -> new UserDto(user.getId(), user.getUsername()))
-                .toList();
-        log.debug("Found {} users for query: {}", userDtos.size(), query);
-        return userDtos;
+        List<UserDto> ranked = suggestions.values().stream().sorted().map(Suggestion::user).toList();
+        if(ranked.size() <= start){
+            return new UserSearchResultDto(List.of(), null);
+        }
+        log.debug("Found {} users for query: {}", ranked.size(), query);
+        return new UserSearchResultDto(ranked.subList(start, Math.min(end, ranked.size())), ranked.size() > end ? end : null);
     }
 
     @Transactional(readOnly = true)
@@ -40,12 +75,32 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
+    // Entity proxy for associations; does not query the users table
+    public User getReference(Long id){
+        return userRepository.getReferenceById(id);
+    }
+
     @Transactional(readOnly = true)
     public List<User> findByUsernameInSet(Set<String> participantUsername){
         log.debug("Finding users by username in set: {}", participantUsername);
         return userRepository.findByUsernameIn(participantUsername);
     }
 
+    // rank: 0 contact prefix, 1 prefix, 2 contact infix, 3 infix
+    private record Suggestion(UserDto user, String name, int rank) implements Comparable<Suggestion> {
+        static Suggestion of(UserDto user, String needle, boolean contact){
+            String name = user.username().toLowerCase(Locale.ROOT);
+            return new Suggestion(user, name, (name.startsWith(needle) ? 0 : 2) + (contact ? 0 : 1));
+        }
 
+        @Override
+        public int compareTo(Suggestion other){
+            int byRank = Integer.compare(rank, other.rank);
+            if(byRank != 0){
+                return byRank;
+            }
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : user.id().compareTo(other.user.id());
+        }
+    }
 }
-
@@ -0,0 +1,28 @@
+package org.example.projectchat.util;
+
+// Allocation-free parsing of numeric ids out of STOMP destinations (no regex on the hot path)
+public final class Destinations {
+    private static final int MAX_ID_DIGITS = 18;
+
+    private Destinations() {
+    }
+
+    // {id} from prefix + {id} (digits only, nothing after them), -1 if the destination does not match
+    public static long parseId(String destination, String prefix) {
+        if (destination == null || !destination.startsWith(prefix)
+                || destination.length() == prefix.length()
+                || destination.length() - prefix.length() > MAX_ID_DIGITS) {
+            return -1;
+        }
+
+        long id = 0;
+        for (int i = prefix.length(); i < destination.length(); i++) {
+            char c = destination.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.projectchat.util;
+
+// LIKE patterns for user input; the statements use escape '\'
+public final class LikePattern {
+
+    private LikePattern() {
+    }
+
+    public static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public static String prefix(String text) {
+        return escape(text) + "%";
+    }
+
+    public static String infix(String text) {
+        return "%" + escape(text) + "%";
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.projectchat.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+// Keyset position in a room's history: (created_at, id) of the message to continue from and the direction.
+// Clients only see the opaque base64url token; its layout may change without notice.
+public record MessageCursor(boolean before, Instant createdAt, long id) {
+    private static final char SEPARATOR = ':';
+
+    public String encode() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt);
+        String text = (before ? "b" : "a") + SEPARATOR + micros + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static MessageCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":", -1);
+            if (parts.length != 3 || !(parts[0].equals("b") || parts[0].equals("a"))) {
+                throw new IllegalArgumentException("Malformed message cursor");
+            }
+            Instant createdAt = Instant.EPOCH.plus(Long.parseLong(parts[1]), ChronoUnit.MICROS);
+            return new MessageCursor(parts[0].equals("b"), createdAt, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            // also covers bad base64 and NumberFormatException
+            throw new IllegalArgumentException("Malformed message cursor", e);
+        }
+    }
+}
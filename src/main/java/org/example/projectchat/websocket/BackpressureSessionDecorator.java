@@ -0,0 +1,336 @@
+package org.example.projectchat.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Same sending model as Spring's ConcurrentWebSocketSessionDecorator (one thread writes, the others
+// buffer), but buffer overflow is handled by an OutboundOverflowPolicy instead of always closing.
+// Only STOMP MESSAGE frames are ever dropped; CONNECTED, RECEIPT and ERROR frames are kept.
+@Slf4j
+public class BackpressureSessionDecorator extends WebSocketSessionDecorator {
+    static final String MISSED_HEADER = "x-missed-messages";
+
+    private static final String MESSAGE_FRAME_PREFIX = "MESSAGE\n";
+    private static final byte[] MESSAGE_FRAME_PREFIX_BYTES = MESSAGE_FRAME_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final StompDecoder STOMP_DECODER = new StompDecoder();
+    private static final StompEncoder STOMP_ENCODER = new StompEncoder();
+
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final OutboundOverflowPolicy policy;
+    private final OutboundBackpressureMetrics metrics;
+
+    // guarded by bufferLock, which is never held during I/O
+    private final Deque<BufferedFrame> buffer = new ArrayDeque<>();
+    private int bufferSize;
+    private final Lock bufferLock = new ReentrantLock();
+
+    private final Lock flushLock = new ReentrantLock();
+    private final Lock closeLock = new ReentrantLock();
+    private final AtomicLong markerSequence = new AtomicLong();
+
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+    private volatile boolean closeInProgress;
+
+    public BackpressureSessionDecorator(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                                        OutboundOverflowPolicy policy, OutboundBackpressureMetrics metrics) {
+        super(delegate);
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    public int getBufferSize() {
+        bufferLock.lock();
+        try {
+            return bufferSize;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (shouldNotSend()) {
+            return;
+        }
+
+        enqueue(new BufferedFrame(message, message.getPayloadLength()));
+        do {
+            if (!tryFlushBuffer()) {
+                checkSessionLimits();
+                break;
+            }
+        } while (!isBufferEmpty() && !shouldNotSend());
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        closeLock.lock();
+        try {
+            if (closeInProgress) {
+                return;
+            }
+            closeInProgress = true;
+        } finally {
+            closeLock.unlock();
+        }
+
+        release();
+        super.close(status);
+    }
+
+    // Gives back the buffered bytes once the session is gone
+    public void release() {
+        bufferLock.lock();
+        try {
+            buffer.clear();
+            setBufferSize(0);
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private boolean shouldNotSend() {
+        return limitExceeded || closeInProgress;
+    }
+
+    private boolean tryFlushBuffer() throws IOException {
+        if (!flushLock.tryLock()) {
+            return false;
+        }
+        try {
+            BufferedFrame frame;
+            while (!shouldNotSend() && (frame = poll()) != null) {
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(frame.message());
+                sendStartTime = 0;
+            }
+        } finally {
+            sendStartTime = 0;
+            flushLock.unlock();
+        }
+        return true;
+    }
+
+    private void checkSessionLimits() {
+        if (shouldNotSend() || !closeLock.tryLock()) {
+            return;
+        }
+        try {
+            long sendStarted = sendStartTime;
+            if (sendStarted > 0 && System.currentTimeMillis() - sendStarted > sendTimeLimit) {
+                // a write stuck on the socket cannot be fixed by dropping frames
+                metrics.overflow(policy, "send-timeout");
+                limitExceeded("Send time " + (System.currentTimeMillis() - sendStarted) + " (ms) for session '"
+                        + getId() + "' exceeded the allowed limit " + sendTimeLimit);
+            }
+            if (getBufferSize() <= bufferSizeLimit) {
+                return;
+            }
+
+            switch (policy) {
+                case DISCONNECT -> metrics.overflow(policy, "disconnect");
+                case DROP_OLDEST -> dropOldest();
+                case COALESCE -> coalesce();
+            }
+            if (getBufferSize() > bufferSizeLimit) {
+                limitExceeded("Buffer size " + getBufferSize() + " bytes for session '" + getId()
+                        + "' exceeds the allowed limit " + bufferSizeLimit);
+            }
+        } finally {
+            closeLock.unlock();
+        }
+    }
+
+    private void dropOldest() {
+        int dropped = 0;
+        bufferLock.lock();
+        try {
+            Iterator<BufferedFrame> iterator = buffer.iterator();
+            while (bufferSize > bufferSizeLimit && iterator.hasNext()) {
+                BufferedFrame frame = iterator.next();
+                if (isMessageFrame(frame.message())) {
+                    iterator.remove();
+                    setBufferSize(bufferSize - frame.length());
+                    dropped++;
+                }
+            }
+        } finally {
+            bufferLock.unlock();
+        }
+
+        metrics.overflow(policy, "drop");
+        metrics.framesDropped(policy, dropped);
+        log.debug("Dropped {} outbound frames for slow session {}", dropped, getId());
+    }
+
+    private void coalesce() {
+        int dropped = 0;
+        Map<String, MissedMessages> missedBySubscription = new LinkedHashMap<>();
+        bufferLock.lock();
+        try {
+            Iterator<BufferedFrame> iterator = buffer.iterator();
+            while (iterator.hasNext()) {
+                BufferedFrame frame = iterator.next();
+                if (!isMessageFrame(frame.message())) {
+                    continue;
+                }
+                StompHeaderAccessor headers = decodeHeaders(frame.message());
+                if (headers == null || headers.getSubscriptionId() == null) {
+                    continue;
+                }
+
+                iterator.remove();
+                setBufferSize(bufferSize - frame.length());
+
+                // an earlier marker still in the buffer is folded into the new one
+                String previouslyMissed = headers.getFirstNativeHeader(MISSED_HEADER);
+                int missed = previouslyMissed != null ? Integer.parseInt(previouslyMissed) : 1;
+                if (previouslyMissed == null) {
+                    dropped++;
+                }
+                missedBySubscription.merge(headers.getSubscriptionId(),
+                        new MissedMessages(headers.getDestination(), missed), MissedMessages::plus);
+            }
+
+            missedBySubscription.forEach((subscriptionId, missed) -> {
+                TextMessage marker = markerFrame(subscriptionId, missed);
+                buffer.addLast(new BufferedFrame(marker, marker.getPayloadLength()));
+                setBufferSize(bufferSize + buffer.peekLast().length());
+            });
+        } finally {
+            bufferLock.unlock();
+        }
+
+        metrics.overflow(policy, "coalesce");
+        metrics.framesDropped(policy, dropped);
+        log.debug("Coalesced {} outbound frames into {} markers for slow session {}",
+                dropped, missedBySubscription.size(), getId());
+    }
+
+    private TextMessage markerFrame(String subscriptionId, MissedMessages missed) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(missed.destination());
+        accessor.setMessageId("missed-" + getId() + "-" + markerSequence.incrementAndGet());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader(MISSED_HEADER, String.valueOf(missed.count()));
+
+        byte[] body = ("{\"type\":\"MISSED\",\"missed\":" + missed.count() + "}").getBytes(StandardCharsets.UTF_8);
+        Message<byte[]> message = MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+        return new TextMessage(STOMP_ENCODER.encode(message));
+    }
+
+    private void limitExceeded(String reason) {
+        limitExceeded = true;
+        release();
+        throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    private void enqueue(BufferedFrame frame) {
+        bufferLock.lock();
+        try {
+            buffer.addLast(frame);
+            setBufferSize(bufferSize + frame.length());
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private BufferedFrame poll() {
+        bufferLock.lock();
+        try {
+            BufferedFrame frame = buffer.pollFirst();
+            if (frame != null) {
+                setBufferSize(bufferSize - frame.length());
+            }
+            return frame;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private boolean isBufferEmpty() {
+        bufferLock.lock();
+        try {
+            return buffer.isEmpty();
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    // caller holds bufferLock
+    private void setBufferSize(int newSize) {
+        metrics.bufferChanged(newSize - bufferSize);
+        bufferSize = newSize;
+    }
+
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage textMessage) {
+            return textMessage.getPayload().startsWith(MESSAGE_FRAME_PREFIX);
+        }
+        if (message instanceof BinaryMessage binaryMessage) {
+            ByteBuffer payload = binaryMessage.getPayload();
+            if (payload.remaining() < MESSAGE_FRAME_PREFIX_BYTES.length) {
+                return false;
+            }
+            for (int i = 0; i < MESSAGE_FRAME_PREFIX_BYTES.length; i++) {
+                if (payload.get(payload.position() + i) != MESSAGE_FRAME_PREFIX_BYTES[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static StompHeaderAccessor decodeHeaders(WebSocketMessage<?> message) {
+        ByteBuffer bytes = message instanceof TextMessage textMessage
+                ? ByteBuffer.wrap(textMessage.asBytes())
+                : ((BinaryMessage) message).getPayload().duplicate();
+        try {
+            List<Message<byte[]>> frames = STOMP_DECODER.decode(bytes);
+            return frames.isEmpty() ? null : StompHeaderAccessor.wrap(frames.get(0));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private record BufferedFrame(WebSocketMessage<?> message, int length) {
+    }
+
+    private record MissedMessages(String destination, int count) {
+        MissedMessages plus(MissedMessages other) {
+            return new MissedMessages(destination, count + other.count);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.projectchat.websocket;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Uses BackpressureSessionDecorator instead of ConcurrentWebSocketSessionDecorator for every session
+public class BackpressureSubProtocolWebSocketHandler extends SubProtocolWebSocketHandler {
+    private final OutboundOverflowPolicy policy;
+    private final OutboundBackpressureMetrics metrics;
+    private final Map<String, BackpressureSessionDecorator> decoratedSessions = new ConcurrentHashMap<>();
+
+    public BackpressureSubProtocolWebSocketHandler(MessageChannel clientInboundChannel,
+                                                   SubscribableChannel clientOutboundChannel,
+                                                   OutboundOverflowPolicy policy,
+                                                   OutboundBackpressureMetrics metrics) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        BackpressureSessionDecorator decorator = new BackpressureSessionDecorator(
+                session, getSendTimeLimit(), getSendBufferSizeLimit(), policy, metrics);
+        decoratedSessions.put(session.getId(), decorator);
+        return decorator;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        BackpressureSessionDecorator decorator = decoratedSessions.remove(session.getId());
+        if (decorator != null) {
+            decorator.release();
+        }
+        super.afterConnectionClosed(session, closeStatus);
+    }
+}
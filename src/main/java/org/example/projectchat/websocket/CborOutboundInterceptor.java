@@ -0,0 +1,51 @@
+package org.example.projectchat.websocket;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+// clientOutboundChannel interceptor: JSON MESSAGE frames for sessions that negotiated CBOR are re-encoded.
+// The frame is sent as application/octet-stream (Spring only writes binary WebSocket frames for that type,
+// a text frame would corrupt the bytes) with "payload-format: cbor" telling the client how to decode it.
+@Component
+@RequiredArgsConstructor
+public class CborOutboundInterceptor implements ChannelInterceptor {
+    private final PayloadFormatRegistry payloadFormatRegistry;
+    private final PayloadCodec payloadCodec;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || payloadFormatRegistry.formatOf(SimpMessageHeaderAccessor.getSessionId(headers)) != PayloadFormat.CBOR
+                || !(message.getPayload() instanceof byte[] json)
+                || !isJson(headers.get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+
+        byte[] cbor = headers.get(PayloadCodec.CBOR_PAYLOAD_HEADER) instanceof PayloadCodec.LazyCbor lazyCbor
+                ? lazyCbor.get()
+                : payloadCodec.jsonToCbor(json);
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(PayloadFormat.HEADER, "cbor");
+        accessor.removeHeader(PayloadCodec.CBOR_PAYLOAD_HEADER);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private static boolean isJson(Object contentType) {
+        if (contentType instanceof MimeType mimeType) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+        }
+        return contentType instanceof String value && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(MimeType.valueOf(value));
+    }
+}
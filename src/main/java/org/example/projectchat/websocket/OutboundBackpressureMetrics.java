@@ -0,0 +1,41 @@
+package org.example.projectchat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counters for every overflow decision plus the bytes currently buffered for slow sessions
+@Component
+public class OutboundBackpressureMetrics {
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    public OutboundBackpressureMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("chat.ws.outbound.buffered.bytes", bufferedBytes, AtomicLong::get).register(meterRegistry);
+    }
+
+    public void bufferChanged(int delta) {
+        bufferedBytes.addAndGet(delta);
+    }
+
+    // action: disconnect, drop, coalesce or send-timeout
+    public void overflow(OutboundOverflowPolicy policy, String action) {
+        counter("chat.ws.outbound.overflow", policy, action).increment();
+    }
+
+    public void framesDropped(OutboundOverflowPolicy policy, int frames) {
+        counter("chat.ws.outbound.dropped.frames", policy, null).increment(frames);
+    }
+
+    private Counter counter(String name, OutboundOverflowPolicy policy, String action) {
+        Counter.Builder builder = Counter.builder(name).tag("policy", policy.tag());
+        if (action != null) {
+            builder.tag("action", action);
+        }
+        return builder.register(meterRegistry);
+    }
+}
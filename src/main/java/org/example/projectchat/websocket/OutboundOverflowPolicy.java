@@ -0,0 +1,21 @@
+package org.example.projectchat.websocket;
+
+import java.util.Locale;
+
+// What a session does when its outbound buffer grows past chat.ws.outbound.send-buffer-size-limit
+public enum OutboundOverflowPolicy {
+    // close the session (Spring's default behaviour); the client reconnects and refetches
+    DISCONNECT,
+    // drop the oldest buffered MESSAGE frames until the buffer fits again
+    DROP_OLDEST,
+    // replace all buffered MESSAGE frames with one "missed N messages" marker per subscription
+    COALESCE;
+
+    public static OutboundOverflowPolicy from(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
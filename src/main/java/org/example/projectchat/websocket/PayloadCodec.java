@@ -0,0 +1,87 @@
+package org.example.projectchat.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// JSON and CBOR encodings of the same document: the CBOR mapper comes from the same (Boot-customized)
+// Jackson2ObjectMapperBuilder as the application ObjectMapper, so modules and date handling match.
+@Component
+public class PayloadCodec {
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    // header holding a LazyCbor for broadcasts, so a payload is transcoded at most once however many sessions want CBOR
+    public static final String CBOR_PAYLOAD_HEADER = "chatCborPayload";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+
+    public PayloadCodec(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+    }
+
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    public byte[] toCbor(Object payload) {
+        try {
+            return cborMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new MessageDeliveryException("Failed to encode CBOR payload: " + e.getMessage());
+        }
+    }
+
+    public byte[] jsonToCbor(byte[] json) {
+        try {
+            return cborMapper.writeValueAsBytes(objectMapper.readTree(json));
+        } catch (IOException e) {
+            throw new MessageDeliveryException("Failed to transcode JSON payload to CBOR: " + e.getMessage());
+        }
+    }
+
+    public LazyCbor lazy(Object payload) {
+        return new LazyCbor(() -> toCbor(payload));
+    }
+
+    public LazyCbor lazyFromJson(byte[] json) {
+        return new LazyCbor(() -> jsonToCbor(json));
+    }
+
+    // Encodes on first use and then shares the bytes
+    public static final class LazyCbor {
+        private final Supplier<byte[]> encoder;
+        private final Lock lock = new ReentrantLock();
+        private volatile byte[] bytes;
+
+        private LazyCbor(Supplier<byte[]> encoder) {
+            this.encoder = encoder;
+        }
+
+        public byte[] get() {
+            byte[] result = bytes;
+            if (result == null) {
+                lock.lock();
+                try {
+                    result = bytes;
+                    if (result == null) {
+                        result = encoder.get();
+                        bytes = result;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.projectchat.websocket;
+
+import java.util.Locale;
+
+// Payload encoding a client asked for with the "payload-format" header of its CONNECT frame
+public enum PayloadFormat {
+    JSON,
+    CBOR;
+
+    public static final String HEADER = "payload-format";
+
+    // unknown or missing values keep the JSON default
+    public static PayloadFormat from(String value) {
+        if (value != null && value.trim().toLowerCase(Locale.ROOT).equals("cbor")) {
+            return CBOR;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.projectchat.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Negotiated payload format per STOMP session; only sessions that chose something other than JSON are kept
+@Component
+@Slf4j
+public class PayloadFormatRegistry {
+    private final Map<String, PayloadFormat> formats = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void handleConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        PayloadFormat format = PayloadFormat.from(accessor.getFirstNativeHeader(PayloadFormat.HEADER));
+        if (format != PayloadFormat.JSON && accessor.getSessionId() != null) {
+            formats.put(accessor.getSessionId(), format);
+            log.debug("Session {} uses {} payloads", accessor.getSessionId(), format);
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        formats.remove(event.getSessionId());
+    }
+
+    public PayloadFormat formatOf(String sessionId) {
+        return sessionId == null ? PayloadFormat.JSON : formats.getOrDefault(sessionId, PayloadFormat.JSON);
+    }
+}
@@ -0,0 +1,9 @@
+-- Full-text search over messages as an expression index: no generated column, so the table is neither
+-- rewritten nor locked, and CONCURRENTLY keeps writes going while the index is built. CONCURRENTLY cannot run
+-- in a transaction (see V10__Message_Search_Index.sql.conf). If the build fails it leaves an INVALID index:
+-- drop it and repair the migration.
+-- Punctuation becomes a space before parsing, so PostgreSQL sees the same letter/digit words as
+-- SearchQuery.tokenize (no e-mail, URL, version or hyphenated-word tokens). 'simple' = no stemming or
+-- stop words, chat text is multilingual. The expression must match PostgresMessageSearchIndex.SEARCH_DOCUMENT.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_search_document ON messages
+    USING GIN (to_tsvector('simple', regexp_replace(content, '[[:punct:]]+', ' ', 'g')));
@@ -0,0 +1,14 @@
+-- Username autocomplete. Prefixes: a btree over lower(username) in the C collation, which serves both
+-- LIKE 'q%' and the alphabetical order of the matches. Infixes: a pg_trgm GIN index for LIKE '%q%'.
+CREATE INDEX idx_users_username_lower_c ON users ((lower(username) COLLATE "C"));
+
+-- Creating the extension needs the privilege for it; without it infix matches still work but scan users,
+-- chat.user-search.backend=memory avoids that.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+    CREATE INDEX idx_users_username_trgm ON users USING GIN (lower(username) gin_trgm_ops);
+EXCEPTION WHEN insufficient_privilege OR undefined_file THEN
+    RAISE WARNING 'pg_trgm is not available (%), username infix search is not indexed', SQLERRM;
+END
+$$;
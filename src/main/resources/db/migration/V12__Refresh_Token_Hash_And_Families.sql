@@ -0,0 +1,20 @@
+-- Refresh tokens are looked up by the SHA-256 of the token; the token itself is no longer stored
+ALTER TABLE refresh_tokens ADD COLUMN token_hash BYTEA;
+UPDATE refresh_tokens SET token_hash = sha256(convert_to(token, 'UTF8'));
+ALTER TABLE refresh_tokens ALTER COLUMN token_hash SET NOT NULL;
+ALTER TABLE refresh_tokens ADD CONSTRAINT uk_refresh_tokens_token_hash UNIQUE (token_hash);
+ALTER TABLE refresh_tokens DROP COLUMN token;
+
+-- All tokens rotated from one login form a family; presenting an already rotated token revokes the family
+ALTER TABLE refresh_tokens ADD COLUMN family_id BIGINT;
+UPDATE refresh_tokens SET family_id = id;
+ALTER TABLE refresh_tokens ALTER COLUMN family_id SET NOT NULL;
+
+-- revoked tokens are kept for a while so that their reuse is still recognized, then purged
+ALTER TABLE refresh_tokens ADD COLUMN revoked_at TIMESTAMP WITH TIME ZONE;
+UPDATE refresh_tokens SET revoked_at = now() WHERE revoked;
+
+CREATE INDEX idx_refresh_tokens_user_id ON refresh_tokens(user_id);
+CREATE INDEX idx_refresh_tokens_family_id ON refresh_tokens(family_id);
+CREATE INDEX idx_refresh_tokens_expiry_date ON refresh_tokens(expiry_date);
+CREATE INDEX idx_refresh_tokens_revoked_at ON refresh_tokens(revoked_at) WHERE revoked_at IS NOT NULL;
@@ -0,0 +1,22 @@
+-- Revoked access tokens (logout) and per-user "issued before" watermarks (logout everywhere).
+-- Rows are only needed until the affected tokens expire; every node keeps them in memory
+-- and picks up other nodes' rows by created_at.
+CREATE TABLE revoked_access_tokens (
+    jti VARCHAR(255) PRIMARY KEY,
+    user_id BIGINT,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_revoked_access_tokens_created_at ON revoked_access_tokens(created_at);
+CREATE INDEX idx_revoked_access_tokens_expires_at ON revoked_access_tokens(expires_at);
+
+CREATE TABLE user_token_watermarks (
+    user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    -- access tokens of the user issued before this are invalid
+    not_before TIMESTAMP WITH TIME ZONE NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_user_token_watermarks_created_at ON user_token_watermarks(created_at);
@@ -0,0 +1,23 @@
+-- Ids of users, chat rooms, messages and refresh tokens are now assigned by the application
+-- (time-ordered snowflake ids, see SnowflakeIdGenerator). Existing ids are kept as they are:
+-- snowflake ids start at (millis since 2024-01-01) << 22, far above any bigserial value.
+DO $$
+DECLARE
+    snowflake_floor BIGINT := ((extract(epoch FROM now()) * 1000)::BIGINT - 1704067200000) << 22;
+BEGIN
+    IF (SELECT coalesce(max(id), 0) FROM users) >= snowflake_floor
+        OR (SELECT coalesce(max(id), 0) FROM chat_rooms) >= snowflake_floor
+        OR (SELECT coalesce(max(id), 0) FROM messages) >= snowflake_floor
+        OR (SELECT coalesce(max(id), 0) FROM refresh_tokens) >= snowflake_floor THEN
+        RAISE EXCEPTION 'Existing ids overlap the snowflake id range';
+    END IF;
+END $$;
+
+ALTER TABLE users ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE chat_rooms ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE messages ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE refresh_tokens ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+DROP SEQUENCE IF EXISTS users_id_seq;
+DROP SEQUENCE IF EXISTS chat_rooms_id_seq;
+DROP SEQUENCE IF EXISTS messages_id_seq;
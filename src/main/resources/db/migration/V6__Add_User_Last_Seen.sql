@@ -0,0 +1,2 @@
+-- Written in batches by PresenceService when a user's last session disconnects
+ALTER TABLE users ADD COLUMN last_seen_at TIMESTAMP WITH TIME ZONE;
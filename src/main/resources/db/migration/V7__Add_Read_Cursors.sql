@@ -0,0 +1,16 @@
+-- Maintained by the message ingest batch, so unread counts never need count(*) over messages
+ALTER TABLE chat_rooms ADD COLUMN message_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE chat_rooms c SET message_count = (SELECT count(*) FROM messages m WHERE m.chatroom_id = c.id);
+
+-- Written in batches by ReadCursorService; read_count is message_count at the cursor position
+CREATE TABLE chatroom_read_cursors(
+    user_id BIGINT NOT NULL,
+    chatroom_id BIGINT NOT NULL,
+    last_read_message_id BIGINT NOT NULL,
+    read_count BIGINT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT current_timestamp,
+    PRIMARY KEY (user_id, chatroom_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (chatroom_id) REFERENCES chat_rooms(id) ON DELETE CASCADE
+);
@@ -0,0 +1,12 @@
+-- Denormalized last message of each room, kept up to date by the message ingest batch
+-- (last_activity_at existed since V1 but was never written)
+ALTER TABLE chat_rooms ADD COLUMN last_message_id BIGINT;
+
+UPDATE chat_rooms c
+SET last_message_id = last.id, last_activity_at = last.created_at
+FROM (
+    SELECT DISTINCT ON (chatroom_id) chatroom_id, id, created_at
+    FROM messages
+    ORDER BY chatroom_id, created_at DESC, id DESC
+) last
+WHERE last.chatroom_id = c.id;
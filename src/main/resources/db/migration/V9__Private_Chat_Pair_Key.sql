@@ -0,0 +1,24 @@
+-- Canonical key of a private chat: the two participant ids, smaller first.
+-- The unique index makes concurrent get-or-create of the same pair produce one room.
+ALTER TABLE chat_rooms ADD COLUMN private_user_low BIGINT;
+ALTER TABLE chat_rooms ADD COLUMN private_user_high BIGINT;
+ALTER TABLE chat_rooms ADD CONSTRAINT chk_chat_rooms_private_pair CHECK (private_user_low < private_user_high);
+
+-- Existing private rooms with exactly two participants; if a pair already has duplicates, the oldest room keeps the key
+UPDATE chat_rooms c
+SET private_user_low = pair.low, private_user_high = pair.high
+FROM (
+    SELECT DISTINCT ON (low, high) chatroom_id, low, high
+    FROM (
+        SELECT p.chatroom_id, min(p.user_id) AS low, max(p.user_id) AS high
+        FROM chatroom_participants p
+        JOIN chat_rooms r ON r.id = p.chatroom_id AND r.type = 'PRIVATE'
+        GROUP BY p.chatroom_id
+        HAVING count(*) = 2
+    ) pairs
+    ORDER BY low, high, chatroom_id
+) pair
+WHERE pair.chatroom_id = c.id;
+
+CREATE UNIQUE INDEX idx_chat_rooms_private_pair ON chat_rooms(private_user_low, private_user_high)
+    WHERE private_user_low IS NOT NULL;
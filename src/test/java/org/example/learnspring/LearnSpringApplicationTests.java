@@ -3,7 +3,7 @@ package org.example.learnspring;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "chat.search.backend=memory")
 class LearnSpringApplicationTests {
 
     @Test
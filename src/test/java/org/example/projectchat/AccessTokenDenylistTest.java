@@ -0,0 +1,73 @@
+package org.example.projectchat;
+
+import org.example.projectchat.component.AccessTokenDenylist;
+import org.example.projectchat.component.JwtClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AccessTokenDenylistTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private AccessTokenDenylist denylist;
+
+    @BeforeEach
+    void setUp(){
+        denylist = new AccessTokenDenylist(jdbcTemplate, 900_000, 1000);
+    }
+
+    // Test 1: a revoked jti is rejected, other tokens of the same user are not
+    @Test
+    void testRevokedToken(){
+        JwtClaims revoked = claims(1L, "101", Instant.now());
+        JwtClaims other = claims(1L, "102", Instant.now());
+
+        assertFalse(denylist.isRevoked(revoked));
+        denylist.revoke(revoked);
+        assertTrue(denylist.isRevoked(revoked));
+        assertFalse(denylist.isRevoked(other));
+        verify(jdbcTemplate).update(anyString(), eq("101"), eq(1L), any());
+    }
+
+    // Test 2: logout everywhere rejects the user's tokens issued before it, later logins and other users pass
+    @Test
+    void testWatermark(){
+        JwtClaims before = claims(1L, "201", Instant.now().minusSeconds(60));
+        JwtClaims otherUser = claims(2L, "202", Instant.now().minusSeconds(60));
+
+        denylist.revokeAllForUser(1L);
+        assertTrue(denylist.isRevoked(before));
+        assertFalse(denylist.isRevoked(otherUser));
+        assertFalse(denylist.isRevoked(claims(1L, "203", Instant.now().plusMillis(5))));
+    }
+
+    // Test 3: expired revocations drop out of memory when the filters are rebuilt
+    @Test
+    void testExpiredEntriesAreDropped(){
+        JwtClaims expiring = new JwtClaims("alice", 1L, List.of(), List.of(), Instant.now(), Instant.now().minusMillis(1), "301");
+        denylist.revoke(expiring);
+        assertTrue(denylist.isRevoked(expiring));
+
+        denylist.sync();
+        assertFalse(denylist.isRevoked(expiring));
+    }
+
+    private static JwtClaims claims(Long userId, String jti, Instant issuedAt){
+        return new JwtClaims("user" + userId, userId, List.of("ROLE_USER"), List.of(), issuedAt, Instant.now().plusSeconds(600), jti);
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.projectchat;
+
+import org.example.projectchat.component.CustomUserDetails;
+import org.example.projectchat.component.JWTUtil;
+import org.example.projectchat.component.PasswordHashingExecutor;
+import org.example.projectchat.controller.AuthController;
+import org.example.projectchat.exception.PasswordHashingRejectedException;
+import org.example.projectchat.exception.handler.GlobalExceptionHandler;
+import org.example.projectchat.service.RefreshTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthControllerTest {
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    @Mock
+    private JWTUtil jwtUtil;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @InjectMocks
+    private AuthController authController;
+
+    private MockMvc mockMvc;
+
+    private static final String LOGIN_BODY = "{\"username\":\"alice\",\"password\":\"secret\"}";
+
+    @BeforeEach
+    void setUp(){
+        mockMvc = MockMvcBuilders.standaloneSetup(authController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    // Test 1: a full hashing queue answers 503 with Retry-After before any work is done
+    @Test
+    void testSaturatedPoolAnswers503() throws Exception {
+        when(passwordHashingExecutor.submit(eq("login"), any())).thenThrow(new PasswordHashingRejectedException("Server is busy, try again later"));
+
+        mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN_BODY))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        verifyNoInteractions(authenticationManager);
+    }
+
+    // Test 2: a login that waited too long in the queue also ends as 503, not as a generic 500
+    @Test
+    void testExpiredInQueueAnswers503() throws Exception {
+        when(passwordHashingExecutor.submit(eq("login"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new PasswordHashingRejectedException("Server is busy, try again later")));
+        when(passwordHashingExecutor.getCompletionExecutor()).thenReturn(Runnable::run);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN_BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable());
+    }
+
+    // Test 3: only authentication runs on the hashing pool; tokens are issued on the completion executor
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTokensAreIssuedOnCompletionExecutor() throws Exception {
+        CustomUserDetails alice = CustomUserDetails.of(1L, "alice", null, List.of("ROLE_USER"), List.of());
+        when(authenticationManager.authenticate(any())).thenReturn(new UsernamePasswordAuthenticationToken(alice, null, alice.getAuthorities()));
+        when(passwordHashingExecutor.submit(eq("login"), any()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(((Supplier<Object>) invocation.getArgument(1)).get()));
+        AtomicInteger completions = new AtomicInteger();
+        Executor completionExecutor = task -> {
+            completions.incrementAndGet();
+            task.run();
+        };
+        when(passwordHashingExecutor.getCompletionExecutor()).thenReturn(completionExecutor);
+        when(jwtUtil.generateAccessToken(alice)).thenReturn("access");
+        when(refreshTokenService.createRefreshToken(alice)).thenReturn("refresh");
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN_BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.SET_COOKIE));
+        assertEquals(1, completions.get());
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.projectchat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.websocket.BackpressureSessionDecorator;
+import org.example.projectchat.websocket.OutboundBackpressureMetrics;
+import org.example.projectchat.websocket.OutboundOverflowPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class BackpressureSessionDecoratorTest {
+
+    private static final int BUFFER_LIMIT = 300;
+
+    @Mock
+    private WebSocketSession delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundBackpressureMetrics metrics;
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstSendStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstSend = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new OutboundBackpressureMetrics(meterRegistry);
+
+        // the first send blocks like a slow client, so everything after it is buffered
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            if (delivered.isEmpty() && firstSendStarted.getCount() > 0) {
+                firstSendStarted.countDown();
+                releaseFirstSend.await(5, TimeUnit.SECONDS);
+            }
+            delivered.add(((TextMessage) message).getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+    }
+
+    // Test 1: drop-oldest keeps the newest frames within the limit
+    @Test
+    void testDropOldestKeepsNewestFrames() throws Exception {
+        BackpressureSessionDecorator session = new BackpressureSessionDecorator(
+                delegate, 60_000, BUFFER_LIMIT, OutboundOverflowPolicy.DROP_OLDEST, metrics);
+        Thread slowSender = startBlockedSend(session);
+
+        for (int i = 1; i <= 10; i++) {
+            session.sendMessage(messageFrame(i));
+        }
+        assertTrue(session.getBufferSize() <= BUFFER_LIMIT);
+
+        releaseFirstSend.countDown();
+        slowSender.join(5000);
+
+        assertTrue(delivered.get(0).contains("message-id:0"));
+        assertTrue(delivered.get(delivered.size() - 1).contains("message-id:10"));
+        assertFalse(delivered.stream().anyMatch(frame -> frame.contains("message-id:1\n")));
+        assertEquals(0, session.getBufferSize());
+        assertTrue(meterRegistry.get("chat.ws.outbound.dropped.frames").counter().count() > 0);
+    }
+
+    // Test 2: coalesce replaces buffered frames with a single "missed N" marker for the subscription
+    @Test
+    void testCoalesceSendsMissedMarker() throws Exception {
+        BackpressureSessionDecorator session = new BackpressureSessionDecorator(
+                delegate, 60_000, BUFFER_LIMIT, OutboundOverflowPolicy.COALESCE, metrics);
+        Thread slowSender = startBlockedSend(session);
+
+        for (int i = 1; i <= 10; i++) {
+            session.sendMessage(messageFrame(i));
+        }
+
+        releaseFirstSend.countDown();
+        slowSender.join(5000);
+
+        int missed = delivered.stream()
+                .filter(frame -> frame.contains("x-missed-messages:"))
+                .mapToInt(frame -> Integer.parseInt(frame.replaceAll("(?s).*x-missed-messages:(\\d+).*", "$1")))
+                .sum();
+        long regular = delivered.stream().filter(frame -> !frame.contains("x-missed-messages:")).count();
+
+        // every frame is either delivered or accounted for in a marker
+        assertEquals(11, regular + missed);
+        assertTrue(delivered.stream().anyMatch(frame -> frame.contains("subscription:sub-1")
+                && frame.contains("x-missed-messages:")));
+    }
+
+    // Test 3: disconnect keeps Spring's behaviour and fails the session
+    @Test
+    void testDisconnectFailsTheSession() throws Exception {
+        BackpressureSessionDecorator session = new BackpressureSessionDecorator(
+                delegate, 60_000, BUFFER_LIMIT, OutboundOverflowPolicy.DISCONNECT, metrics);
+        Thread slowSender = startBlockedSend(session);
+
+        assertThrows(SessionLimitExceededException.class, () -> {
+            for (int i = 1; i <= 10; i++) {
+                session.sendMessage(messageFrame(i));
+            }
+        });
+
+        releaseFirstSend.countDown();
+        slowSender.join(5000);
+        assertEquals(0, session.getBufferSize());
+    }
+
+    private Thread startBlockedSend(BackpressureSessionDecorator session) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                session.sendMessage(messageFrame(0));
+            } catch (Exception ignored) {
+            }
+        });
+        thread.start();
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        return thread;
+    }
+
+    private static TextMessage messageFrame(int id) {
+        return new TextMessage("MESSAGE\nsubscription:sub-1\ndestination:/topic/rooms/1\nmessage-id:" + id
+                + "\ncontent-type:application/json\n\n{\"content\":\"message number " + id + "\"}\0");
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.cluster.LoopbackClusterFanout;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.websocket.PayloadCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Cost per extra subscriber of a room broadcast through the simple broker, down to the encoded STOMP frame:
+// convertAndSend of the MessageDto (before) vs ChatBroadcaster's pre-serialized message (after).
+@EnabledIfEnvironmentVariable(named = Measurements.ENABLED, matches = "true")
+public class BroadcastMeasurementTest {
+    private static final String ROOM = "/topic/rooms/10";
+    private static final int MANY = 1000;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MessageDto messageDto = new MessageDto(
+            123456789012345678L, "see you at 7?", LocalDateTime.of(2025, 3, 14, 18, 30, 5),
+            "nurdaulet", "c0a8012e-6f1b-4d1a-9a43-3f1f2c9a7b10");
+
+    // Test 1: per-broadcast time at 1 and at 1000 subscribers, and the difference per extra subscriber
+    @Test
+    void testCostPerExtraSubscriber() {
+        double before = perExtraSubscriber("convertAndSend", template -> () -> {
+            template.convertAndSend(ROOM, messageDto);
+            return template;
+        });
+        LoopbackClusterFanout fanout = new LoopbackClusterFanout();
+        double after;
+        try {
+            after = perExtraSubscriber("ChatBroadcaster", template -> {
+                ChatBroadcaster broadcaster = new ChatBroadcaster(template, objectMapper, fanout,
+                        new SnowflakeIdGenerator(1), new PayloadCodec(objectMapper, Jackson2ObjectMapperBuilder.json()));
+                return () -> {
+                    broadcaster.broadcast(ROOM, messageDto);
+                    return broadcaster;
+                };
+            });
+        } finally {
+            fanout.close();
+        }
+
+        Measurements.report("broadcast.per-extra-subscriber", "convertAndSend %.0f ns, ChatBroadcaster %.0f ns", before, after);
+        assertTrue(before > 0 && after > 0);
+    }
+
+    private double perExtraSubscriber(String name, Function<SimpMessagingTemplate, Supplier<?>> path) {
+        double one = nanosPerBroadcast(1, path);
+        double many = nanosPerBroadcast(MANY, path);
+        Measurements.report("broadcast.per-broadcast", "%s: 1 subscriber %.0f ns, %d subscribers %.0f ns", name, one, MANY, many);
+        return (many - one) / (MANY - 1);
+    }
+
+    private double nanosPerBroadcast(int subscribers, Function<SimpMessagingTemplate, Supplier<?>> path) {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        SimpleBrokerMessageHandler broker =
+                new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+
+        // what StompSubProtocolHandler does for each delivered message: one frame per session
+        StompEncoder encoder = new StompEncoder();
+        long[] frames = {0};
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                return;
+            }
+            encoder.encode(frameHeaders(message), (byte[]) message.getPayload());
+            frames[0]++;
+        });
+
+        for (int i = 0; i < subscribers; i++) {
+            // the broker only delivers to sessions it has seen connect
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId("session-" + i);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("session-" + i);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(ROOM);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        template.setMessageConverter(converter);
+
+        Supplier<?> broadcast = path.apply(template);
+        int iterations = Math.max(200, 200_000 / subscribers);
+        double nanos = Measurements.nanosPerOp(iterations, iterations, broadcast);
+        broker.stop();
+        // warm-up and measured broadcasts, each to every subscriber
+        assertEquals(2L * iterations * subscribers, frames[0]);
+        return nanos;
+    }
+
+    private static MessageHeaders frameHeaders(Message<?> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setSubscriptionId(SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+        accessor.setDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        accessor.setMessageId(String.valueOf(message.getHeaders().getId()));
+        accessor.setContentType(SimpMessageHeaderAccessor.wrap(message).getContentType());
+        return accessor.getMessageHeaders();
+    }
+}
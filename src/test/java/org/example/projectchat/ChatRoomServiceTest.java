@@ -1,26 +1,46 @@
 package org.example.projectchat;
 
 import org.example.projectchat.DTO.chat.ChatRoomDto;
+import org.example.projectchat.DTO.chat.ChatRoomListItemDto;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
 import org.example.projectchat.model.ChatRoom;
 import org.example.projectchat.model.ChatRoomType;
 import org.example.projectchat.model.User;
+import org.example.projectchat.repository.ChatListQueryRepository;
 import org.example.projectchat.repository.ChatRoomRepository;
+import org.example.projectchat.repository.PrivateChatQueryRepository;
 import org.example.projectchat.repository.UserRepository;
 import org.example.projectchat.service.ChatRoomService;
+import org.example.projectchat.service.PrivateChatCache;
+import org.example.projectchat.service.ReadCursorService;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.example.projectchat.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,10 +51,32 @@ public class ChatRoomServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private RoomMembershipIndex membershipIndex;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PrivateChatQueryRepository privateChatQueryRepository;
+
+    @Spy
+    private PrivateChatCache privateChatCache = new PrivateChatCache(100);
+
+    @Mock
+    private SnowflakeIdGenerator idGenerator;
+
     @InjectMocks
     private ChatRoomService chatRoomService;
 
+    // list query + read cursor load (the latter once per user and node)
+    private static final int CHAT_LIST_MAX_STATEMENTS = 2;
+
     private User testCreator;
+    private CurrentUser currentCreator;
     private String groupName;
 
     @BeforeEach
@@ -42,6 +84,7 @@ public class ChatRoomServiceTest {
         testCreator = new User();
         testCreator.setId(1L);
         testCreator.setUsername("testCreator");
+        currentCreator = new CurrentUser(1L, "testCreator", Set.of("ROLE_USER"));
 
         groupName = "Test group";
     }
@@ -58,8 +101,9 @@ public class ChatRoomServiceTest {
         savedChatRoom.setParticipants(new HashSet<>(Set.of(testCreator)));
 
         when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(savedChatRoom);
+        when(userService.getReference(1L)).thenReturn(testCreator);
 
-        ChatRoomDto resultDto = chatRoomService.createGroupChat(groupName, testCreator, null);
+        ChatRoomDto resultDto = chatRoomService.createGroupChat(groupName, currentCreator, null);
 
         assertNotNull(resultDto);
         assertEquals(100L, resultDto.id());
@@ -71,6 +115,7 @@ public class ChatRoomServiceTest {
 
         verify(chatRoomRepository, times(1)).existsByNameAndType(groupName, ChatRoomType.GROUP);
         verify(chatRoomRepository, times(1)).save(any(ChatRoom.class));
+        verify(membershipIndex, times(1)).registerRoom(100L, List.of(1L));
         verify(userRepository, never()).findByUsername(any());
     }
 
@@ -80,7 +125,7 @@ public class ChatRoomServiceTest {
         when(chatRoomRepository.existsByNameAndType(groupName, ChatRoomType.GROUP)).thenReturn(true);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            chatRoomService.createGroupChat(groupName, testCreator, null);
+            chatRoomService.createGroupChat(groupName, currentCreator, null);
         });
 
         assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
@@ -88,4 +133,54 @@ public class ChatRoomServiceTest {
 
         verify(chatRoomRepository, never()).save(any(ChatRoom.class));
     }
+
+    // Test 3: the chat list runs a fixed number of statements no matter how many rooms the user has
+    @Test
+    @SuppressWarnings("unchecked")
+    void testChatListStatementBudget(){
+        List<ChatListQueryRepository.ChatListRow> rows = LongStream.rangeClosed(1, 300)
+                .mapToObj(id -> new ChatListQueryRepository.ChatListRow(id, "room" + id, ChatRoomType.GROUP,
+                        List.of("testCreator", "other"),
+                        new MessageDto(1000 + id, "hi", LocalDateTime.now(), "other", null), 5))
+                .toList();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L))).thenReturn(rows);
+
+        ChatRoomService listService = new ChatRoomService(chatRoomRepository, new ChatListQueryRepository(jdbcTemplate),
+                userService, membershipIndex, new ReadCursorService(jdbcTemplate, membershipIndex, mock(ClusterControlChannel.class), 30_000, 100_000),
+                privateChatQueryRepository, privateChatCache, idGenerator);
+
+        List<ChatRoomListItemDto> chatList = listService.findUserChatListItems(currentCreator);
+        assertEquals(300, chatList.size());
+        assertEquals(5, chatList.get(0).unreadCount());
+        assertTrue(mockingDetails(jdbcTemplate).getInvocations().size() <= CHAT_LIST_MAX_STATEMENTS);
+
+        clearInvocations(jdbcTemplate);
+        listService.findUserChatListItems(currentCreator);
+        assertEquals(1, mockingDetails(jdbcTemplate).getInvocations().size());
+        verifyNoInteractions(chatRoomRepository);
+    }
+
+    // Test 4: opening a DM creates the room once; reopening it from either side is a cache hit
+    @Test
+    void testPrivateChatIsCreatedOnceAndCached(){
+        when(privateChatQueryRepository.findByUsername(1L, "bob"))
+                .thenReturn(Optional.of(new PrivateChatQueryRepository.Lookup(2L, "bob", null)));
+        when(idGenerator.nextId()).thenReturn(77L);
+        when(privateChatQueryRepository.createIfAbsent(77L, "bob", 1L, 2L))
+                .thenReturn(new PrivateChatQueryRepository.Created(77L, true));
+
+        ChatRoomDto created = chatRoomService.getOrCreateChatRoomService(currentCreator, "bob");
+        assertEquals(77L, created.id());
+        assertEquals(List.of("testCreator", "bob"), created.participantUsernames());
+        verify(membershipIndex, times(1)).registerRoom(77L, List.of(1L, 2L));
+
+        assertEquals(77L, chatRoomService.getOrCreateChatRoomService(currentCreator, "bob").id());
+        ChatRoomDto fromBob = chatRoomService.getOrCreateChatRoomService(new CurrentUser(2L, "bob", Set.of("ROLE_USER")), "testCreator");
+        assertEquals(77L, fromBob.id());
+        assertEquals("testCreator", fromBob.name());
+
+        verify(privateChatQueryRepository, times(1)).findByUsername(any(), any());
+        verify(privateChatQueryRepository, times(1)).createIfAbsent(anyLong(), any(), any(), any());
+        verifyNoInteractions(chatRoomRepository);
+    }
 }
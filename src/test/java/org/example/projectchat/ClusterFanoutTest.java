@@ -0,0 +1,141 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.cluster.FanoutEnvelope;
+import org.example.projectchat.cluster.LoopbackClusterFanout;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.example.projectchat.websocket.PayloadCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ClusterFanoutTest {
+
+    @Mock
+    private SimpMessagingTemplate templateA;
+
+    @Mock
+    private SimpMessagingTemplate templateB;
+
+    @Mock
+    private JdbcTemplate jdbcA;
+
+    @Mock
+    private JdbcTemplate jdbcB;
+
+    private LoopbackClusterFanout fanoutA;
+    private LoopbackClusterFanout fanoutB;
+    private ChatBroadcaster nodeA;
+    private ChatBroadcaster nodeB;
+
+    @BeforeEach
+    void setUp(){
+        ObjectMapper objectMapper = new ObjectMapper();
+        fanoutA = new LoopbackClusterFanout();
+        fanoutB = new LoopbackClusterFanout();
+        PayloadCodec payloadCodec = new PayloadCodec(objectMapper, Jackson2ObjectMapperBuilder.json());
+        nodeA = new ChatBroadcaster(templateA, objectMapper, fanoutA, new SnowflakeIdGenerator(1), payloadCodec);
+        nodeB = new ChatBroadcaster(templateB, objectMapper, fanoutB, new SnowflakeIdGenerator(2), payloadCodec);
+        nodeA.subscribe();
+        nodeB.subscribe();
+    }
+
+    private RoomMembershipIndex membershipIndex(JdbcTemplate jdbcTemplate, LoopbackClusterFanout fanout, long nodeId){
+        ClusterControlChannel channel = new ClusterControlChannel(fanout, new SnowflakeIdGenerator(nodeId));
+        channel.subscribe();
+        RoomMembershipIndex index = new RoomMembershipIndex(jdbcTemplate, channel, 5000, 10_000);
+        index.subscribe();
+        return index;
+    }
+
+    @AfterEach
+    void tearDown(){
+        fanoutA.close();
+        fanoutB.close();
+    }
+
+    // Test 1: a room broadcast reaches local and peer subscribers exactly once, with the same bytes
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRoomBroadcastReachesPeerNode(){
+        nodeA.broadcast("/topic/rooms/5", Map.of("content", "hi"));
+
+        ArgumentCaptor<Message<byte[]>> local = ArgumentCaptor.forClass(Message.class);
+        ArgumentCaptor<Message<byte[]>> remote = ArgumentCaptor.forClass(Message.class);
+        verify(templateA, times(1)).send(eq("/topic/rooms/5"), local.capture());
+        verify(templateB, times(1)).send(eq("/topic/rooms/5"), remote.capture());
+        assertArrayEquals(local.getValue().getPayload(), remote.getValue().getPayload());
+    }
+
+    // Test 2: user destinations are resolved on the peer node, and a redelivered envelope is dropped
+    @Test
+    void testUserDestinationIsDeliveredOnceOnPeer(){
+        when(templateA.getUserDestinationPrefix()).thenReturn("/user/");
+        when(templateB.getUserDestinationPrefix()).thenReturn("/user/");
+
+        nodeA.sendToUser("alice", "/queue/errors", "Message could not be saved.");
+        verify(templateA).send(eq("/user/alice/queue/errors"), any());
+        verify(templateB).send(eq("/user/alice/queue/errors"), any());
+
+        // the same envelope arriving again (e.g. a reconnecting listener) must not be delivered twice
+        FanoutEnvelope duplicate = new FanoutEnvelope(42L, 1L, "text/plain", "/queue/errors", "alice",
+                "again".getBytes(StandardCharsets.UTF_8));
+        fanoutA.publish(FanoutEnvelope.decode(duplicate.encode()));
+        fanoutA.publish(duplicate);
+        verify(templateB, times(2)).send(eq("/user/alice/queue/errors"), any());
+        verify(templateA, times(1)).send(eq("/user/alice/queue/errors"), any());
+    }
+
+    // Test 3: membership changes made on one node reach the other node's index; it reloads the room from the database
+    @Test
+    void testMembershipChangesReachPeerNode(){
+        RoomMembershipIndex indexA = membershipIndex(jdbcA, fanoutA, 1);
+        RoomMembershipIndex indexB = membershipIndex(jdbcB, fanoutB, 2);
+        when(jdbcA.queryForList(anyString(), eq(Long.class), eq(7L))).thenReturn(List.of(1L, 2L));
+        // what node B reads: initially, after the removal of 2, after the addition of 3
+        when(jdbcB.queryForList(anyString(), eq(Long.class), eq(7L)))
+                .thenReturn(List.of(1L, 2L), List.of(1L), List.of(1L, 3L));
+        assertTrue(indexA.isMember(7L, 2L));
+        assertTrue(indexB.isMember(7L, 2L));
+
+        // removed on A: B no longer lets the user in
+        indexA.removeMember(7L, 2L);
+        assertFalse(indexA.isMember(7L, 2L));
+        assertFalse(indexB.isMember(7L, 2L));
+        assertTrue(indexB.isMember(7L, 1L));
+
+        // added on A: B accepts the user
+        indexA.addMember(7L, 3L);
+        assertTrue(indexA.isMember(7L, 3L));
+        assertTrue(indexB.isMember(7L, 3L));
+
+        // A applied its own changes in memory and ignored its own announcements
+        verify(jdbcA, times(1)).queryForList(anyString(), eq(Long.class), eq(7L));
+        verify(jdbcB, times(3)).queryForList(anyString(), eq(Long.class), eq(7L));
+        // control messages never reach the STOMP broker
+        verify(templateA, never()).send(anyString(), any());
+        verify(templateB, never()).send(anyString(), any());
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.projectchat;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.search.InMemoryMessageSearchIndex;
+import org.example.projectchat.search.PostgresMessageSearchIndex;
+import org.example.projectchat.search.SearchQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryMessageSearchIndexTest {
+
+    private InMemoryMessageSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp(){
+        searchIndex = new InMemoryMessageSearchIndex();
+        searchIndex.add(5L, message(1, "Deploy the release tonight"));
+        searchIndex.add(5L, message(2, "release notes are ready"));
+        searchIndex.add(5L, message(3, "Tonight we deploy, then the release"));
+        searchIndex.add(6L, message(4, "release in another room"));
+    }
+
+    // Test 1: all words must match, word* matches prefixes, quoted words must be adjacent
+    @Test
+    void testWordsPrefixAndPhrase(){
+        assertEquals(List.of(3L, 1L), ids(search("release tonight", null, 10)));
+        assertEquals(List.of(3L, 1L), ids(search("depl*", null, 10)));
+        assertEquals(List.of(1L), ids(search("\"deploy the release\"", null, 10)));
+        assertEquals(List.of(2L), ids(search("\"RELEASE notes\" rea*", null, 10)));
+        assertTrue(search("releases", null, 10).isEmpty());
+    }
+
+    // Test 2: results are newest first and paged by message id, rooms are separate
+    @Test
+    void testPagingByMessageId(){
+        assertEquals(List.of(3L, 2L), ids(search("release", null, 2)));
+        assertEquals(List.of(1L), ids(search("release", 2L, 2)));
+        assertEquals(List.of(4L), ids(searchIndex.search(6L, SearchQuery.parse("release"), null, 10)));
+    }
+
+    // Test 3: the same parsed query as a PostgreSQL tsquery
+    @Test
+    void testTsQuery(){
+        // quotes and operators never reach the tsquery
+        assertEquals("(deploy <-> the) & rel:* & notes & 1:*",
+                PostgresMessageSearchIndex.toTsQuery(SearchQuery.parse("\"Deploy the\" rel* notes' | !1:*")));
+        assertTrue(SearchQuery.parse(" *  \"\" ").isEmpty());
+    }
+
+    private List<MessageDto> search(String text, Long beforeId, int limit){
+        return searchIndex.search(5L, SearchQuery.parse(text), beforeId, limit);
+    }
+
+    private static List<Long> ids(List<MessageDto> messages){
+        return messages.stream().map(MessageDto::id).toList();
+    }
+
+    private static MessageDto message(long id, String content){
+        return new MessageDto(id, content, LocalDateTime.now(), "alice", null);
+    }
+}
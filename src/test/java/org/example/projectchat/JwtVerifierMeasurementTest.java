@@ -0,0 +1,65 @@
+package org.example.projectchat;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.component.JwtVerifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Authentications per second on one thread: the former JWTUtil path (new key per call, three parses per request)
+// vs JwtVerifier without and with its verified-token cache.
+@EnabledIfEnvironmentVariable(named = Measurements.ENABLED, matches = "true")
+public class JwtVerifierMeasurementTest {
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final int TOKENS = 1000;
+
+    // Test 1: the same 1000 tokens authenticated over and over, as active sessions refresh their requests
+    @Test
+    void testAuthenticationsPerSecond() {
+        JwtVerifier uncached = new JwtVerifier(SECRET, 0, TOKENS, new SimpleMeterRegistry());
+        JwtVerifier cached = new JwtVerifier(SECRET, 60_000, TOKENS * 2, new SimpleMeterRegistry());
+        String[] tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = Jwts.builder()
+                    .subject("user" + i)
+                    .expiration(Date.from(Instant.now().plusSeconds(600)))
+                    .id(Long.toString(1_000_000L + i))
+                    .claim("userId", (long) i)
+                    .claim("roles", List.of("ROLE_USER"))
+                    .signWith(cached.getSigningKey())
+                    .compact();
+        }
+
+        int[] next = {0};
+        double before = Measurements.nanosPerOp(20_000, 50_000, () -> authenticateAsBefore(tokens[next[0]++ % TOKENS]));
+        double parsedOnce = Measurements.nanosPerOp(20_000, 50_000, () -> uncached.verify(tokens[next[0]++ % TOKENS]));
+        double fromCache = Measurements.nanosPerOp(20_000, 200_000, () -> cached.verify(tokens[next[0]++ % TOKENS]));
+
+        Measurements.report("jwt.authentications-per-second", "JWTUtil (3 parses) %.0f, JwtVerifier %.0f, JwtVerifier cached %.0f",
+                1e9 / before, 1e9 / parsedOnce, 1e9 / fromCache);
+        assertEquals("user7", cached.verify(tokens[7]).subject());
+    }
+
+    // extractUsername, then validateToken reading the username and the expiry again, each with a freshly built key
+    private static Object authenticateAsBefore(String token) {
+        String username = claims(token).getSubject();
+        boolean valid = username.equals(claims(token).getSubject()) && claims(token).getExpiration().after(new Date());
+        return valid ? username : null;
+    }
+
+    private static Claims claims(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    }
+}
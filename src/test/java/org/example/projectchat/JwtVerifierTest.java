@@ -0,0 +1,74 @@
+package org.example.projectchat;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.component.JwtClaims;
+import org.example.projectchat.component.JwtVerifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtVerifierTest {
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtVerifier verifier;
+
+    @BeforeEach
+    void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        verifier = new JwtVerifier(SECRET, 30_000, 100, meterRegistry);
+    }
+
+    // Test 1: one parse gives every claim; the same token again is served from the cache
+    @Test
+    void testClaimsAndCachedVerification(){
+        Instant expiresAt = Instant.now().plusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+        String token = token("alice", expiresAt);
+
+        JwtClaims claims = verifier.verify(token);
+        assertEquals("alice", claims.subject());
+        assertEquals(7L, claims.userId());
+        assertEquals(List.of("ROLE_USER"), claims.roles());
+        assertEquals(expiresAt, claims.expiresAt());
+        assertEquals("jti-1", claims.jti());
+
+        assertSame(claims, verifier.verify(token));
+        assertEquals(1, meterRegistry.counter("chat.auth.jwt.verifications", "result", "parsed").count());
+        assertEquals(1, meterRegistry.counter("chat.auth.jwt.verifications", "result", "cached").count());
+    }
+
+    // Test 2: a cached signature does not vouch for another payload; expired tokens are rejected
+    @Test
+    void testTamperedAndExpiredTokens(){
+        String token = token("alice", Instant.now().plusSeconds(600));
+        verifier.verify(token);
+
+        String[] parts = token.split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"sub\":\"mallory\",\"userId\":1}".getBytes());
+        assertThrows(JwtException.class, () -> verifier.verify(parts[0] + "." + forgedPayload + "." + parts[2]));
+
+        assertThrows(ExpiredJwtException.class, () -> verifier.verify(token("alice", Instant.now().minusSeconds(5))));
+    }
+
+    private String token(String username, Instant expiresAt){
+        return Jwts.builder()
+                .subject(username)
+                .expiration(Date.from(expiresAt))
+                .id("jti-1")
+                .claim("userId", 7L)
+                .claim("roles", List.of("ROLE_USER"))
+                .signWith(verifier.getSigningKey())
+                .compact();
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.projectchat;
+
+import java.util.function.Supplier;
+
+// Test-scoped performance measurements. The build has no JMH harness, so a measurement is a warmed-up
+// loop timed with nanoTime and printed to stdout; numbers are indicative, compare them on the same machine.
+// Timing tests only run with CHAT_BENCHMARKS=true (mvn test -Dtest='*MeasurementTest').
+final class Measurements {
+    static final String ENABLED = "CHAT_BENCHMARKS";
+
+    // keeps the measured results alive so the JIT cannot drop the work
+    private static volatile int sink;
+
+    private Measurements() {
+    }
+
+    static double nanosPerOp(int warmup, int iterations, Supplier<?> operation) {
+        int hash = 0;
+        for (int i = 0; i < warmup; i++) {
+            hash += System.identityHashCode(operation.get());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            hash += System.identityHashCode(operation.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = hash;
+        return (double) elapsed / iterations;
+    }
+
+    static void report(String name, String format, Object... args) {
+        System.out.printf("[measurement] %s: %s%n", name, String.format(format, args));
+    }
+}
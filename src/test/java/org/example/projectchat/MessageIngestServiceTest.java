@@ -0,0 +1,155 @@
+package org.example.projectchat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.exception.MessageIngestException;
+import org.example.projectchat.service.MessageBatchListener;
+import org.example.projectchat.service.MessageIngestService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageIngestServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private MessageIngestService ingestService;
+
+    // sizes of the row lists passed to batchUpdate, in call order
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> listenerThreads = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ingestService != null) {
+            ingestService.stop();
+        }
+    }
+
+    // Test 1: messages waiting together are committed in batches, and listeners and futures run off the writer thread
+    @Test
+    void testMessagesAreBatchedAndCompletedOffTheWriter() throws Exception {
+        start(100, 3, 200);
+        List<CompletableFuture<MessageDto>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(ingestService.submit(10L, 1L, "alice", "message " + i, "client-" + i));
+        }
+
+        List<String> completedOn = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < results.size(); i++) {
+            MessageDto message = results.get(i).thenApply(dto -> {
+                completedOn.add(Thread.currentThread().getName());
+                return dto;
+            }).get(5, TimeUnit.SECONDS);
+            assertEquals("message " + i, message.content());
+            assertEquals("client-" + i, message.clientMessageId());
+        }
+
+        assertEquals(List.of(3, 2), batchSizes);
+        assertEquals(List.of("message-ingest-completion", "message-ingest-completion"), listenerThreads);
+        assertFalse(completedOn.contains("message-ingest-writer"));
+    }
+
+    // Test 2: a failing batch is retried one by one, so only the bad message fails
+    @Test
+    void testFailedBatchFallsBackToSingleInserts() throws Exception {
+        start(100, 10, 200);
+        CompletableFuture<MessageDto> first = ingestService.submit(10L, 1L, "alice", "hello", null);
+        CompletableFuture<MessageDto> bad = ingestService.submit(10L, 1L, "alice", "bad", null);
+        CompletableFuture<MessageDto> third = ingestService.submit(10L, 1L, "alice", "world", null);
+
+        assertEquals("hello", first.get(5, TimeUnit.SECONDS).content());
+        assertEquals("world", third.get(5, TimeUnit.SECONDS).content());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(MessageIngestException.class, failure.getCause());
+        assertEquals("Message could not be saved", failure.getCause().getMessage());
+
+        // the batch of three, then each message on its own
+        assertEquals(List.of(3, 1, 1, 1), batchSizes);
+        assertEquals(2, listenerThreads.size());
+    }
+
+    // Test 3: a full queue and a stopped service reject with different reasons
+    @Test
+    void testRejectionWhenFullAndWhenStopped() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start(1, 10, 1, () -> {
+            writerBlocked.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        });
+
+        CompletableFuture<MessageDto> inFlight = ingestService.submit(10L, 1L, "alice", "one", null);
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MessageDto> queued = ingestService.submit(10L, 1L, "alice", "two", null);
+        CompletableFuture<MessageDto> rejected = ingestService.submit(10L, 1L, "alice", "three", null);
+
+        ExecutionException busy = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertEquals("Server is busy, message was not accepted", busy.getCause().getMessage());
+
+        release.countDown();
+        assertEquals("one", inFlight.get(5, TimeUnit.SECONDS).content());
+        assertEquals("two", queued.get(5, TimeUnit.SECONDS).content());
+
+        ingestService.stop();
+        ExecutionException stopped = assertThrows(ExecutionException.class,
+                () -> ingestService.submit(10L, 1L, "alice", "four", null).get(1, TimeUnit.SECONDS));
+        assertEquals("Server is shutting down, message was not accepted", stopped.getCause().getMessage());
+        ingestService = null;
+    }
+
+    private void start(int queueCapacity, int batchSize, long flushIntervalMs) {
+        start(queueCapacity, batchSize, flushIntervalMs, () -> {
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void start(int queueCapacity, int batchSize, long flushIntervalMs, Blocker beforeInsert) {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            beforeInsert.await();
+            List<Object[]> rows = invocation.getArgument(1);
+            batchSizes.add(rows.size());
+            if (rows.stream().anyMatch(row -> "bad".equals(row[1]))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return new int[rows.size()];
+        });
+
+        MessageBatchListener listener = batch -> listenerThreads.add(Thread.currentThread().getName());
+        ingestService = new MessageIngestService(jdbcTemplate, transactionTemplate, new SnowflakeIdGenerator(1),
+                List.of(listener), new SimpleMeterRegistry(), queueCapacity, batchSize, flushIntervalMs, 100);
+        ingestService.start();
+    }
+
+    private interface Blocker {
+        void await() throws InterruptedException;
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.projectchat;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.search.InMemoryMessageSearchIndex;
+import org.example.projectchat.search.MessageSearchIndex;
+import org.example.projectchat.search.PostgresMessageSearchIndex;
+import org.example.projectchat.search.SearchQuery;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// The same queries against both search backends. Text PostgreSQL's parser would keep as one token
+// (e-mails, URLs, versions, hyphenated words) must match the same way as in the memory backend.
+// The postgres half runs when CHAT_TEST_DB_URL (and CHAT_TEST_DB_USERNAME / CHAT_TEST_DB_PASSWORD) point to a database.
+public class MessageSearchParityTest {
+    private static final long ROOM_ID = 5L;
+
+    private static final List<String> MESSAGES = List.of(
+            "Mail me at john.doe@example.com please",
+            "The build is v1.5.2-rc, see https://ci.example.org/job/42",
+            "state-of-the-art caching",
+            "Привет, мир! e-mail не работает"
+    );
+
+    // query -> expected message ids (1-based position in MESSAGES), newest first
+    private static final Map<String, List<Long>> EXPECTED = new LinkedHashMap<>();
+
+    static {
+        EXPECTED.put("example", List.of(2L, 1L));
+        EXPECTED.put("\"john doe\"", List.of(1L));
+        EXPECTED.put("\"example com\"", List.of(1L));
+        EXPECTED.put("doe*", List.of(1L));
+        EXPECTED.put("v1.5.2", List.of(2L));
+        EXPECTED.put("1.5.2", List.of());
+        EXPECTED.put("rc job", List.of(2L));
+        EXPECTED.put("art", List.of(3L));
+        EXPECTED.put("\"state of the art\"", List.of(3L));
+        EXPECTED.put("e-mail", List.of(4L));
+        EXPECTED.put("мир", List.of(4L));
+        EXPECTED.put("john.doe@example.com", List.of(1L));
+        EXPECTED.put("\"art caching state\"", List.of());
+    }
+
+    // Test 1: the memory backend
+    @Test
+    void testMemoryBackend(){
+        InMemoryMessageSearchIndex searchIndex = new InMemoryMessageSearchIndex();
+        for (int i = 0; i < MESSAGES.size(); i++) {
+            searchIndex.add(ROOM_ID, new MessageDto(i + 1L, MESSAGES.get(i), LocalDateTime.now(), "alice", null));
+        }
+        assertSameResults(searchIndex);
+    }
+
+    // Test 2: the postgres backend, on temporary tables that shadow the real ones for this connection
+    @Test
+    void testPostgresBackend(){
+        String url = System.getenv("CHAT_TEST_DB_URL");
+        assumeTrue(url != null, "CHAT_TEST_DB_URL not set");
+
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url,
+                System.getenv("CHAT_TEST_DB_USERNAME"), System.getenv("CHAT_TEST_DB_PASSWORD"), true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("create temporary table users (id bigint primary key, username varchar(255))");
+            jdbcTemplate.execute("create temporary table messages (id bigint primary key, content varchar(1000), "
+                    + "created_at timestamp with time zone, sender_id bigint, chatroom_id bigint)");
+            jdbcTemplate.update("insert into users values (1, 'alice')");
+            for (int i = 0; i < MESSAGES.size(); i++) {
+                jdbcTemplate.update("insert into messages values (?, ?, ?, 1, ?)",
+                        i + 1L, MESSAGES.get(i), Timestamp.valueOf(LocalDateTime.now()), ROOM_ID);
+            }
+            assertSameResults(new PostgresMessageSearchIndex(jdbcTemplate));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static void assertSameResults(MessageSearchIndex searchIndex){
+        EXPECTED.forEach((query, ids) -> assertEquals(ids,
+                searchIndex.search(ROOM_ID, SearchQuery.parse(query), null, 10).stream().map(MessageDto::id).toList(),
+                "query " + query));
+    }
+}
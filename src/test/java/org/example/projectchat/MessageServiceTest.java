@@ -0,0 +1,111 @@
+package org.example.projectchat;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.DTO.chat.MessageSliceDto;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.repository.MessageHistoryQueryRepository;
+import org.example.projectchat.repository.MessageRepository;
+import org.example.projectchat.service.MessageService;
+import org.example.projectchat.service.RecentMessageCache;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.example.projectchat.util.MessageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.modelmapper.ModelMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageServiceTest {
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageHistoryQueryRepository historyQueryRepository;
+
+    @Mock
+    private RecentMessageCache recentMessageCache;
+
+    @Mock
+    private RoomMembershipIndex membershipIndex;
+
+    @Mock
+    private ModelMapper modelMapper;
+
+    @InjectMocks
+    private MessageService messageService;
+
+    private final CurrentUser alice = new CurrentUser(1L, "alice", Set.of("ROLE_USER"));
+
+    @BeforeEach
+    void setUp(){
+        when(membershipIndex.isMember(5L, 1L)).thenReturn(true);
+    }
+
+    // Test 1: the newest page reads limit + 1 rows and hands out a cursor that continues strictly before its oldest message
+    @Test
+    void testLatestSliceAndOlderCursor(){
+        // ids 30..28 newest first, plus the probe row 27
+        when(historyQueryRepository.findLatest(5L, 4)).thenReturn(rows(30, 27));
+
+        MessageSliceDto slice = messageService.findMessageSlice(5L, alice, null, null, null, 3);
+        assertEquals(List.of(30L, 29L, 28L), slice.messages().stream().map(MessageDto::id).toList());
+        assertNull(slice.newerCursor());
+
+        MessageCursor older = MessageCursor.decode(slice.olderCursor());
+        assertTrue(older.before());
+        assertEquals(28L, older.id());
+        assertEquals(Instant.ofEpochSecond(28), older.createdAt());
+
+        when(historyQueryRepository.findBefore(5L, older.createdAt(), 28L, 4)).thenReturn(rows(27, 26));
+        MessageSliceDto next = messageService.findMessageSlice(5L, alice, slice.olderCursor(), null, null, 3);
+        assertEquals(List.of(27L, 26L), next.messages().stream().map(MessageDto::id).toList());
+        assertNull(next.olderCursor());
+        assertNotNull(next.newerCursor());
+    }
+
+    // Test 2: paging forward returns newest first too; broken cursors and mixed positions are rejected
+    @Test
+    void testAfterSliceAndInvalidInput(){
+        when(historyQueryRepository.findCreatedAt(5L, 10L)).thenReturn(Optional.of(Instant.ofEpochSecond(10)));
+        // oldest first from the database
+        when(historyQueryRepository.findAfter(5L, Instant.ofEpochSecond(10), 10L, 3)).thenReturn(List.of(row(11), row(12), row(13)));
+
+        MessageSliceDto slice = messageService.findMessageSlice(5L, alice, null, null, 10L, 2);
+        assertEquals(List.of(12L, 11L), slice.messages().stream().map(MessageDto::id).toList());
+        assertEquals(12L, MessageCursor.decode(slice.newerCursor()).id());
+        assertEquals(11L, MessageCursor.decode(slice.olderCursor()).id());
+
+        ResponseStatusException badCursor = assertThrows(ResponseStatusException.class,
+                () -> messageService.findMessageSlice(5L, alice, "not-a-cursor", null, null, 10));
+        assertEquals(HttpStatus.BAD_REQUEST, badCursor.getStatusCode());
+        assertThrows(ResponseStatusException.class,
+                () -> messageService.findMessageSlice(5L, alice, null, 1L, 2L, 10));
+        verify(historyQueryRepository, never()).findLatest(anyLong(), anyInt());
+    }
+
+    // ids from..to (inclusive, descending)
+    private static List<MessageHistoryQueryRepository.HistoryRow> rows(long from, long to){
+        return LongStream.iterate(from, id -> id >= to, id -> id - 1).mapToObj(MessageServiceTest::row).toList();
+    }
+
+    private static MessageHistoryQueryRepository.HistoryRow row(long id){
+        return new MessageHistoryQueryRepository.HistoryRow(
+                new MessageDto(id, "m" + id, LocalDateTime.now(), "alice", null), Instant.ofEpochSecond(id));
+    }
+}
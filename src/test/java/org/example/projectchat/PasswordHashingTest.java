@@ -0,0 +1,126 @@
+package org.example.projectchat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.component.PasswordHashingExecutor;
+import org.example.projectchat.config.security.MyUserDetailService;
+import org.example.projectchat.exception.PasswordHashingRejectedException;
+import org.example.projectchat.model.User;
+import org.example.projectchat.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PasswordHashingTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordHashingExecutor hashingExecutor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if(executor != null){
+            executor.destroy();
+        }
+    }
+
+    // Test 1: with the only thread busy and the queue full, the next task is rejected at once; the queued one still runs
+    @Test
+    void testSaturatedPoolRejectsImmediately() throws Exception {
+        executor = new PasswordHashingExecutor(meterRegistry, new MockEnvironment(), 1, 1, 60_000, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = executor.submit("login", () -> {
+            started.countDown();
+            awaitQuietly(release);
+            return "first";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = executor.submit("login", () -> "second");
+
+        assertThrows(PasswordHashingRejectedException.class, () -> executor.submit("login", () -> "third"));
+        assertEquals(1.0, meterRegistry.counter("chat.auth.hashing.rejected", "operation", "login", "reason", "saturated").count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, meterRegistry.timer("chat.auth.hashing.duration", "operation", "login").count());
+    }
+
+    // Test 2: a task that waited in the queue longer than max-wait is not run; its future fails with the 503 exception
+    @Test
+    void testStaleTaskIsDropped() throws Exception {
+        executor = new PasswordHashingExecutor(meterRegistry, new MockEnvironment(), 1, 4, 200, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit("register", () -> {
+            awaitQuietly(release);
+            return "first";
+        });
+        CompletableFuture<String> stale = executor.submit("register", () -> fail("stale task must not run"));
+        Thread.sleep(400);
+        release.countDown();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> stale.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PasswordHashingRejectedException.class, e.getCause());
+        assertEquals(1.0, meterRegistry.counter("chat.auth.hashing.rejected", "operation", "register", "reason", "expired").count());
+    }
+
+    // Test 3: a login against a hash weaker than the configured strength stores a new hash with that strength
+    @Test
+    void testRehashOnLoginWhenStrengthRaised(){
+        User alice = new User();
+        alice.setId(1L);
+        alice.setUsername("alice");
+        alice.setPassword(new BCryptPasswordEncoder(4).encode("secret"));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(userRepository.updatePassword(eq("alice"), anyString())).thenReturn(1);
+        // the update runs on the completion executor; inline here
+        when(hashingExecutor.getCompletionExecutor()).thenReturn(Runnable::run);
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        MyUserDetailService userDetailService = new MyUserDetailService(userRepository, hashingExecutor);
+        provider.setUserDetailsService(userDetailService);
+        provider.setUserDetailsPasswordService(userDetailService);
+        provider.setPasswordEncoder(new BCryptPasswordEncoder(5));
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+        verify(userRepository).updatePassword(eq("alice"), argThat(hash -> hash.startsWith("$2a$05$")));
+
+        // already at the configured strength: no further rehash
+        alice.setPassword(new BCryptPasswordEncoder(5).encode("secret"));
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+        verify(userRepository, times(1)).updatePassword(eq("alice"), anyString());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch){
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
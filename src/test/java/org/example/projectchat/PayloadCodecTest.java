@@ -0,0 +1,85 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.websocket.CborOutboundInterceptor;
+import org.example.projectchat.websocket.PayloadCodec;
+import org.example.projectchat.websocket.PayloadFormat;
+import org.example.projectchat.websocket.PayloadFormatRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PayloadCodecTest {
+
+    @Mock
+    private PayloadFormatRegistry payloadFormatRegistry;
+
+    @Mock
+    private MessageChannel channel;
+
+    private ObjectMapper objectMapper;
+    private PayloadCodec payloadCodec;
+    private CborOutboundInterceptor interceptor;
+
+    private final MessageDto messageDto = new MessageDto(
+            123456789012345678L, "see you at 7?", LocalDateTime.of(2025, 3, 14, 18, 30, 5, 123_000_000),
+            "nurdaulet", "c0a8012e-6f1b-4d1a-9a43-3f1f2c9a7b10");
+
+    @BeforeEach
+    void setUp(){
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        payloadCodec = new PayloadCodec(objectMapper, Jackson2ObjectMapperBuilder.json());
+        interceptor = new CborOutboundInterceptor(payloadFormatRegistry, payloadCodec);
+    }
+
+    // Test 1: CBOR carries the same document as JSON in fewer bytes
+    @Test
+    void testCborRoundTripIsSmallerThanJson() throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(messageDto);
+        byte[] cbor = payloadCodec.toCbor(messageDto);
+
+        assertTrue(cbor.length < json.length, "cbor " + cbor.length + " bytes, json " + json.length + " bytes");
+        assertEquals(messageDto, payloadCodec.getCborMapper().readValue(cbor, MessageDto.class));
+        assertEquals(messageDto, payloadCodec.getCborMapper().readValue(payloadCodec.jsonToCbor(json), MessageDto.class));
+    }
+
+    // Test 2: only sessions that negotiated CBOR get a transcoded binary frame
+    @Test
+    void testOutboundFramesAreTranscodedPerSession() throws Exception {
+        when(payloadFormatRegistry.formatOf("json-session")).thenReturn(PayloadFormat.JSON);
+        when(payloadFormatRegistry.formatOf("cbor-session")).thenReturn(PayloadFormat.CBOR);
+
+        byte[] json = objectMapper.writeValueAsBytes(messageDto);
+        assertSame(json, interceptor.preSend(outboundMessage("json-session", json), channel).getPayload());
+
+        Message<?> transcoded = interceptor.preSend(outboundMessage("cbor-session", json), channel);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(transcoded);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, accessor.getContentType());
+        assertEquals("cbor", accessor.getFirstNativeHeader(PayloadFormat.HEADER));
+        assertEquals(messageDto, payloadCodec.getCborMapper().readValue((byte[]) transcoded.getPayload(), MessageDto.class));
+    }
+
+    private Message<byte[]> outboundMessage(String sessionId, byte[] json){
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(PayloadCodec.CBOR_PAYLOAD_HEADER, payloadCodec.lazy(messageDto));
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.websocket.PayloadCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// JSON vs CBOR for MessageDto at a chat message mix: 6 short, 3 medium and 1 long message out of 10,
+// half of them echoed with the sender's clientMessageId.
+public class PayloadMeasurementTest {
+    private static final String MEDIUM = "Я посмотрел ветку, там осталось поправить миграцию и тесты; "
+            + "созвонимся после обеда и решим, что катим сегодня";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final PayloadCodec payloadCodec = new PayloadCodec(objectMapper, Jackson2ObjectMapperBuilder.json());
+    private final List<MessageDto> mix = messageMix();
+
+    // Test 1: body bytes on the wire per message, averaged over the mix
+    @Test
+    void testBytesOnTheWire() throws IOException {
+        long json = 0;
+        long cbor = 0;
+        for (MessageDto message : mix) {
+            json += objectMapper.writeValueAsBytes(message).length;
+            cbor += payloadCodec.toCbor(message).length;
+        }
+
+        Measurements.report("payload.bytes", "json %d, cbor %d bytes per message (cbor %.0f%% of json)",
+                json / mix.size(), cbor / mix.size(), 100.0 * cbor / json);
+        assertTrue(cbor < json);
+    }
+
+    // Test 2: encode and decode time per message
+    @Test
+    @EnabledIfEnvironmentVariable(named = Measurements.ENABLED, matches = "true")
+    void testEncodeAndDecodeTime() throws IOException {
+        ObjectMapper cborMapper = payloadCodec.getCborMapper();
+        List<byte[]> jsonBodies = new ArrayList<>();
+        List<byte[]> cborBodies = new ArrayList<>();
+        for (MessageDto message : mix) {
+            jsonBodies.add(objectMapper.writeValueAsBytes(message));
+            cborBodies.add(payloadCodec.toCbor(message));
+        }
+
+        int[] next = {0};
+        double jsonEncode = Measurements.nanosPerOp(200_000, 500_000, () -> write(objectMapper, mix.get(next[0]++ % mix.size())));
+        double cborEncode = Measurements.nanosPerOp(200_000, 500_000, () -> write(cborMapper, mix.get(next[0]++ % mix.size())));
+        double jsonDecode = Measurements.nanosPerOp(200_000, 500_000, () -> read(objectMapper, jsonBodies.get(next[0]++ % mix.size())));
+        double cborDecode = Measurements.nanosPerOp(200_000, 500_000, () -> read(cborMapper, cborBodies.get(next[0]++ % mix.size())));
+
+        Measurements.report("payload.encode", "json %.0f ns, cbor %.0f ns per message", jsonEncode, cborEncode);
+        Measurements.report("payload.decode", "json %.0f ns, cbor %.0f ns per message", jsonDecode, cborDecode);
+        assertEquals(mix.get(0), read(cborMapper, cborBodies.get(0)));
+    }
+
+    private static byte[] write(ObjectMapper mapper, MessageDto message) {
+        try {
+            return mapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDto read(ObjectMapper mapper, byte[] body) {
+        try {
+            return mapper.readValue(body, MessageDto.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<MessageDto> messageMix() {
+        List<String> contents = List.of("ok", "see you at 7?", "👍", "привет, как дела?", "на месте", "lol",
+                MEDIUM, "Pushed the fix, can you re-run the build when you get a minute?", MEDIUM,
+                MEDIUM.repeat(4));
+        List<MessageDto> messages = new ArrayList<>();
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 14, 18, 30, 5, 123_000_000);
+        for (int i = 0; i < contents.size(); i++) {
+            messages.add(new MessageDto(123456789012345678L + i, contents.get(i), createdAt.plusSeconds(i),
+                    i % 3 == 0 ? "nurdaulet" : "alice",
+                    i % 2 == 0 ? "c0a8012e-6f1b-4d1a-9a43-3f1f2c9a7b1" + i : null));
+        }
+        return messages;
+    }
+}
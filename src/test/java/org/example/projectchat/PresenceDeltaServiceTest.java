@@ -0,0 +1,125 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.DTO.chat.PresenceDeltaDto;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.cluster.LoopbackClusterFanout;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.service.PresenceDeltaService;
+import org.example.projectchat.service.PresenceService;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PresenceDeltaServiceTest {
+
+    @Mock
+    private ChatBroadcaster chatBroadcaster;
+
+    @Mock
+    private PresenceService presenceService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RoomMembershipIndex membershipIndex;
+
+    // Test 1: all joins and leaves of a room within one interval become a single delta frame
+    @Test
+    void testChangesAreAggregatedPerRoom(){
+        PresenceDeltaService presenceDeltaService = new PresenceDeltaService(chatBroadcaster, presenceService, new SimpleMeterRegistry(), 0);
+        when(presenceService.onlineCount(5L)).thenReturn(2);
+
+        presenceDeltaService.joined(5L, 1L, "alice");
+        presenceDeltaService.joined(5L, 2L, "bob");
+        presenceDeltaService.left(5L, 3L, "carol");
+        presenceDeltaService.flush();
+        presenceDeltaService.flush();
+
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(chatBroadcaster, times(1)).broadcastLocal(eq("/topic/rooms/5/presence"), frame.capture());
+        PresenceDeltaDto delta = (PresenceDeltaDto) frame.getValue();
+        assertEquals(2, delta.joined().size());
+        assertEquals(List.of(new UserDto(3L, "carol")), delta.left());
+        assertEquals(2, delta.online());
+    }
+
+    // Test 2: a disconnect followed by a quick reconnect produces no frame; a real leave waits for the grace period
+    @Test
+    void testQuickReconnectCancelsOut(){
+        PresenceDeltaService presenceDeltaService = new PresenceDeltaService(chatBroadcaster, presenceService, new SimpleMeterRegistry(), 60_000);
+
+        presenceDeltaService.left(5L, 1L, "alice");
+        presenceDeltaService.flush();
+        presenceDeltaService.joined(5L, 1L, "alice");
+        presenceDeltaService.flush();
+
+        presenceDeltaService.left(6L, 2L, "bob");
+        presenceDeltaService.flush();
+
+        verify(chatBroadcaster, never()).broadcastLocal(anyString(), any());
+    }
+
+    // Test 3: a disconnect from one node and a reconnect to another is no change, and peers' changes reach local sessions
+    @Test
+    void testReconnectToAnotherNodeCancelsOut(){
+        when(membershipIndex.isMember(eq(5L), anyLong())).thenReturn(true);
+        LoopbackClusterFanout fanoutA = new LoopbackClusterFanout();
+        LoopbackClusterFanout fanoutB = new LoopbackClusterFanout();
+        try {
+            PresenceService presenceA = node(fanoutA, 1);
+            PresenceService presenceB = node(fanoutB, 2);
+            PresenceDeltaService deltasA = new PresenceDeltaService(chatBroadcaster, presenceA, new SimpleMeterRegistry(), 0);
+            deltasA.subscribe();
+            CurrentUser alice = new CurrentUser(1L, "alice", Set.of("ROLE_USER"));
+
+            presenceB.connect("b1", alice);
+            presenceB.subscribe("b1", "sub-0", "/topic/rooms/5");
+            deltasA.flush();
+            ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+            verify(chatBroadcaster).broadcastLocal(eq("/topic/rooms/5/presence"), frame.capture());
+            assertEquals(List.of(new UserDto(1L, "alice")), ((PresenceDeltaDto) frame.getValue()).joined());
+            assertEquals(1, ((PresenceDeltaDto) frame.getValue()).online());
+
+            // the new session on node A arrives before node B notices the old one is gone
+            presenceA.connect("a1", alice);
+            assertNull(presenceA.subscribe("a1", "sub-0", "/topic/rooms/5"));
+            presenceB.disconnect("b1");
+            deltasA.flush();
+            verifyNoMoreInteractions(chatBroadcaster);
+            assertEquals(1, presenceA.onlineCount(5L));
+        } finally {
+            fanoutA.close();
+            fanoutB.close();
+        }
+    }
+
+    private PresenceService node(LoopbackClusterFanout fanout, long nodeId){
+        ClusterControlChannel channel = new ClusterControlChannel(fanout, new SnowflakeIdGenerator(nodeId));
+        channel.subscribe();
+        PresenceService node = new PresenceService(jdbcTemplate, membershipIndex, channel, new ObjectMapper(),
+                "postgres", 60_000);
+        node.subscribe();
+        return node;
+    }
+}
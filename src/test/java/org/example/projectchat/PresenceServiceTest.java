@@ -0,0 +1,150 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.cluster.LoopbackClusterFanout;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.service.PresenceService;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PresenceServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RoomMembershipIndex membershipIndex;
+
+    private PresenceService presenceService;
+
+    private final CurrentUser alice = new CurrentUser(1L, "alice", Set.of("ROLE_USER"));
+    private final CurrentUser bob = new CurrentUser(2L, "bob", Set.of("ROLE_USER"));
+
+    @BeforeEach
+    void setUp(){
+        presenceService = new PresenceService(jdbcTemplate, membershipIndex,
+                mock(ClusterControlChannel.class), new ObjectMapper(), "loopback", 15_000);
+    }
+
+    // Test 1: a user with two devices stays online in the room until the last session leaves
+    @Test
+    void testMultiDeviceSessionsAreReferenceCounted(){
+        when(membershipIndex.isMember(eq(10L), anyLong())).thenReturn(true);
+
+        assertTrue(presenceService.connect("phone", alice));
+        assertFalse(presenceService.connect("laptop", alice));
+        assertEquals(10L, presenceService.subscribe("phone", "sub-0", "/topic/rooms/10"));
+        assertNull(presenceService.subscribe("laptop", "sub-0", "/topic/rooms/10"));
+        // other destinations are not room presence
+        assertNull(presenceService.subscribe("laptop", "sub-1", "/topic/rooms/10/typing"));
+
+        assertTrue(presenceService.disconnect("phone").leftRooms().isEmpty());
+        assertTrue(presenceService.isOnline(1L));
+        assertEquals(1, presenceService.countOnlineMembers(10L, alice).online());
+
+        PresenceService.Disconnection last = presenceService.disconnect("laptop");
+        assertEquals(List.of(10L), last.leftRooms());
+        assertTrue(last.wentOffline());
+        assertFalse(presenceService.isOnline(1L));
+        assertEquals(0, presenceService.countOnlineMembers(10L, alice).online());
+    }
+
+    // Test 2: online members are only visible to members, and last seen is written in one batch
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnlineMembersAndBatchedLastSeen(){
+        when(membershipIndex.isMember(10L, 1L)).thenReturn(true);
+        when(membershipIndex.isMember(10L, 2L)).thenReturn(true);
+        when(membershipIndex.isMember(10L, 3L)).thenReturn(false);
+
+        presenceService.connect("s1", alice);
+        presenceService.connect("s2", bob);
+        presenceService.subscribe("s1", "sub-0", "/topic/rooms/10");
+        presenceService.subscribe("s2", "sub-0", "/topic/rooms/10");
+
+        List<UserDto> online = presenceService.findOnlineMembers(10L, alice);
+        assertEquals(Set.of("alice", "bob"), Set.copyOf(online.stream().map(UserDto::username).toList()));
+        assertThrows(AccessDeniedException.class,
+                () -> presenceService.findOnlineMembers(10L, new CurrentUser(3L, "eve", Set.of())));
+
+        presenceService.disconnect("s1");
+        presenceService.disconnect("s2");
+        verifyNoInteractions(jdbcTemplate);
+
+        presenceService.flushLastSeen();
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(eq("update users set last_seen_at = ? where id = ?"), rows.capture());
+        assertEquals(2, rows.getValue().size());
+    }
+
+    // Test 3: room presence is cluster-wide, and a peer's entries expire when it stops refreshing them
+    @Test
+    void testRoomPresenceSpansNodes() throws InterruptedException {
+        when(membershipIndex.isMember(eq(10L), anyLong())).thenReturn(true);
+        LoopbackClusterFanout fanoutA = new LoopbackClusterFanout();
+        LoopbackClusterFanout fanoutB = new LoopbackClusterFanout();
+        try {
+            PresenceService nodeA = node(fanoutA, 1, 60_000);
+            PresenceService nodeB = node(fanoutB, 2, 5);
+            List<PresenceService.RoomChange> changesOnB = new ArrayList<>();
+            nodeB.addPeerChangeListener(changesOnB::add);
+
+            nodeA.connect("a1", alice);
+            assertEquals(10L, nodeA.subscribe("a1", "sub-0", "/topic/rooms/10"));
+            nodeB.connect("b1", bob);
+            assertEquals(10L, nodeB.subscribe("b1", "sub-0", "/topic/rooms/10"));
+            // alice is already online in the room through node A
+            nodeB.connect("b2", alice);
+            assertNull(nodeB.subscribe("b2", "sub-0", "/topic/rooms/10"));
+
+            assertEquals(2, nodeA.countOnlineMembers(10L, alice).online());
+            assertEquals(Set.of("alice", "bob"),
+                    Set.copyOf(nodeB.findOnlineMembers(10L, bob).stream().map(UserDto::username).toList()));
+            assertEquals(List.of(new PresenceService.RoomChange(10L, 1L, "alice", true)), changesOnB);
+
+            // bob leaves node B; alice is still online on node B, so node A leaving only drops its own entry
+            assertEquals(List.of(10L), nodeB.disconnect("b1").leftRooms());
+            assertEquals(1, nodeA.onlineCount(10L));
+            assertTrue(nodeB.disconnect("b2").leftRooms().isEmpty());
+
+            // node A goes away without announcing anything: node B forgets alice after three missed refreshes
+            fanoutA.close();
+            Thread.sleep(50);
+            nodeB.refreshCluster();
+            assertEquals(0, nodeB.onlineCount(10L));
+            assertEquals(new PresenceService.RoomChange(10L, 1L, "alice", false), changesOnB.get(changesOnB.size() - 1));
+        } finally {
+            fanoutA.close();
+            fanoutB.close();
+        }
+    }
+
+    private PresenceService node(LoopbackClusterFanout fanout, long nodeId, long refreshMillis){
+        ClusterControlChannel channel = new ClusterControlChannel(fanout, new SnowflakeIdGenerator(nodeId));
+        channel.subscribe();
+        PresenceService node = new PresenceService(jdbcTemplate, membershipIndex, channel, new ObjectMapper(),
+                "postgres", refreshMillis);
+        node.subscribe();
+        return node;
+    }
+}
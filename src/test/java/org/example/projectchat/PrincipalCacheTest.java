@@ -0,0 +1,74 @@
+package org.example.projectchat;
+
+import org.example.projectchat.component.AccessTokenDenylist;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.CustomUserDetails;
+import org.example.projectchat.component.JwtClaims;
+import org.example.projectchat.component.PrincipalCache;
+import org.example.projectchat.component.PrincipalResolver;
+import org.example.projectchat.config.security.MyUserDetailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PrincipalCacheTest {
+
+    @Mock
+    private MyUserDetailService userDetailService;
+
+    @Mock
+    private AccessTokenDenylist denylist;
+
+    private PrincipalCache principalCache;
+
+    private final JwtClaims aliceClaims = new JwtClaims("alice", 1L, List.of("ROLE_USER", "ROLE_ADMIN"), List.of(),
+            Instant.now(), Instant.now().plusSeconds(600), "jti-1");
+
+    @BeforeEach
+    void setUp(){
+        principalCache = new PrincipalCache(userDetailService, 60_000, 100);
+    }
+
+    // Test 1: claims mode builds the principal from the token alone; refresh tokens (no userId) are not principals
+    @Test
+    void testClaimsModeNeedsNoDatabase(){
+        PrincipalResolver resolver = new PrincipalResolver(principalCache, denylist, "claims");
+
+        CustomUserDetails principal = resolver.resolve(aliceClaims);
+        assertEquals(new CurrentUser(1L, "alice", Set.of("ROLE_USER", "ROLE_ADMIN")), CurrentUser.from(principal));
+        assertNull(principal.getPassword());
+
+        assertNull(resolver.resolve(new JwtClaims("alice", null, List.of(), List.of(), Instant.now(), Instant.now(), "jti-2")));
+        verifyNoInteractions(userDetailService);
+    }
+
+    // Test 2: database mode loads once per ttl, invalidation reloads, a token of another account with the same name fails
+    @Test
+    void testDatabaseModeCachesAndInvalidates(){
+        PrincipalResolver resolver = new PrincipalResolver(principalCache, denylist, "database");
+        when(userDetailService.loadUserByUsername("alice")).thenReturn(new CustomUserDetails(
+                1L, "alice", "$2a$hash", List.of(), List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        assertEquals(1L, resolver.resolve(aliceClaims).getId());
+        assertNull(resolver.resolve(aliceClaims).getPassword());
+        verify(userDetailService, times(1)).loadUserByUsername("alice");
+
+        principalCache.invalidate("alice");
+        resolver.resolve(aliceClaims);
+        verify(userDetailService, times(2)).loadUserByUsername("alice");
+
+        // alice was deleted and the name registered again
+        assertNull(resolver.resolve(new JwtClaims("alice", 99L, List.of("ROLE_USER"), List.of(), Instant.now(), Instant.now(), "jti-3")));
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.projectchat;
+
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.DTO.chat.RoomReadStateDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.cluster.LoopbackClusterFanout;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.service.MessageBatchListener;
+import org.example.projectchat.service.ReadCursorService;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReadCursorServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RoomMembershipIndex membershipIndex;
+
+    @Mock
+    private ClusterControlChannel controlChannel;
+
+    private ReadCursorService readCursorService;
+
+    private final CurrentUser bob = new CurrentUser(2L, "bob", Set.of("ROLE_USER"));
+
+    @BeforeEach
+    void setUp(){
+        readCursorService = new ReadCursorService(jdbcTemplate, membershipIndex, controlChannel, 30_000, 100_000);
+    }
+
+    // Test 1: unread counts follow the room counter from the batch; senders have read their own messages
+    @Test
+    void testUnreadCountsFromCommittedBatch(){
+        // room 5 had 7 messages before this batch
+        readCursorService.onBatchCommitted(new MessageBatchListener.Batch(List.of(
+                message(5L, 1L, 101L),
+                message(5L, 2L, 102L),
+                message(5L, 1L, 103L)
+        ), Map.of(5L, 10L)));
+
+        assertEquals(Map.of(5L, 0L), readCursorService.unreadCounts(1L, List.of(5L)));
+        assertEquals(Map.of(5L, 1L), readCursorService.unreadCounts(2L, List.of(5L)));
+        assertEquals(Map.of(5L, 10L), readCursorService.unreadCounts(3L, List.of(5L)));
+    }
+
+    // Test 2: marking the newest message read needs no query, cursor writes are batched, non-members are rejected
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMarkReadIsBatchedAndMembersOnly(){
+        readCursorService.onBatchCommitted(new MessageBatchListener.Batch(List.of(
+                message(5L, 1L, 101L),
+                message(5L, 1L, 102L)
+        ), Map.of(5L, 2L)));
+        when(membershipIndex.isMember(5L, 2L)).thenReturn(true);
+
+        RoomReadStateDto state = readCursorService.markRead(5L, 102L, bob);
+        assertEquals(102L, state.lastReadMessageId());
+        assertEquals(0, state.unreadCount());
+        // a new message from alice is unread for bob again
+        readCursorService.onBatchCommitted(new MessageBatchListener.Batch(List.of(message(5L, 1L, 103L)), Map.of(5L, 3L)));
+        assertEquals(1, readCursorService.unreadCounts(2L, List.of(5L)).get(5L));
+
+        assertThrows(AccessDeniedException.class,
+                () -> readCursorService.markRead(5L, 102L, new CurrentUser(3L, "eve", Set.of())));
+
+        readCursorService.flushCursors();
+        readCursorService.flushCursors();
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+        // alice (sender) and bob, one row each
+        assertEquals(2, rows.getValue().size());
+    }
+
+    // Test 3: a read on one node lowers the unread count on another node that already has the user's cursors
+    @Test
+    void testReadOnPeerNodeIsApplied(){
+        LoopbackClusterFanout fanoutA = new LoopbackClusterFanout();
+        LoopbackClusterFanout fanoutB = new LoopbackClusterFanout();
+        try {
+            ReadCursorService nodeA = node(fanoutA, 1);
+            ReadCursorService nodeB = node(fanoutB, 2);
+            MessageBatchListener.Batch batch = new MessageBatchListener.Batch(List.of(
+                    message(5L, 1L, 101L),
+                    message(5L, 1L, 102L)
+            ), Map.of(5L, 2L));
+            nodeA.onBatchCommitted(batch);
+            nodeB.onBatchCommitted(batch);
+            assertEquals(2, nodeA.unreadCounts(2L, List.of(5L)).get(5L));
+
+            when(membershipIndex.isMember(5L, 2L)).thenReturn(true);
+            nodeB.markRead(5L, 102L, bob);
+            assertEquals(0, nodeA.unreadCounts(2L, List.of(5L)).get(5L));
+        } finally {
+            fanoutA.close();
+            fanoutB.close();
+        }
+    }
+
+    private ReadCursorService node(LoopbackClusterFanout fanout, long nodeId){
+        ClusterControlChannel channel = new ClusterControlChannel(fanout, new SnowflakeIdGenerator(nodeId));
+        channel.subscribe();
+        ReadCursorService node = new ReadCursorService(jdbcTemplate, membershipIndex, channel, 60_000, 100);
+        node.subscribe();
+        return node;
+    }
+
+    private static MessageBatchListener.PersistedMessage message(Long roomId, Long senderId, long id){
+        return new MessageBatchListener.PersistedMessage(roomId, senderId,
+                new MessageDto(id, "hi", LocalDateTime.now(), "user" + senderId, null));
+    }
+}
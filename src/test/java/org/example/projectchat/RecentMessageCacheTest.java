@@ -0,0 +1,96 @@
+package org.example.projectchat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.DTO.chat.MessageDto;
+import org.example.projectchat.repository.MessageHistoryQueryRepository;
+import org.example.projectchat.service.MessageBatchListener;
+import org.example.projectchat.service.RecentMessageCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RecentMessageCacheTest {
+
+    @Mock
+    private MessageHistoryQueryRepository historyQueryRepository;
+
+    // Test 1: a miss backfills once, later messages are appended by the ingest batch and old ones fall out of the ring
+    @Test
+    void testBackfillAppendAndWrap(){
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RecentMessageCache cache = new RecentMessageCache(historyQueryRepository, meterRegistry, 3, 1_000_000, true, "loopback");
+        when(historyQueryRepository.findLatest(5L, 3)).thenReturn(List.of(row(2), row(1)));
+
+        RecentMessageCache.Snapshot first = cache.latest(5L);
+        assertEquals(List.of(2L, 1L), ids(first));
+        assertTrue(first.complete());
+
+        cache.onBatchCommitted(batch(5L, 3));
+        assertEquals(List.of(3L, 2L, 1L), ids(cache.latest(5L)));
+
+        cache.onBatchCommitted(batch(5L, 4));
+        RecentMessageCache.Snapshot wrapped = cache.latest(5L);
+        assertEquals(List.of(4L, 3L, 2L), ids(wrapped));
+        assertFalse(wrapped.complete());
+
+        verify(historyQueryRepository, times(1)).findLatest(5L, 3);
+        assertEquals(2, meterRegistry.get("chat.history.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get("chat.history.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    // Test 2: above the byte budget the least recently read room is dropped
+    @Test
+    void testColdRoomsAreEvicted(){
+        // room for two messages of the fixed overhead, not three
+        RecentMessageCache cache = new RecentMessageCache(historyQueryRepository, new SimpleMeterRegistry(), 3, 400, true, "loopback");
+        when(historyQueryRepository.findLatest(anyLong(), eq(3))).thenAnswer(invocation -> List.of(row(invocation.getArgument(0))));
+
+        cache.latest(1L);
+        cache.latest(2L);
+        cache.latest(1L);
+        cache.latest(3L);
+
+        cache.latest(1L);
+        cache.latest(2L);
+        // 2 was the coldest when 3 came in, so it had to be loaded again; 1 stayed
+        verify(historyQueryRepository, times(1)).findLatest(1L, 3);
+        verify(historyQueryRepository, times(2)).findLatest(2L, 3);
+    }
+
+    // Test 3: with messages fanning out to other instances the cache stays off, every page comes from the database
+    @Test
+    void testDisabledWhenClustered(){
+        RecentMessageCache cache = new RecentMessageCache(historyQueryRepository, new SimpleMeterRegistry(), 3, 1_000_000, true, "postgres");
+        when(historyQueryRepository.findLatest(5L, 3)).thenReturn(List.of(row(2), row(1)), List.of(row(3), row(2), row(1)));
+
+        assertEquals(List.of(2L, 1L), ids(cache.latest(5L)));
+        // a message ingested on a peer node is visible right away
+        RecentMessageCache.Snapshot second = cache.latest(5L);
+        assertEquals(List.of(3L, 2L, 1L), ids(second));
+        assertFalse(second.complete());
+        verify(historyQueryRepository, times(2)).findLatest(5L, 3);
+    }
+
+    private static List<Long> ids(RecentMessageCache.Snapshot snapshot){
+        return snapshot.newestFirst().stream().map(row -> row.message().id()).toList();
+    }
+
+    private static MessageBatchListener.Batch batch(Long roomId, long id){
+        return new MessageBatchListener.Batch(List.of(new MessageBatchListener.PersistedMessage(roomId, 1L,
+                new MessageDto(id, "", LocalDateTime.now(), "", "client-" + id))), Map.of(roomId, id));
+    }
+
+    private static MessageHistoryQueryRepository.HistoryRow row(long id){
+        return new MessageHistoryQueryRepository.HistoryRow(new MessageDto(id, "", LocalDateTime.now(), "", null), Instant.ofEpochSecond(id));
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.projectchat;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import org.example.projectchat.component.JWTUtil;
+import org.example.projectchat.component.JwtClaims;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.config.security.MyUserDetailService;
+import org.example.projectchat.exception.TokenRefreshException;
+import org.example.projectchat.repository.RefreshTokenQueryRepository;
+import org.example.projectchat.service.RefreshTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenQueryRepository tokenQueryRepository;
+
+    @Mock
+    private JWTUtil jwtUtil;
+
+    @Mock
+    private SnowflakeIdGenerator idGenerator;
+
+    @Mock
+    private MyUserDetailService userDetailService;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private final Instant expiresAt = Instant.now().plusSeconds(3600);
+
+    @BeforeEach
+    void setUp(){
+        lenient().when(jwtUtil.readClaims("old.token")).thenReturn(claims("jti-old"));
+        lenient().when(jwtUtil.generateRefreshToken("alice")).thenReturn("new.token");
+        lenient().when(jwtUtil.readClaims("new.token")).thenReturn(claims("jti-new"));
+        lenient().when(idGenerator.nextId()).thenReturn(42L);
+    }
+
+    // Test 1: a live token is rotated by one statement that also returns the owner; only hashes reach the database
+    @Test
+    void testRotationReturnsOwner() throws Exception {
+        when(tokenQueryRepository.rotate(any(), eq(42L), any(), eq("jti-new"), eq(expiresAt)))
+                .thenReturn(Optional.of(new RefreshTokenQueryRepository.TokenOwner(1L, "alice", List.of("ROLE_USER"))));
+        when(userDetailService.adminGroupIdsOf(1L)).thenReturn(List.of("9"));
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotateRefreshToken("old.token");
+        assertEquals("new.token", rotation.refreshToken());
+        assertEquals(1L, rotation.user().getId());
+        assertEquals("ROLE_USER", rotation.user().getAuthorities().iterator().next().getAuthority());
+        // the refreshed access token carries the same admin groups as one issued at login
+        assertEquals(List.of("9"), rotation.user().getAdminGroupIds());
+        assertNull(rotation.user().getPassword());
+
+        ArgumentCaptor<byte[]> presented = ArgumentCaptor.forClass(byte[].class);
+        verify(tokenQueryRepository).rotate(presented.capture(), anyLong(), any(), any(), any());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest("old.token".getBytes(StandardCharsets.UTF_8)), presented.getValue());
+        verify(tokenQueryRepository, never()).findState(any());
+    }
+
+    // Test 2: an already rotated token revokes its family; expired or forged tokens never reach the database
+    @Test
+    void testReuseRevokesFamily(){
+        when(tokenQueryRepository.rotate(any(), anyLong(), any(), any(), any())).thenReturn(Optional.empty());
+        when(tokenQueryRepository.findState(any()))
+                .thenReturn(Optional.of(new RefreshTokenQueryRepository.TokenState(7L, true, expiresAt)));
+
+        assertThrows(TokenRefreshException.class, () -> refreshTokenService.rotateRefreshToken("old.token"));
+        verify(tokenQueryRepository).revokeFamily(7L);
+
+        when(jwtUtil.readClaims("expired.token")).thenThrow(new ExpiredJwtException(null, null, "expired"));
+        assertThrows(TokenRefreshException.class, () -> refreshTokenService.rotateRefreshToken("expired.token"));
+        verify(tokenQueryRepository, times(1)).rotate(any(), anyLong(), any(), any(), any());
+    }
+
+    // Test 3: the purge deletes chunk by chunk until a chunk comes back short
+    @Test
+    void testChunkedPurge(){
+        ReflectionTestUtils.setField(refreshTokenService, "purgeChunkSize", 2);
+        when(tokenQueryRepository.purgeChunk(any(), anyInt())).thenReturn(2, 2, 1);
+
+        refreshTokenService.purgeTokens();
+        verify(tokenQueryRepository, times(3)).purgeChunk(any(), eq(2));
+    }
+
+    private JwtClaims claims(String jti){
+        return new JwtClaims("alice", null, List.of(), List.of(), Instant.now(), expiresAt, jti);
+    }
+}
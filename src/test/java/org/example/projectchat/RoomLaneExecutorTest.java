@@ -0,0 +1,132 @@
+package org.example.projectchat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.component.RoomLaneExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoomLaneExecutorTest {
+    private static final String ROOM = "/app/chat.sendMessage/5";
+
+    private RoomLaneExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.destroy();
+    }
+
+    // Test 1: a SEND right after SUBSCRIBE waits for the subscription; other sessions are not held up
+    @Test
+    void testSessionFramesDoNotOvertakeControlFrames() throws InterruptedException {
+        executor = new RoomLaneExecutor(new SimpleMeterRegistry(), new MockEnvironment(), 4, 100);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch subscribing = new CountDownLatch(1);
+        CountDownLatch otherSent = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+
+        executor.execute(frame(SimpMessageType.SUBSCRIBE, "s1", "/topic/rooms/5", () -> {
+            await(subscribing);
+            handled.add("s1 subscribe");
+        }));
+        executor.execute(frame(SimpMessageType.MESSAGE, "s1", ROOM, () -> {
+            handled.add("s1 send");
+            done.countDown();
+        }));
+        executor.execute(frame(SimpMessageType.MESSAGE, "s2", ROOM, () -> {
+            handled.add("s2 send");
+            otherSent.countDown();
+            done.countDown();
+        }));
+
+        assertTrue(otherSent.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("s2 send"), handled);
+        subscribing.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("s2 send", "s1 subscribe", "s1 send"), handled);
+    }
+
+    // Test 2: full lanes reject with AbortPolicy, and a rejected control frame holds nothing back
+    @Test
+    void testFullLanesRejectFrames() throws InterruptedException {
+        executor = new RoomLaneExecutor(new SimpleMeterRegistry(), new MockEnvironment(), 1, 1);
+        CountDownLatch laneBlocked = new CountDownLatch(1);
+        CountDownLatch releaseLane = new CountDownLatch(1);
+        CountDownLatch controlBlocked = new CountDownLatch(1);
+        CountDownLatch releaseControl = new CountDownLatch(1);
+
+        executor.execute(frame(SimpMessageType.MESSAGE, "s1", ROOM, () -> {
+            laneBlocked.countDown();
+            await(releaseLane);
+        }));
+        assertTrue(laneBlocked.await(5, TimeUnit.SECONDS));
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        executor.execute(frame(SimpMessageType.MESSAGE, "s1", ROOM, queuedRan::countDown));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(frame(SimpMessageType.MESSAGE, "s1", ROOM, () -> {
+        })));
+
+        executor.execute(frame(SimpMessageType.SUBSCRIBE, "s2", "/topic/rooms/5", () -> {
+            controlBlocked.countDown();
+            await(releaseControl);
+        }));
+        assertTrue(controlBlocked.await(5, TimeUnit.SECONDS));
+        executor.execute(frame(SimpMessageType.SUBSCRIBE, "s2", "/topic/rooms/6", () -> {
+        }));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(frame(SimpMessageType.SUBSCRIBE, "s3", "/topic/rooms/5", () -> {
+        })));
+
+        // s3 has no control frame in flight after the rejection, so its SEND is not held back
+        releaseLane.countDown();
+        assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+        CountDownLatch sent = new CountDownLatch(1);
+        executor.execute(frame(SimpMessageType.MESSAGE, "s3", ROOM, sent::countDown));
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        releaseControl.countDown();
+    }
+
+    private static MessageHandlingRunnable frame(SimpMessageType type, String sessionId, String destination, Runnable action) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return handled -> action.run();
+            }
+
+            @Override
+            public void run() {
+                action.run();
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.projectchat;
+
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.service.RoomMembershipIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RoomMembershipIndexTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ClusterControlChannel controlChannel;
+
+    private RoomMembershipIndex membershipIndex;
+
+    @BeforeEach
+    void setUp(){
+        membershipIndex = new RoomMembershipIndex(jdbcTemplate, controlChannel, 60_000, 10_000);
+    }
+
+    // Test 1: a room is loaded once and later checks are answered from memory
+    @Test
+    void testRoomIsLoadedOnce(){
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(10L))).thenReturn(List.of(1L, 2L, 3L));
+
+        assertTrue(membershipIndex.isMember(10L, 1L));
+        assertTrue(membershipIndex.isMember(10L, 3L));
+        assertFalse(membershipIndex.isMember(10L, 4L));
+
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(Long.class), eq(10L));
+    }
+
+    // Test 2: added and removed members are visible without reloading the room
+    @Test
+    void testAddAndRemoveMember(){
+        membershipIndex.registerRoom(20L, List.of(1L, 2L));
+
+        membershipIndex.addMember(20L, 5L);
+        membershipIndex.removeMember(20L, 1L);
+
+        assertTrue(membershipIndex.isMember(20L, 2L));
+        assertTrue(membershipIndex.isMember(20L, 5L));
+        assertFalse(membershipIndex.isMember(20L, 1L));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // Test 3: an unknown room is queried once within the ttl, and forgotten as soon as it is created
+    @Test
+    void testUnknownRoomIsRememberedUntilCreated(){
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(30L))).thenReturn(List.of());
+
+        assertFalse(membershipIndex.isMember(30L, 1L));
+        assertFalse(membershipIndex.isMember(30L, 1L));
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(Long.class), eq(30L));
+
+        membershipIndex.registerRoom(30L, List.of(1L));
+        assertTrue(membershipIndex.isMember(30L, 1L));
+    }
+
+    // Test 4: absent rooms are queried again after the ttl, after a peer's change, and when the bound is reached
+    @Test
+    void testAbsentRoomsExpireAndAreBounded(){
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyLong())).thenReturn(List.of());
+        RoomMembershipIndex expiring = new RoomMembershipIndex(jdbcTemplate, controlChannel, 0, 10_000);
+        assertFalse(expiring.isMember(40L, 1L));
+        assertFalse(expiring.isMember(40L, 1L));
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(Long.class), eq(40L));
+
+        assertFalse(membershipIndex.isMember(41L, 1L));
+        membershipIndex.invalidate(41L);
+        assertFalse(membershipIndex.isMember(41L, 1L));
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(Long.class), eq(41L));
+
+        RoomMembershipIndex bounded = new RoomMembershipIndex(jdbcTemplate, controlChannel, 60_000, 1);
+        assertFalse(bounded.isMember(42L, 1L));
+        assertFalse(bounded.isMember(43L, 1L));
+        assertFalse(bounded.isMember(43L, 1L));
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(Long.class), eq(43L));
+    }
+
+    // Test 5: members removed in place leave every other member of a large room findable
+    @Test
+    void testInPlaceRemovalKeepsOtherMembers(){
+        List<Long> userIds = new ArrayList<>();
+        for (long userId = 1; userId <= 2000; userId++) {
+            userIds.add(userId);
+        }
+        membershipIndex.registerRoom(50L, userIds);
+
+        for (long userId = 1; userId <= 2000; userId += 2) {
+            membershipIndex.removeMember(50L, userId);
+        }
+        membershipIndex.addMember(50L, 3L);
+
+        for (long userId = 1; userId <= 2000; userId++) {
+            assertEquals(userId % 2 == 0 || userId == 3, membershipIndex.isMember(50L, userId), "user " + userId);
+        }
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.projectchat;
+
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.model.SnowflakeIdentifierGenerator;
+import org.hibernate.MappingException;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.container.spi.ContainedBean;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SnowflakeIdGeneratorTest {
+
+    // Test 1: ids from one thread are strictly increasing and carry the node id
+    @Test
+    void testIdsAreIncreasingAndCarryNodeId(){
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+
+        long previous = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertEquals(7, SnowflakeIdGenerator.nodeIdOf(id));
+            previous = id;
+        }
+
+        assertTrue(Math.abs(SnowflakeIdGenerator.timestampMillisOf(previous) - System.currentTimeMillis()) < 60_000);
+    }
+
+    // Test 2: ids stay unique when generated concurrently
+    @Test
+    void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8 * 50_000, ids.size());
+    }
+
+    // Test 3: different nodes never produce the same id
+    @Test
+    void testDifferentNodesDoNotCollide(){
+        SnowflakeIdGenerator nodeA = new SnowflakeIdGenerator(1);
+        SnowflakeIdGenerator nodeB = new SnowflakeIdGenerator(2);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(ids.add(nodeA.nextId()));
+            assertTrue(ids.add(nodeB.nextId()));
+        }
+    }
+
+    // Test 4: node id out of range is rejected
+    @Test
+    void testInvalidNodeId(){
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+    }
+
+    // Test 5: the Hibernate generator takes the configured bean from the bean container, never a default one
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIdentifierGeneratorUsesTheConfiguredBean(){
+        BeanContainer beanContainer = mock(BeanContainer.class);
+        ContainedBean<SnowflakeIdGenerator> bean = mock(ContainedBean.class);
+        when(bean.getBeanInstance()).thenReturn(new SnowflakeIdGenerator(7));
+        when(beanContainer.getBean(eq(SnowflakeIdGenerator.class), any(), any())).thenReturn(bean);
+
+        SnowflakeIdentifierGenerator generator = new SnowflakeIdentifierGenerator();
+        generator.configure(null, new Properties(), serviceRegistry(beanContainer));
+        assertEquals(7, SnowflakeIdGenerator.nodeIdOf((Long) generator.generate(null, null)));
+
+        assertThrows(MappingException.class,
+                () -> new SnowflakeIdentifierGenerator().configure(null, new Properties(), serviceRegistry(null)));
+    }
+
+    private static ServiceRegistry serviceRegistry(BeanContainer beanContainer){
+        ManagedBeanRegistry beanRegistry = mock(ManagedBeanRegistry.class);
+        when(beanRegistry.getBeanContainer()).thenReturn(beanContainer);
+        ServiceRegistry serviceRegistry = mock(ServiceRegistry.class);
+        when(serviceRegistry.requireService(ManagedBeanRegistry.class)).thenReturn(beanRegistry);
+        return serviceRegistry;
+    }
+}
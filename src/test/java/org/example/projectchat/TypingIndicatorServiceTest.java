@@ -0,0 +1,140 @@
+package org.example.projectchat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.projectchat.DTO.chat.TypingDto;
+import org.example.projectchat.cluster.ClusterControlChannel;
+import org.example.projectchat.cluster.LoopbackClusterFanout;
+import org.example.projectchat.component.ChatBroadcaster;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.component.SnowflakeIdGenerator;
+import org.example.projectchat.service.TypingIndicatorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TypingIndicatorServiceTest {
+
+    @Mock
+    private ChatBroadcaster chatBroadcaster;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TypingIndicatorService typingIndicatorService;
+
+    @BeforeEach
+    void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        typingIndicatorService = new TypingIndicatorService(chatBroadcaster, mock(ClusterControlChannel.class),
+                new ObjectMapper(), meterRegistry, "loopback", 5000, 1000);
+    }
+
+    // Test 1: many updates within one interval produce a single aggregated frame
+    @Test
+    void testUpdatesAreCoalescedIntoOneFrame(){
+        for (int i = 1; i <= 5; i++) {
+            typingIndicatorService.update(7L, user(i), true);
+            typingIndicatorService.update(7L, user(i), true);
+        }
+
+        typingIndicatorService.flush();
+        typingIndicatorService.flush();
+
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(chatBroadcaster, times(1)).broadcastLocal(eq("/topic/rooms/7/typing"), frame.capture());
+        TypingDto typingDto = (TypingDto) frame.getValue();
+        assertEquals(5, typingDto.total());
+        assertEquals(List.of("user1", "user2"), typingDto.usernames());
+        assertEquals("user1, user2 and 3 others are typing", typingDto.text());
+        assertEquals(5, meterRegistry.get("chat.typing.updates").tag("result", "rate-limited").counter().count());
+    }
+
+    // Test 2: stopping clears the indicator with one more frame, then the idle room is forgotten
+    @Test
+    void testStopSendsClearingFrame(){
+        typingIndicatorService.update(7L, user(1), true);
+        typingIndicatorService.flush();
+
+        typingIndicatorService.stopTyping(7L, 1L);
+        typingIndicatorService.flush();
+        typingIndicatorService.flush();
+
+        ArgumentCaptor<Object> frames = ArgumentCaptor.forClass(Object.class);
+        verify(chatBroadcaster, times(2)).broadcastLocal(eq("/topic/rooms/7/typing"), frames.capture());
+        assertEquals("user1 is typing", ((TypingDto) frames.getAllValues().get(0)).text());
+        assertEquals(0, ((TypingDto) frames.getAllValues().get(1)).total());
+        verify(chatBroadcaster, never()).broadcastLocal(eq("/topic/rooms/8/typing"), any());
+    }
+
+    // Test 3: each node sends the typers of all nodes, and a peer's typers expire once it stops announcing them
+    @Test
+    void testTypersAreMergedAcrossNodes() throws InterruptedException {
+        ChatBroadcaster broadcasterB = mock(ChatBroadcaster.class);
+        LoopbackClusterFanout fanoutA = new LoopbackClusterFanout();
+        LoopbackClusterFanout fanoutB = new LoopbackClusterFanout();
+        try {
+            TypingIndicatorService nodeA = node(fanoutA, 1, chatBroadcaster, 60_000);
+            TypingIndicatorService nodeB = node(fanoutB, 2, broadcasterB, 1000);
+
+            nodeA.update(7L, user(1), true);
+            nodeB.update(7L, user(2), true);
+            // the same user typing on a device connected to node B is listed once
+            nodeB.update(7L, user(1), true);
+            nodeA.flush();
+            nodeB.flush();
+            nodeA.flush();
+
+            ArgumentCaptor<Object> framesOnA = ArgumentCaptor.forClass(Object.class);
+            verify(chatBroadcaster, times(2)).broadcastLocal(eq("/topic/rooms/7/typing"), framesOnA.capture());
+            assertEquals("user1 is typing", ((TypingDto) framesOnA.getAllValues().get(0)).text());
+            assertEquals("user1 and user2 are typing", ((TypingDto) framesOnA.getAllValues().get(1)).text());
+            ArgumentCaptor<TypingDto> framesOnB = ArgumentCaptor.forClass(TypingDto.class);
+            verify(broadcasterB, times(1)).broadcastLocal(eq("/topic/rooms/7/typing"), framesOnB.capture());
+            assertEquals(List.of("user2", "user1"), framesOnB.getValue().usernames());
+            assertEquals(2, framesOnB.getValue().total());
+
+            // node A goes away without announcing anything: node B drops its typers after the ttl
+            fanoutA.close();
+            nodeB.stopTyping(7L, 1L);
+            nodeB.stopTyping(7L, 2L);
+            nodeB.flush();
+            assertEquals(List.of("user1"), framesOnB(broadcasterB, 2).usernames());
+            Thread.sleep(1100);
+            nodeB.flush();
+            assertEquals(0, framesOnB(broadcasterB, 3).total());
+        } finally {
+            fanoutA.close();
+            fanoutB.close();
+        }
+    }
+
+    private static TypingDto framesOnB(ChatBroadcaster broadcaster, int frames){
+        ArgumentCaptor<TypingDto> captor = ArgumentCaptor.forClass(TypingDto.class);
+        verify(broadcaster, times(frames)).broadcastLocal(eq("/topic/rooms/7/typing"), captor.capture());
+        return captor.getValue();
+    }
+
+    private TypingIndicatorService node(LoopbackClusterFanout fanout, long nodeId, ChatBroadcaster broadcaster, long ttlMillis){
+        ClusterControlChannel channel = new ClusterControlChannel(fanout, new SnowflakeIdGenerator(nodeId));
+        channel.subscribe();
+        TypingIndicatorService node = new TypingIndicatorService(broadcaster, channel, new ObjectMapper(),
+                meterRegistry, "postgres", ttlMillis, 1000);
+        node.subscribe();
+        return node;
+    }
+
+    private static CurrentUser user(long id){
+        return new CurrentUser(id, "user" + id, Set.of("ROLE_USER"));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.projectchat;
+
+import org.example.projectchat.DTO.user.UserDto;
+import org.example.projectchat.DTO.user.UserSearchResultDto;
+import org.example.projectchat.component.CurrentUser;
+import org.example.projectchat.controller.UserController;
+import org.example.projectchat.repository.ContactQueryRepository;
+import org.example.projectchat.repository.UserRepository;
+import org.example.projectchat.search.InMemoryUserSearchIndex;
+import org.example.projectchat.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserSearchTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ContactQueryRepository contactQueryRepository;
+
+    private InMemoryUserSearchIndex index;
+    private UserService userService;
+
+    private final CurrentUser alice = new CurrentUser(1L, "alice", Set.of("ROLE_USER"));
+
+    @BeforeEach
+    void setUp(){
+        index = new InMemoryUserSearchIndex(jdbcTemplate);
+        userService = new UserService(userRepository, index, contactQueryRepository);
+        index.userRegistered(1L, "alice");
+        index.userRegistered(2L, "Alex");
+        index.userRegistered(3L, "alexander");
+        index.userRegistered(4L, "Malena");
+        index.userRegistered(5L, "kalex");
+        index.userRegistered(6L, "bob");
+        index.userRegistered(7L, "al_x");
+        index.userRegistered(8L, "alina");
+    }
+
+    // Test 1: the n-gram index returns prefix matches, then infix matches, each alphabetical
+    @Test
+    void testPrefixThenInfixMatches(){
+        assertEquals(List.of("al_x", "alex", "alexander", "alice", "alina"), names(index.find("al", 10)));
+        // the limit applies to each part; short needles have no infix part
+        assertEquals(List.of("al_x", "alex"), names(index.find("al", 2)));
+        assertEquals(List.of("alex", "alexander", "kalex", "malena"), names(index.find("ale", 10)));
+        assertEquals(List.of("alex", "alexander", "kalex"), names(index.find("lex", 10)));
+        // LIKE wildcards are plain characters
+        assertEquals(List.of(), index.find("a%", 10));
+    }
+
+    // Test 2: contacts rank first within prefix and infix matches, the caller is excluded, pages continue by offset
+    @Test
+    void testRankingAndPaging(){
+        // alina and Malena share a room with alice
+        when(contactQueryRepository.findMatching(eq(1L), eq("al"), anyInt()))
+                .thenReturn(List.of(new UserDto(8L, "alina"), new UserDto(4L, "Malena")));
+
+        UserSearchResultDto first = userService.searchUsers(alice, " AL ", 0, 2);
+        assertEquals(List.of("alina", "al_x"), usernames(first));
+        assertEquals(2, first.nextOffset());
+
+        UserSearchResultDto rest = userService.searchUsers(alice, "al", 2, 10);
+        assertEquals(List.of("Alex", "alexander", "Malena"), usernames(rest));
+        assertNull(rest.nextOffset());
+
+        when(contactQueryRepository.findMatching(eq(1L), eq("lex"), anyInt()))
+                .thenReturn(List.of(new UserDto(5L, "kalex")));
+        assertEquals(List.of("kalex", "Alex", "alexander"), usernames(userService.searchUsers(alice, "lex", 0, 10)));
+
+        assertTrue(userService.searchUsers(alice, "al", 100, 10).users().isEmpty());
+        verify(contactQueryRepository, times(3)).findMatching(anyLong(), anyString(), anyInt());
+    }
+
+    // Test 3: the endpoint keeps its plain list body and reports the next page in a header
+    @Test
+    void testEndpointReturnsListWithPagingHeader(){
+        UserController userController = new UserController(userService);
+
+        ResponseEntity<List<UserDto>> first = userController.searchUsers("al", 0, 2, alice);
+        assertEquals(List.of(new UserDto(7L, "al_x"), new UserDto(2L, "Alex")), first.getBody());
+        assertEquals("2", first.getHeaders().getFirst(UserController.NEXT_OFFSET_HEADER));
+
+        ResponseEntity<List<UserDto>> last = userController.searchUsers("al", 2, 10, alice);
+        assertEquals(List.of("alexander", "alina"), last.getBody().stream().map(UserDto::username).toList());
+        assertFalse(last.getHeaders().containsKey(UserController.NEXT_OFFSET_HEADER));
+    }
+
+    private static List<String> usernames(UserSearchResultDto result){
+        return result.users().stream().map(UserDto::username).toList();
+    }
+
+    private static List<String> names(List<UserDto> users){
+        return users.stream().map(user -> user.username().toLowerCase()).toList();
+    }
+}
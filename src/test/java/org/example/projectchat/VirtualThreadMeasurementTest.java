@@ -0,0 +1,78 @@
+package org.example.projectchat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Platform vs virtual thread mode (spring.threads.virtual.enabled) at 10k concurrent sessions.
+// Every session has one unit of blocking work in flight; Thread.sleep stands in for JDBC or a slow socket.
+// Virtual threads need JDK 21; on an older runtime the mode stays off and so does this test.
+@EnabledForJreRange(min = JRE.JAVA_21)
+@EnabledIfEnvironmentVariable(named = Measurements.ENABLED, matches = "true")
+public class VirtualThreadMeasurementTest {
+    private static final int SESSIONS = 10_000;
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    // Test 1: REST calls blocked on the database: Tomcat's 200 worker threads vs a virtual thread per request
+    @Test
+    void testBlockingRequests() throws InterruptedException {
+        ThreadPoolTaskExecutor tomcatDefault = pool("http-", 200);
+        long platform = run(tomcatDefault, 20);
+        tomcatDefault.shutdown();
+        long virtual = run(new VirtualThreadTaskExecutor("http-"), 20);
+
+        Measurements.report("virtual-threads.http", "%d sessions x 20 ms: platform(200) %d ms, virtual %d ms",
+                SESSIONS, platform, virtual);
+        assertTrue(virtual < platform);
+    }
+
+    // Test 2: outbound frames to slow clients: Spring's default channel pool (2 x cores) vs the virtual-thread executor
+    @Test
+    void testSlowOutboundWrites() throws InterruptedException {
+        ThreadPoolTaskExecutor channelDefault = pool("ws-outbound-", CORES * 2);
+        long platform = run(channelDefault, 2);
+        channelDefault.shutdown();
+        long virtual = run(new VirtualThreadTaskExecutor("ws-outbound-"), 2);
+
+        Measurements.report("virtual-threads.outbound", "%d sessions x 2 ms: platform(%d) %d ms, virtual %d ms",
+                SESSIONS, CORES * 2, platform, virtual);
+        assertTrue(virtual < platform);
+    }
+
+    // milliseconds until every session's work has finished
+    private static long run(TaskExecutor executor, long blockMillis) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(SESSIONS);
+        long start = System.nanoTime();
+        for (int i = 0; i < SESSIONS; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(2, TimeUnit.MINUTES));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // fixed-size pool with an unbounded queue, like Tomcat at maxThreads and Spring's channel executors
+    private static ThreadPoolTaskExecutor pool(String prefix, int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.initialize();
+        return executor;
+    }
+}